@@ -5,7 +5,7 @@
   Java class name: ShowFolderSize1
   Copyright (c) 2014 by Keith Fenske.  Apache License or GNU GPL.
 
-  This is a Java 1.4 console application to display the total size of files in
+  This is a Java 7 console application to display the total size of files in
   folders named on the command line, with or without subfolders included.  The
   TEMP folder in the following example has 5 files plus 19 more in three
   subfolders, for a total of 24 files:
@@ -21,24 +21,253 @@
   values).  Options go before folder names on the command line:
 
       -? = -help = show summary of command-line syntax
+      -a0 = keep subfolder data as separate objects (default)
+      -a1 = keep subfolder data in compact arrays (less memory, large trees)
       -b -kb -mb -gb -tb = show sizes in kilobytes, megabytes, etc.
       -c0 = ignore uppercase/lowercase in subfolder names (default)
       -c1 = -c = strict Unicode order for case in subfolder names
+      -d0 = show only the sizes of files, not rounded to blocks (default)
+      -d1 = also show sizes rounded to blocks (sparse not detected); or -d=#
+      -diff=file = show changes since snapshot file (twice for two snapshots)
+      -e0 = search all subfolders for exact totals (default)
+      -e# = estimate: list # levels of folders, then a sample of subfolders
+      -et=# = keep sampling for # seconds per folder to refine estimates (-e#)
+      -exclude=pattern = skip folders and files that match (repeat for more)
+      -f0 = call java.io.File methods separately for each file (older, slower)
+      -f1 = read attributes once per file with java.nio.file (default)
+      -h0 = count every hard link to a file separately (default)
+      -h1 = count files with hard links only once (same device and inode)
       -i# = incremental left indent for subfolders; default is -i2
+      -include=pattern = count only files that match (repeat for more)
+      -index=file = save a memory-mapped index of all folders for -query
+      -k0 = keep data only for subfolders within report depth (default)
+      -k1 = keep data for all subfolders searched (uses more memory)
+      -load=file = load snapshot file and only list folders that changed
       -m0 = report details for each folder, but don't add subfolders
       -m1 = report details for each folder plus subfolders (default)
       -m2 = show excessive details about every folder and subfolder
+      -min=# = minimum change in bytes for -diff, may end with K M G T
+      -o0 = search subfolders on all file systems (default)
+      -o1 = don't search subfolders on other file systems (mounts)
+      -p# = number of parallel threads for searching; default is -p0 (serial)
+      -q# = number of pipelined listing threads (network drives); default -q0
+      -q=#:folder = at most # folders listed at once below a folder (mount)
+      -query=file = report folders from an index file, without searching
       -r# = maximum subfolder depth to report; default is -r9
       -s# = maximum subfolder depth to search; default is -s99
+      -save=file = save data for all folders and subfolders in snapshot file
+      -serve=# = keep running, watch for changes, send reports to local port #
+      -sort=name = sort subfolders by name (default); -c1 for strict case
+      -sort=natural = sort names with numbers by value, as in d2 before d10
+      -sort=size = sort subfolders by total size, largest first
+      -t# = show progress on standard error every # seconds, then time taken
+      -top# = show only the # largest folders and files (-m0 for folder only)
+      -u0 = output in the locale's default character set (default)
+      -u1 = -u = output in UTF-8 (Unicode); or -u=name for other character sets
       -v0 = output as formatted text with -b or -m options (default)
       -v1 = -v = output as raw comma-separated values (see source code)
+      -v2 = output as JSON Lines, one object per folder with full path
+      -v3 = output as binary columns for other programs (see source code)
+      -w0 = count folders and files that can't be read (default)
+      -w1 = also list paths that can't be read, and add error columns to CSV
+      -wt=# = give up listing a folder after # seconds (stuck network mounts)
+      -x0 = don't show file sizes or types in each folder (default)
+      -x1 = also show a histogram of file sizes and bytes by file type
 
   There is no graphical interface (GUI) for this program; it must be run from a
   command prompt, command shell, or terminal window.  Folders are reported in
   the same order as they are given on the command line.  The order of
   subfolders depends upon the "case" option.  The character set for folder
-  names is limited to the locale's default by System.out.println(); replace
-  this with an explicit output file if you want Unicode or UTF-8.
+  names is the locale's default, unless you choose UTF-8 (Unicode) with the -u1
+  option or another character set with -u=name.  Output is buffered, so lines
+  may appear later than with other programs.
+
+  A snapshot saved with -save has the totals and modification time for every
+  folder searched.  A later run with -load only lists a folder again if its
+  modification time has changed; otherwise the folder's own totals come from
+  the snapshot.  A folder's time changes when files are added, deleted, or
+  renamed, but not when an existing file is changed in place, so use a full
+  search when exact sizes for changing files are important.  Loading and
+  saving can be combined for a new snapshot after each incremental search.
+
+  To answer questions later, such as how big one folder was, without
+  searching again, -index=file saves every folder searched in an index file.
+  A later run with -query=file reads the index instead of searching, and looks
+  up each folder on the command line by its full path (or reports all
+  top-level folders if none are given), then prints the folder and its
+  subfolders with the usual -m#, -r#, -sort, and -v# options.  The index has
+  a table of full paths, sorted so that each folder's subfolders are together
+  after it, and a fixed-width record of totals for each folder.  It's mapped
+  into memory, so a lookup is a binary search that reads only a few pages of
+  the file, and nothing is loaded first.  See the ShowFolderSize1Index class
+  for the layout.  Unreadable paths (-w1) and file sizes and types (-x1)
+  aren't saved.  The -query option can't be used with -diff, -e#, -index,
+  -load, -save, -serve, -top, or -x1.
+
+  For a dashboard that wants current totals every few minutes, -serve=# keeps
+  running after the normal report, with all folders and subfolders in memory.
+  Each folder is watched for changes by the operating system, and only a
+  folder that changed is listed again (not its subfolders), with the change
+  in its totals added to its parent folders.  New subfolders are searched and
+  deleted subfolders are removed.  Connect to port # on the local computer
+  (127.0.0.1) and send a line with "text", "csv", or "json" (or nothing for
+  the format from the -v option) to receive a new report, such as:
+
+      echo csv | nc 127.0.0.1 5555
+
+  Systems limit the number of folders that can be watched (Linux has the
+  fs.inotify.max_user_watches setting), so a warning is shown if some folders
+  aren't watched.  The -serve option can't be used with -a1, -diff, -h1, -top,
+  or -x1.  Press Control-C to stop.
+
+  The -diff option compares folders on the command line with a snapshot, or
+  compares two snapshots (older first) without any folder names, and shows
+  what changed for each folder, including subfolders.  Subfolders are sorted
+  by the largest growth first, and only folders that changed by at least the
+  -min option are shown, along with their parent folders.  Snapshots are read
+  in their sorted order without loading them into memory.
+
+  The -top option replaces the normal report with a list of the largest
+  folders (with their subfolders, or by themselves for -m0) and a list of the
+  largest files, using full path names.  Only that many folders and files are
+  kept in memory, no matter how many are searched.  Folders are always listed
+  when -top is given, so -load doesn't skip unchanged folders.
+
+  Large trees often have folders that aren't interesting, such as .git or
+  node_modules, or backups mounted below a folder.  The -exclude option skips
+  folders (and files) whose names match a pattern, before the folder is ever
+  listed, and can be given many times.  The -include option counts only files
+  whose names match, but still searches all folders that aren't excluded.
+  Patterns are "glob" style, like *.log or cache?? or {tmp,temp} or [ab]*,
+  unless they start with "regex:" for a Java regular expression.  A pattern
+  with a / matches the end of the full path instead of only the name, where
+  two stars (**) match any number of folders.  Patterns are compiled once, and
+  names without any wildcards are found with a hash table.  The -o1 option,
+  like "du -x", doesn't search subfolders on a different device (file system)
+  than the folder given on the command line.  Folder totals from -load aren't
+  used with -exclude or -include.
+
+  For a quick answer on a very large tree, such as whether a share holds about
+  40 TB or 80 TB, -e# estimates totals instead of searching everything.  The
+  first # levels of folders are listed completely, starting with the folder on
+  the command line as level one.  Each folder on the last level has its
+  subfolders shuffled, and only a random sample of them is searched (10%, and
+  at least five), with the others estimated from the average of those
+  sampled.  Folders with estimated totals show a 95% confidence interval
+  ("+/-") for bytes and files, from how much the sampled subfolders differ,
+  using Student's t for the number sampled, since a few samples of folder
+  sizes are often far from normal.  A folder's own files, and sampled
+  subfolders, are always exact, and only sampled subfolders are reported by
+  name.  With -et=#, sampling instead goes on for # seconds for each folder
+  on the command line, in rounds of one more subfolder from each folder, so
+  estimates improve for as long as it runs and are exact if everything is
+  searched in time.  Subfolders aren't stopped partway, so time may run over.
+  For CSV output, two columns are added at the end for the intervals.  The -e#
+  option can't be used with -a1, -diff, -index, -q#, -save, -serve, -top,
+  -v3, or -x1.
+
+  Subfolders are kept in a hash table while searching, and sorted only when
+  a folder is printed, so folders below the -r# depth are never sorted.  Names
+  are compared one character at a time, ignoring case (unless -c1) with the
+  same rules in every locale, without creating new strings.  The -sort=natural
+  option compares digits in names as numbers, and -sort=size puts the largest
+  subfolders first.  Snapshot files are always sorted by name.
+
+  Other programs can read the report more easily as JSON Lines (-v2) or as
+  binary columns (-v3) than by counting the spaces in CSV names.  JSON Lines
+  has one object per folder with an id number, the parent's id number (-1 for
+  top-level folders), the depth, the name, the full path, and the same totals
+  as CSV.  Objects are written as each folder is printed, so the output can be
+  read before the program finishes.  The binary output is one block with a
+  header, fixed-width columns of numbers, and a table of UTF-8 names, which a
+  program can map into memory and read in place; see the
+  ShowFolderSize1ReportBinary class for the layout.  Redirect -v3 to a file.
+  Neither is available for -diff or -top reports, and -serve can send JSON but
+  not binary output.
+
+  Other Java programs can search folders without running this program, using
+  the ShowFolderSize1Scanner class with a ShowFolderSize1Options object.  The
+  options are immutable and have the same names and limits as the command
+  line.  A scanner returns a tree of data objects, or calls a visitor as each
+  folder is finished, and can be cancelled or given a timeout.  Nothing is
+  shared between scanners, so a program can have many of them searching at
+  the same time.  These classes are public, in a package named
+  io.github.kwfenske.showfoldersize (the io/github/kwfenske/showfoldersize
+  folder next to this file, which javac finds by itself).  This file is only
+  the command line: it parses options, runs a scanner, and prints results.
+
+  Files take whole blocks on disk, so the space used can be more than their
+  sizes, especially for many small files or file systems with large blocks.
+  The -d1 option also shows each file's size rounded up to the file system's
+  allocation unit if Java knows it (Java 10 or later), or 4 KB otherwise; -d=#
+  gives a block size such as -d=64K.  This is an estimate, not the space that
+  is really allocated: Java doesn't report the blocks actually used, so sparse
+  files (virtual machine disks, etc) are not detected and appear to have all of
+  their blocks.  For CSV output, three "Rounded Bytes" columns are added at the
+  end.  Folder totals from -load aren't used with -d1.
+
+  Backup programs (such as rsnapshot) save space by making hard links to files
+  that haven't changed, so the same file appears in many folders.  The -h1
+  option counts each file (device and inode) only once, like the "du" command,
+  in whichever folder is found first, and uses much less memory than remembering
+  all file names.  With -p or -q, that folder may change from one run to the
+  next, but the totals don't.  This needs Unix file attributes and always
+  searches with java.nio.file (-f1), but doesn't use folder totals from -load.
+
+  For capacity planning, the -x1 option counts files by size in powers of two
+  (empty, 1-2 bytes, 2-4 bytes, ... 4-8 KB, etc, where each range includes its
+  lower size but not its upper size) and adds bytes by file type (the
+  extension after the last dot in the name, ignoring case) for each folder,
+  with the same sizes and names from the search, and no more calls to the
+  file system.  Each reported folder gets two more lines with the non-zero
+  counts and the largest types (-m0 for folder only).  For CSV output, two
+  columns are added at the end with all counts and types for the folder plus
+  subfolders.  Folder totals from -load aren't used with -x1.
+
+  Folders that can't be listed (no permission, I/O errors) and files whose
+  attributes can't be read are counted as errors, instead of looking like
+  empty folders.  A folder with errors, in itself or in its subfolders, has
+  "(# unreadable)" at the end of its line in the text report, and a message on
+  standard error gives the total.  The -w1 option also lists the full paths
+  and reasons below each folder on the command line, up to 20 for each, and
+  adds columns for errors at the end of CSV and JSON output.  Broken symbolic
+  links, and files deleted while a folder is listed, are not errors.  With
+  -f0, only folders that can't be listed are counted, because java.io.File
+  doesn't say why a file can't be read.  A folder on a network mount that has
+  stopped answering can hang a search forever; with -wt=#, each folder is
+  listed on another thread, and if that takes more than # seconds, the folder
+  is counted as an error and the search goes on without it.  The stuck thread
+  is left waiting.  This always searches with java.nio.file (-f1).  The
+  -serve option keeps error counts current as folders change, but not the
+  list of paths.
+
+  A long search can be watched with the -t option, which writes a line on
+  standard error every few seconds with the number of folders and files so
+  far, their rates per second, total bytes, and the current folder (plus the
+  queue of waiting subfolders for -p or -q).  When all output is done, it
+  shows the time spent listing folders, reading file attributes, sorting
+  subfolders, and printing.  These times are added for all threads with -p or
+  -q, so they can be larger than the elapsed time.
+
+  Network drives (NFS, SMB, etc) spend most of the time for each folder
+  waiting for the server to answer, not using the CPU, so more threads help
+  long after all CPUs are busy.  The -q# option lists folders with a pipeline:
+  many threads (virtual threads on Java 21 or later) take folders from a
+  bounded queue, list them, and put their subfolders back on the queue, while
+  one more thread adds each folder's totals into its parent once all of its
+  subfolders are done.  Try -q64 or more for slow servers.  A server may not
+  like that many requests, so -q=#:folder limits how many folders are listed
+  at once below a folder, usually where a network drive is mounted; give this
+  option once for each mount.  The -p and -q options can't be combined.
+
+  With -p or -q, several folders on the command line are searched at the same
+  time by the same threads, if they are on different devices (file systems),
+  while folders on the same device are searched one after another so that
+  they don't compete for the same disk.  Each folder is still printed in
+  command-line order, as soon as it and all folders before it are done.  The
+  compact arrays for -a1 are shared by these folders, and released only at the
+  end.  With -h1, folders are searched one at a time, so that each file is
+  counted in the first folder given, as with "du".
 
   Apache License or GNU General Public License
   --------------------------------------------
@@ -52,9 +281,17 @@
   http://www.apache.org/licenses/ and http://www.gnu.org/licenses/ web pages.
 */
 
+import io.github.kwfenske.showfoldersize.*; // searching, data objects
 import java.io.*;                 // standard I/O
+import java.net.*;                // local socket for -serve
+import java.nio.*;                // byte buffers for binary output
+import java.nio.channels.*;       // mapped files for -index and -query
+import java.nio.charset.*;        // character sets for output
+import java.nio.file.*;           // directory streams, paths
+import java.nio.file.attribute.*; // basic file attributes
 import java.text.*;               // number formatting
 import java.util.*;               // calendars, dates, lists, maps, vectors
+import java.util.concurrent.*;    // fork-join thread pools
 
 public class ShowFolderSize1
 {
@@ -65,29 +302,83 @@ public class ShowFolderSize1
   static final char CSV_COMMA = ','; // separator for comma-separated values
   static final char CSV_QUOTE = '\"'; // quotation for comma-separated values
   static final String DEFAULT_INDENT = "  "; // incremental left indent
-  static final int DEFAULT_REPORT = 9; // default subfolder depth to report
-  static final int DEFAULT_SEARCH = 99; // default subfolder depth to search
+  static final int DEFAULT_REPORT = ShowFolderSize1Options.DEFAULT_REPORT;
+  static final int DEFAULT_SEARCH = ShowFolderSize1Options.DEFAULT_SEARCH;
+  static final int DETAIL_TYPES = 10; // file types shown by name for -x1
   static final int EXIT_FAILURE = -1; // incorrect request or errors found
   static final int EXIT_SUCCESS = 1; // request completed successfully
   static final int EXIT_UNKNOWN = 0; // don't know or nothing really done
+  static final String LINE_SEPARATOR = System.getProperty("line.separator");
   static final String PROGRAM_TITLE =
     "Show File Space Used for Folders and Subfolders - by: Keith Fenske";
+  static final int REPORT_BINARY = 3; // -v3 binary columns
+  static final int REPORT_CSV = 1; // -v1 comma-separated values
+  static final int REPORT_JSON = 2; // -v2 JSON Lines
+  static final int REPORT_TEXT = 0; // -v0 formatted text
+  static final int SORT_NAME = ShowFolderSize1Order.SORT_NAME; // -sort=name
+  static final int SORT_NATURAL = ShowFolderSize1Order.SORT_NATURAL;
+  static final int SORT_NONE = ShowFolderSize1Order.SORT_NONE; // for watching
+  static final int SORT_SIZE = ShowFolderSize1Order.SORT_SIZE; // -sort=size
 
   /* class variables */
 
+  static long allocBlock;         // forced allocation unit for -d=#, or 0
+  static boolean allocFlag;       // true if allocated sizes are also shown
   static boolean caseFlag;        // true if upper/lower case names different
+  static boolean compactFlag;     // true if subfolders kept in compact arrays
   static boolean csvFlag;         // true for comma-separated values (output)
+  static boolean detailFlag;      // true for file sizes and types (-x1)
+  static long diffMinimum;        // minimum change in bytes for -diff
+  static String diffNewer;        // newer snapshot file for -diff, or null
+  static ShowFolderSize1Cursor diffCursor; // older snapshot, open, or null
+  static String diffOlder;        // older snapshot file for -diff, or null
+  static int estimateLevel;       // levels listed before sampling, 0 for none
+  static boolean errorFlag;       // true if unreadable paths are listed (-w1)
+  static int estimateSeconds;     // seconds of sampling per folder, or 0
+  static Vector excludeList;      // patterns for -exclude, in order given
   static double fixFactor;        // forced scale factor for formatted sizes
   static String fixSuffix;        // forced suffix units for formatted sizes
   static NumberFormat formatComma; // formats with commas (digit grouping)
+  static char formatDecimal;      // locale's decimal point for fast format
+  static char[] formatDigits;     // digits for fast format, reversed
+  static boolean formatFast;      // true if we can format without NumberFormat
+  static char formatGroup;        // locale's digit grouping for fast format
+  static int formatGroupSize;     // number of digits in each group
+  static String formatMinus;      // locale's prefix for negative numbers
   static NumberFormat formatPointOne; // formats with one decimal digit
   static NumberFormat formatPointTwo; // formats with two decimal digits
   static NumberFormat formatUser; // one of the above number formatters
+  static Vector includeList;      // patterns for -include, in order given
+  static ShowFolderSize1Index indexSaved; // index for -index, or null
   static String indentString;     // incremental left indent
+  static int keepDepth;           // maximum depth of subfolders kept in memory
+  static boolean keepFlag;        // true if we keep data for all subfolders
+  static boolean linkFlag;        // true if hard links are counted only once
+  static int listSeconds;         // seconds to list one folder (-wt=#), or 0
   static int messageLevel;        // controls the amount of detail to report
-  static boolean mswinFlag;       // true if running on Microsoft Windows
+  static boolean mswinFlag = System.getProperty("os.name").startsWith(
+    "Windows");                   // true if running on Microsoft Windows
+  static boolean nioFlag;         // true if java.nio.file reads attributes
+  static boolean oneFlag;         // true if staying on one file system (-o1)
+  static StringBuilder outputBuffer; // one line of output, reused each time
+  static char[] outputChars;      // characters copied from <outputBuffer>
+  static Charset outputCharset;   // character set for output
+  static boolean outputError;     // true if output can't be written
+  static Writer outputWriter;     // buffered output with character set
+  static int parallelCount;       // number of parallel threads, 0 for serial
+  static int pipelineCount;       // number of pipelined threads, 0 for none
+  static ShowFolderSize1Progress progress; // counts and times for -t, or null
+  static int progressSeconds;     // seconds between progress lines, 0 for none
   static int reportDepth;         // maximum depth of subfolders to report
+  static int reportStyle;         // text, CSV, JSON, or binary (-v0 to -v3)
+  static ShowFolderSize1Report reportWriter; // prints each folder's data
+  static ShowFolderSize1Scanner scanner; // searches with options from main()
   static int searchDepth;         // maximum depth of subfolders to search
+  static ShowFolderSize1Snapshot snapLoaded; // snapshot for -load, or null
+  static ShowFolderSize1Snapshot snapSaved; // snapshot for -save, or null
+  static int servePort;           // local port for -serve, or 0 for none
+  static int sortOrder;           // order for printing subfolders (-sort)
+  static int topCount;            // number of largest folders and files, or 0
 
 /*
   main() method
@@ -96,40 +387,73 @@ public class ShowFolderSize1
 */
   public static void main(String[] args)
   {
+    long errorcount;              // folders and files that couldn't be read
     int foldercount;              // number of folders on command line
+    ShowFolderSize1Data folderdata; // data object for one folder, or null
+    CountDownLatch[] folderdone;  // released as each folder is searched
     Vector folderlist;            // folder names from the command line
+    String foldername;            // one folder name from the command line
+    ShowFolderSize1Data[] folderresults; // data for each folder, or null
     int i;                        // index variable
+    String indexname;             // index file name for -index, or null
+    Vector limitlist;             // "#:folder" strings for -q=#:folder
+    String loadname;              // snapshot file name for -load, or null
+    ShowFolderSize1Options options; // options for searching, from ours
+    long printStart;              // System.nanoTime() when printing started
+    java.util.Timer progressTimer; // thread for progress lines, or null
+    String queryname;             // index file name for -query, or null
+    String savename;              // snapshot file name for -save, or null
+    ShowFolderSize1Server server; // resident mode for -serve, or null
     String word;                  // one parameter from command line
 
     /* Initialize global and local variables. */
 
+    allocBlock = 0;               // allocation unit from each file system
+    allocFlag = false;            // show only file sizes, not allocated
     caseFlag = false;             // ignore uppercase/lowercase in names
+    compactFlag = false;          // keep subfolders as separate objects
     csvFlag = false;              // default to formatted output, not CSV
+    detailFlag = false;           // no file size histogram or file types
+    diffMinimum = 0;              // show all changes, no matter how small
+    diffCursor = null;            // older snapshot not open yet
+    diffNewer = diffOlder = null; // not comparing snapshots
+    errorFlag = false;            // count unreadable paths, don't list them
+    estimateLevel = 0;            // search all subfolders, exact totals
+    estimateSeconds = 0;          // fixed sample without time limit
+    excludeList = new Vector();   // no filters for names
     fixFactor = 0.0;              // no forced scale factor for sizes
     fixSuffix = null;             // no forced suffix units for sizes
     folderlist = new Vector();    // no folders found on command line
+    includeList = new Vector();
     indentString = DEFAULT_INDENT; // default incremental left indent
+    indexname = queryname = null; // no index files
+    indexSaved = null;
+    keepDepth = DEFAULT_REPORT;   // set after all options are known
+    keepFlag = false;             // keep only subfolders that we report
+    linkFlag = false;             // count every hard link as a separate file
+    limitlist = new Vector();     // no limits for folders (mounts)
+    listSeconds = 0;              // wait as long as it takes to list
+    loadname = savename = null;   // no snapshot files
+    progressTimer = null;         // no progress lines
     messageLevel = 1;             // default to report cumulative totals
-    mswinFlag = System.getProperty("os.name").startsWith("Windows");
+    nioFlag = true;               // default to one attribute read per file
+    oneFlag = false;              // search all file systems (mounts)
+    outputCharset = Charset.defaultCharset(); // locale's default characters
+    parallelCount = 0;            // default to searching on one thread
+    pipelineCount = 0;            // default to no pipelined search
+    progress = null;              // no progress until we know we need it
+    progressSeconds = 0;          // default to no progress or timing
     reportDepth = DEFAULT_REPORT; // default subfolder depth to report
+    reportStyle = REPORT_TEXT;    // default to formatted text
     searchDepth = DEFAULT_SEARCH; // default subfolder depth to search
+    scanner = null;               // no searching until options are known
+    servePort = 0;                // exit after report, don't serve
+    sortOrder = SORT_NAME;        // default to sorting subfolders by name
+    server = null;                // no resident mode until search is done
+    snapLoaded = snapSaved = null; // no snapshots until files are opened
+    topCount = 0;                 // normal report, not largest folders
 
-    /* Initialize number formatting styles. */
-
-    formatComma = NumberFormat.getInstance(); // current locale
-    formatComma.setGroupingUsed(true); // use commas or digit groups
-
-    formatPointOne = NumberFormat.getInstance(); // current locale
-    formatPointOne.setGroupingUsed(true); // use commas or digit groups
-    formatPointOne.setMaximumFractionDigits(1); // force one decimal digit
-    formatPointOne.setMinimumFractionDigits(1);
-
-    formatPointTwo = NumberFormat.getInstance(); // current locale
-    formatPointTwo.setGroupingUsed(true); // use commas or digit groups
-    formatPointTwo.setMaximumFractionDigits(2); // force two decimal digits
-    formatPointTwo.setMinimumFractionDigits(2);
-
-    formatUser = formatPointOne;  // normally format file sizes with this
+    formatSetup();                // number formats for current locale
 
     /* Check command-line parameters for options.  Anything we don't recognize
     as an option is assumed to be a folder name. */
@@ -151,6 +475,19 @@ public class ShowFolderSize1
         System.exit(EXIT_UNKNOWN); // exit application after printing help
       }
 
+      /* How subfolder data is kept in memory until printed.  Data objects
+      with hash tables are easy to understand but use much more memory than
+      compact arrays.  Both are sorted only when printed. */
+
+      else if (word.equals("-a0") || (mswinFlag && word.equals("/a0")))
+      {
+        compactFlag = false;      // keep subfolders as separate objects
+      }
+      else if (word.equals("-a1") || (mswinFlag && word.equals("/a1")))
+      {
+        compactFlag = true;       // keep subfolders in compact arrays
+      }
+
       /* Forced scale factors for formatted file sizes (not alphabetical). */
 
       else if (word.equals("-b") || (mswinFlag && word.equals("/b")))
@@ -196,6 +533,171 @@ public class ShowFolderSize1
         caseFlag = false;         // ignore uppercase/lowercase in names
       }
 
+      /* Order of subfolders in the report, by name or size. */
+
+      else if (word.equals("-sort=name") || (mswinFlag
+        && word.equals("/sort=name")))
+      {
+        sortOrder = SORT_NAME;    // by name, case from -c option
+      }
+      else if (word.equals("-sort=natural") || (mswinFlag
+        && word.equals("/sort=natural")))
+      {
+        sortOrder = SORT_NATURAL; // by name, with numbers by value
+      }
+      else if (word.equals("-sort=size") || (mswinFlag
+        && word.equals("/sort=size")))
+      {
+        sortOrder = SORT_SIZE;    // largest subfolders first
+      }
+      else if (word.startsWith("-sort") || (mswinFlag
+        && word.startsWith("/sort")))
+      {
+        System.err.println("Order must be -sort=name, natural, or size: "
+          + args[i]);             // not an -s# option either
+        showHelp();               // show help summary
+        System.exit(EXIT_FAILURE); // exit application after printing help
+      }
+
+      /* File sizes rounded up to whole blocks, in addition to their sizes.
+      Files use whole blocks on disk, so small files take more space than their
+      sizes, especially on file systems with large blocks.  Sparse files aren't
+      detected. */
+
+      else if (word.equals("-d0") || (mswinFlag && word.equals("/d0")))
+      {
+        allocFlag = false;        // show only file sizes
+      }
+      else if (word.equals("-d1") || (mswinFlag && word.equals("/d1")))
+      {
+        allocBlock = 0;           // allocation unit from each file system
+        allocFlag = true;         // also show allocated sizes
+      }
+      else if (word.startsWith("-d=") || (mswinFlag
+        && word.startsWith("/d=")))
+      {
+        allocBlock = parseSize(word.substring(3)); // bytes, maybe scaled
+        allocFlag = true;         // also show allocated sizes
+        if (allocBlock < 1)
+        {
+          System.err.println("Allocation unit must be a number of bytes: "
+            + args[i]);           // notify user of our arbitrary limits
+          showHelp();             // show help summary
+          System.exit(EXIT_FAILURE); // exit application after printing help
+        }
+      }
+
+      /* Skip folders and files by name, or count only some files.  Patterns
+      keep their original uppercase and lowercase. */
+
+      else if (word.startsWith("-exclude=") || (mswinFlag
+        && word.startsWith("/exclude=")))
+      {
+        try { new ShowFolderSize1Options().withExclude(args[i]
+          .substring(9)); }
+        catch (IllegalArgumentException iae)
+        {
+          System.err.println("Invalid pattern for -exclude option: " + args[i]
+            + " (" + iae.getMessage() + ")");
+          showHelp();             // show help summary
+          System.exit(EXIT_FAILURE); // exit application after printing help
+        }
+        excludeList.add(args[i].substring(9)); // compiled by scanner later
+      }
+      else if (word.startsWith("-include=") || (mswinFlag
+        && word.startsWith("/include=")))
+      {
+        try { new ShowFolderSize1Options().withInclude(args[i]
+          .substring(9)); }
+        catch (IllegalArgumentException iae)
+        {
+          System.err.println("Invalid pattern for -include option: " + args[i]
+            + " (" + iae.getMessage() + ")");
+          showHelp();             // show help summary
+          System.exit(EXIT_FAILURE); // exit application after printing help
+        }
+        includeList.add(args[i].substring(9));
+      }
+
+      /* Estimates from a random sample of subfolders, for quick answers on
+      very large trees.  Must come after -exclude, which also starts with -e. */
+
+      else if (word.startsWith("-et=") || (mswinFlag
+        && word.startsWith("/et=")))
+      {
+        /* This option is followed by a positive integer for the number of
+        seconds to keep sampling subfolders for each top-level folder. */
+
+        try { estimateSeconds = Integer.parseInt(word.substring(4)); }
+        catch (NumberFormatException nfe) { estimateSeconds = -1; }
+        if ((estimateSeconds < 1) || (estimateSeconds > 99999))
+        {
+          System.err.println("Sampling seconds must be from 1 to 99999: "
+            + args[i]);           // notify user of our arbitrary limits
+          showHelp();             // show help summary
+          System.exit(EXIT_FAILURE); // exit application after printing help
+        }
+      }
+      else if (word.startsWith("-e") || (mswinFlag && word.startsWith("/e")))
+      {
+        /* This option is followed by a non-negative integer for the number of
+        folder levels listed completely before subfolders are sampled.  Zero
+        means no sampling (exact totals). */
+
+        try { estimateLevel = Integer.parseInt(word.substring(2)); }
+        catch (NumberFormatException nfe) { estimateLevel = -1; }
+        if ((estimateLevel < 0) || (estimateLevel > 999))
+        {
+          System.err.println("Levels before sampling must be from 0 to 999: "
+            + args[i]);           // notify user of our arbitrary limits
+          showHelp();             // show help summary
+          System.exit(EXIT_FAILURE); // exit application after printing help
+        }
+      }
+
+      /* How we get the type and size of each file or subfolder.  The older
+      java.io.File methods make a separate system call for isDirectory(),
+      isFile(), and length().  The java.nio.file package reads all basic
+      attributes at once.  Both give the same results, so the older method is
+      kept mainly for comparing speed. */
+
+      else if (word.equals("-f0") || (mswinFlag && word.equals("/f0")))
+      {
+        nioFlag = false;          // separate java.io.File calls per file
+      }
+      else if (word.equals("-f1") || (mswinFlag && word.equals("/f1")))
+      {
+        nioFlag = true;           // java.nio.file reads attributes once
+      }
+
+      /* Hard links.  Backup trees often have the same file in many folders,
+      as hard links to one device and inode.  Normally each link is counted as
+      a separate file. */
+
+      else if (word.equals("-h0") || (mswinFlag && word.equals("/h0")))
+      {
+        linkFlag = false;         // count every hard link as a file
+      }
+      else if (word.equals("-h1") || (mswinFlag && word.equals("/h1")))
+      {
+        linkFlag = true;          // count each device and inode only once
+      }
+
+      /* Index files for looking up folders later without searching.  File
+      names keep their original uppercase/lowercase.  These come before -i#
+      and -q# because they start with the same letters. */
+
+      else if (word.startsWith("-index=") || (mswinFlag
+        && word.startsWith("/index=")))
+      {
+        indexname = args[i].substring(7); // index to save after search
+      }
+      else if (word.startsWith("-query=") || (mswinFlag
+        && word.startsWith("/query=")))
+      {
+        queryname = args[i].substring(7); // index to read instead of search
+      }
+
       /* Incremental left indent.  Not everyone wants two spaces! */
 
       else if (word.startsWith("-i") || (mswinFlag && word.startsWith("/i")))
@@ -218,6 +720,79 @@ public class ShowFolderSize1
         indentString = new String(spaces); // and convert to a string
       }
 
+      /* Memory used for subfolders.  A folder's totals always include all of
+      its subfolders, but only subfolders within the report depth are needed
+      for printing.  Deeper subfolders are normally discarded once they have
+      been added to their parent, so memory depends upon how much is reported,
+      not how much is searched. */
+
+      else if (word.equals("-k0") || (mswinFlag && word.equals("/k0")))
+      {
+        keepFlag = false;         // keep only subfolders that we report
+      }
+      else if (word.equals("-k1") || (mswinFlag && word.equals("/k1")))
+      {
+        keepFlag = true;          // keep data for all subfolders searched
+      }
+
+      /* Snapshot files for incremental searches.  File names keep their
+      original uppercase/lowercase. */
+
+      else if (word.startsWith("-load=") || (mswinFlag
+        && word.startsWith("/load=")))
+      {
+        loadname = args[i].substring(6); // snapshot to load before search
+      }
+      else if (word.startsWith("-save=") || (mswinFlag
+        && word.startsWith("/save=")))
+      {
+        savename = args[i].substring(6); // snapshot to save after search
+      }
+
+      /* Resident mode: keep running, watch folders for changes, and send
+      reports to a local socket. */
+
+      else if (word.startsWith("-serve=") || (mswinFlag
+        && word.startsWith("/serve=")))
+      {
+        try { servePort = Integer.parseInt(word.substring(7)); }
+        catch (NumberFormatException nfe) { servePort = -1; }
+        if ((servePort < 1) || (servePort > 65535))
+        {
+          System.err.println("Local port for reports must be from 1 to 65535: "
+            + args[i]);           // notify user of our arbitrary limits
+          showHelp();             // show help summary
+          System.exit(EXIT_FAILURE); // exit application after printing help
+        }
+      }
+      else if (word.startsWith("-diff=") || (mswinFlag
+        && word.startsWith("/diff=")))
+      {
+        if (diffOlder == null)    // first snapshot is always the older one
+          diffOlder = args[i].substring(6);
+        else if (diffNewer == null) // second snapshot replaces a search
+          diffNewer = args[i].substring(6);
+        else
+        {
+          System.err.println("No more than two snapshots for -diff option: "
+            + args[i]);           // notify user of our arbitrary limits
+          showHelp();             // show help summary
+          System.exit(EXIT_FAILURE); // exit application after printing help
+        }
+      }
+      else if (word.startsWith("-min=") || (mswinFlag
+        && word.startsWith("/min=")))
+      {
+        diffMinimum = parseSize(word.substring(5)); // bytes, maybe scaled
+        if (diffMinimum < 0)
+        {
+          System.err.println("Minimum change must be a number of bytes: "
+            + args[i]);           // notify user of our arbitrary limits
+          showHelp();             // show help summary
+          System.exit(EXIT_FAILURE); // exit application after printing help
+        }
+      }
+
       /* Control the amount of detail reported about each folder. */
 
       else if (word.equals("-m0") || (mswinFlag && word.equals("/m0")))
@@ -233,6 +808,77 @@ public class ShowFolderSize1
         messageLevel = 2;         // permission to be totally excessive
       }
 
+      /* Stay on one file system (device), like "du -x" or "find -xdev". */
+
+      else if (word.equals("-o0") || (mswinFlag && word.equals("/o0")))
+      {
+        oneFlag = false;          // search all file systems
+      }
+      else if (word.equals("-o1") || (mswinFlag && word.equals("/o1")))
+      {
+        oneFlag = true;           // don't cross into other file systems
+      }
+
+      /* Number of parallel threads for searching subfolders. */
+
+      else if (word.startsWith("-p") || (mswinFlag && word.startsWith("/p")))
+      {
+        /* This option is followed by a non-negative integer for the number of
+        threads in a work-stealing (fork-join) pool.  Zero means the original
+        serial search on the main thread. */
+
+        try { parallelCount = Integer.parseInt(word.substring(2)); }
+        catch (NumberFormatException nfe) { parallelCount = -1; }
+        if ((parallelCount < 0) || (parallelCount > 999))
+        {
+          System.err.println("Parallel search threads must be from 0 to 999: "
+            + args[i]);           // notify user of our arbitrary limits
+          showHelp();             // show help summary
+          System.exit(EXIT_FAILURE); // exit application after printing help
+        }
+      }
+
+      /* Pipelined search for network drives, and limits for each mount. */
+
+      else if (word.startsWith("-q=") || (mswinFlag
+        && word.startsWith("/q=")))
+      {
+        /* This option is followed by a positive integer, a colon, and a folder
+        name.  The folder name keeps its original uppercase and lowercase. */
+
+        int colon = word.indexOf(':', 3); // end of number, start of folder
+        int limit;                // maximum folders listed at once
+        try { limit = Integer.parseInt(word.substring(3, ((colon < 0)
+          ? word.length() : colon))); }
+        catch (NumberFormatException nfe) { limit = -1; }
+        if ((colon < 0) || (colon == (word.length() - 1)) || (limit < 1)
+          || (limit > 9999))
+        {
+          System.err.println(
+            "Folder limit must be from 1 to 9999, then a colon and a folder: "
+            + args[i]);           // notify user of our arbitrary limits
+          showHelp();             // show help summary
+          System.exit(EXIT_FAILURE); // exit application after printing help
+        }
+        limitlist.add(args[i].substring(3)); // check folder name later
+      }
+
+      else if (word.startsWith("-q") || (mswinFlag && word.startsWith("/q")))
+      {
+        /* This option is followed by a non-negative integer for the number of
+        threads listing folders in a pipeline.  Zero means no pipeline. */
+
+        try { pipelineCount = Integer.parseInt(word.substring(2)); }
+        catch (NumberFormatException nfe) { pipelineCount = -1; }
+        if ((pipelineCount < 0) || (pipelineCount > 9999))
+        {
+          System.err.println("Pipelined search threads must be from 0 to 9999: "
+            + args[i]);           // notify user of our arbitrary limits
+          showHelp();             // show help summary
+          System.exit(EXIT_FAILURE); // exit application after printing help
+        }
+      }
+
       /* Subfolder report depth and subfolder search depth. */
 
       else if (word.startsWith("-r") || (mswinFlag && word.startsWith("/r")))
@@ -267,19 +913,129 @@ public class ShowFolderSize1
         }
       }
 
+      /* Show only the largest folders and files. */
+
+      else if (word.startsWith("-top") || (mswinFlag
+        && word.startsWith("/top")))
+      {
+        /* This option is followed by a positive integer for the number of
+        folders and the number of files to show. */
+
+        try { topCount = Integer.parseInt(word.substring(4)); }
+        catch (NumberFormatException nfe) { topCount = -1; }
+        if ((topCount < 1) || (topCount > 99999))
+        {
+          System.err.println("Largest folders must be from 1 to 99999: "
+            + args[i]);           // notify user of our arbitrary limits
+          showHelp();             // show help summary
+          System.exit(EXIT_FAILURE); // exit application after printing help
+        }
+      }
+
+      /* Progress on standard error while searching, and a summary of time
+      spent at the end. */
+
+      else if (word.startsWith("-t") || (mswinFlag && word.startsWith("/t")))
+      {
+        /* This option is followed by a non-negative integer for the number of
+        seconds between progress lines.  Zero means no progress (default). */
+
+        try { progressSeconds = Integer.parseInt(word.substring(2)); }
+        catch (NumberFormatException nfe) { progressSeconds = -1; }
+        if ((progressSeconds < 0) || (progressSeconds > 99999))
+        {
+          System.err.println("Progress seconds must be from 0 to 99999: "
+            + args[i]);           // notify user of our arbitrary limits
+          showHelp();             // show help summary
+          System.exit(EXIT_FAILURE); // exit application after printing help
+        }
+      }
+
+      /* Character set for output.  Folder names in other languages need UTF-8
+      (Unicode) if the locale's default can't show them. */
+
+      else if (word.equals("-u0") || (mswinFlag && word.equals("/u0")))
+      {
+        outputCharset = Charset.defaultCharset(); // locale's default
+      }
+      else if (word.equals("-u") || (mswinFlag && word.equals("/u"))
+        || word.equals("-u1") || (mswinFlag && word.equals("/u1")))
+      {
+        outputCharset = StandardCharsets.UTF_8; // Unicode
+      }
+      else if (word.startsWith("-u=") || (mswinFlag
+        && word.startsWith("/u=")))
+      {
+        try { outputCharset = Charset.forName(args[i].substring(3)); }
+        catch (IllegalArgumentException iae)
+        {
+          System.err.println("Character set not supported: " + args[i]);
+          showHelp();             // show help summary
+          System.exit(EXIT_FAILURE); // exit application after printing help
+        }
+      }
+
       /* Output as comma-separated values for importing into Microsoft Excel
       and other applications.  Overrides our own formatting options, because
       spreadsheets are easier to format and to change.  This option requires
-      some reading of the source code to know what the output values are. */
+      some reading of the source code to know what the output values are.
+      JSON Lines and binary columns are for other programs. */
 
       else if (word.equals("-v") || (mswinFlag && word.equals("/v"))
         || word.equals("-v1") || (mswinFlag && word.equals("/v1")))
       {
-        csvFlag = true;           // output as comma-separated values
+        reportStyle = REPORT_CSV; // output as comma-separated values
       }
       else if (word.equals("-v0") || (mswinFlag && word.equals("/v0")))
       {
-        csvFlag = false;          // output with our formatting styles
+        reportStyle = REPORT_TEXT; // output with our formatting styles
+      }
+      else if (word.equals("-v2") || (mswinFlag && word.equals("/v2")))
+      {
+        reportStyle = REPORT_JSON; // output as JSON Lines
+      }
+      else if (word.equals("-v3") || (mswinFlag && word.equals("/v3")))
+      {
+        reportStyle = REPORT_BINARY; // output as binary columns
+      }
+
+      /* Folders and files that can't be read, and folders that take too long
+      to list (stuck network mounts). */
+
+      else if (word.equals("-w0") || (mswinFlag && word.equals("/w0")))
+      {
+        errorFlag = false;        // only count unreadable paths
+      }
+      else if (word.equals("-w1") || (mswinFlag && word.equals("/w1")))
+      {
+        errorFlag = true;         // also list unreadable paths
+      }
+      else if (word.startsWith("-wt=") || (mswinFlag
+        && word.startsWith("/wt=")))
+      {
+        /* This option is followed by a positive integer for the number of
+        seconds to wait for the listing of any one folder. */
+
+        try { listSeconds = Integer.parseInt(word.substring(4)); }
+        catch (NumberFormatException nfe) { listSeconds = -1; }
+        if ((listSeconds < 1) || (listSeconds > 99999))
+        {
+          System.err.println("Listing seconds must be from 1 to 99999: "
+            + args[i]);           // notify user of our arbitrary limits
+          showHelp();             // show help summary
+          System.exit(EXIT_FAILURE); // exit application after printing help
+        }
+      }
+
+      /* Histogram of file sizes and bytes by file type for each folder. */
+
+      else if (word.equals("-x0") || (mswinFlag && word.equals("/x0")))
+      {
+        detailFlag = false;       // only the usual totals
+      }
+      else if (word.equals("-x1") || (mswinFlag && word.equals("/x1")))
+      {
+        detailFlag = true;        // also file sizes and file types
       }
 
       /* Anything that looks like an option but which we don't recognize. */
@@ -299,47 +1055,351 @@ public class ShowFolderSize1
 
     /* All command-line parameters have been successfully parsed. */
 
-    if (folderlist.size() == 0)   // were there any folders found?
+    if ((diffOlder != null) && (topCount > 0)) // two different reports?
     {
-      showHelp();                 // show help summary                          // standard code
-      System.exit(EXIT_UNKNOWN);  // exit application after printing help       // standard code
-//    folderlist.add(".");        // use the current directory instead          // optional code
+      System.err.println("The -diff and -top options can't be used together.");
+      showHelp();                 // show help summary
+      System.exit(EXIT_FAILURE);  // exit application after printing help
     }
-    if (csvFlag)                  // output as raw comma-separated values?
+    if ((reportStyle > REPORT_CSV) && ((diffOlder != null) || (topCount > 0)))
     {
-      /* Column headers (titles) for CSV output.  Must match the printData()
-      method.  Comment out lines for fields you don't want.  This text is for
-      explaining the data fields.  Users can and should replace the text or
-      reformat it for their purposes.  In other words, edit your spreadsheet;
-      don't expect this program to do it for you. */
-
-      System.out.println(""
-//      + CSV_QUOTE + "Subfolder Depth" + CSV_QUOTE + CSV_COMMA                 // optional code
-        + CSV_QUOTE + "Folder Name" + CSV_QUOTE
-        + CSV_COMMA + CSV_QUOTE + "Folder Bytes" + CSV_QUOTE
-        + CSV_COMMA + CSV_QUOTE + "Folder Files" + CSV_QUOTE
-        + CSV_COMMA + CSV_QUOTE + "Folder Subfolders" + CSV_QUOTE
-        + CSV_COMMA + CSV_QUOTE + "Subfolder Bytes" + CSV_QUOTE
-        + CSV_COMMA + CSV_QUOTE + "Subfolder Files" + CSV_QUOTE
-        + CSV_COMMA + CSV_QUOTE + "Subfolder Folders" + CSV_QUOTE
-        + CSV_COMMA + CSV_QUOTE + "Total Bytes" + CSV_QUOTE
-        + CSV_COMMA + CSV_QUOTE + "Total Files" + CSV_QUOTE
-        + CSV_COMMA + CSV_QUOTE + "Total Subfolders" + CSV_QUOTE
-        );
+      System.err.println("The -diff and -top options only have text or CSV"
+        + " output (-v0 or -v1).");
+      showHelp();                 // show help summary
+      System.exit(EXIT_FAILURE);  // exit application after printing help
     }
-    foldercount = folderlist.size(); // get the number of folders
-    for (i = 0; i < foldercount; i ++) // for each folder found
+    if ((reportStyle == REPORT_BINARY) && (servePort > 0)) // not for sockets
     {
-      String foldername = (String) folderlist.get(i); // get folder name
-      ShowFolderSize1Data folderdata = searchFolder(0, new File(foldername));
-      if (folderdata == null)     // was folder search successful?
-      {
+      System.err.println("The -serve option can't be used with -v3.");
+      showHelp();                 // show help summary
+      System.exit(EXIT_FAILURE);  // exit application after printing help
+    }
+    csvFlag = (reportStyle == REPORT_CSV); // also for -diff and -top
+    if ((servePort > 0) && (compactFlag || (diffOlder != null) || linkFlag
+      || (topCount > 0) || detailFlag)) // can't update these when watching
+    {
+      System.err.println(
+        "The -serve option can't be used with -a1, -diff, -h1, -top, or -x1.");
+      showHelp();                 // show help summary
+      System.exit(EXIT_FAILURE);  // exit application after printing help
+    }
+    if ((estimateLevel > 0) && (compactFlag || (diffOlder != null)
+      || (indexname != null) || (pipelineCount > 0) || (savename != null)
+      || (servePort > 0) || (topCount > 0) || (reportStyle == REPORT_BINARY)
+      || detailFlag))
+    {
+      System.err.println("The -e# option can't be used with -a1, -diff,"
+        + " -index, -q#, -save, -serve, -top, -v3, or -x1.");
+      showHelp();                 // show help summary
+      System.exit(EXIT_FAILURE);  // exit application after printing help
+    }
+    if ((estimateSeconds > 0) && (estimateLevel == 0)) // time for nothing?
+    {
+      System.err.println("Option -et=# needs -e# for estimates.");
+      showHelp();                 // show help summary
+      System.exit(EXIT_FAILURE);  // exit application after printing help
+    }
+    if ((queryname != null) && ((diffOlder != null) || (estimateLevel > 0)
+      || (indexname != null) || (loadname != null) || (savename != null)
+      || (servePort > 0) || (topCount > 0) || detailFlag)) // no searching
+    {
+      System.err.println("The -query option can't be used with -diff, -e#,"
+        + " -index, -load, -save, -serve, -top, or -x1.");
+      showHelp();                 // show help summary
+      System.exit(EXIT_FAILURE);  // exit application after printing help
+    }
+    if (servePort > 0)            // all subfolders are needed for updates
+      keepFlag = true;
+    if ((folderlist.size() == 0) && (diffNewer == null)
+      && (queryname == null))     // any folders?
+    {
+      showHelp();                 // show help summary                          // standard code
+      System.exit(EXIT_UNKNOWN);  // exit application after printing help       // standard code
+//    folderlist.add(".");        // use the current directory instead          // optional code
+    }
+    outputBuffer = new StringBuilder(); // reused for each line of output
+    outputChars = new char[256];  // grows with longest line
+    outputError = false;          // no errors writing output yet
+    outputWriter = new BufferedWriter(new OutputStreamWriter(
+      new FileOutputStream(FileDescriptor.out), outputCharset), 65536);
+    if (csvFlag && (diffOlder != null)) // comma-separated values for -diff?
+    {
+      /* Column headers (titles) for CSV output.  Must match the printDiff()
+      method. */
+
+      outputBuffer.append(""
+        + CSV_QUOTE + "Folder Name" + CSV_QUOTE
+        + CSV_COMMA + CSV_QUOTE + "Older Bytes" + CSV_QUOTE
+        + CSV_COMMA + CSV_QUOTE + "Newer Bytes" + CSV_QUOTE
+        + CSV_COMMA + CSV_QUOTE + "Change Bytes" + CSV_QUOTE
+        + CSV_COMMA + CSV_QUOTE + "Older Files" + CSV_QUOTE
+        + CSV_COMMA + CSV_QUOTE + "Newer Files" + CSV_QUOTE
+        + CSV_COMMA + CSV_QUOTE + "Change Files" + CSV_QUOTE
+        + CSV_COMMA + CSV_QUOTE + "Older Subfolders" + CSV_QUOTE
+        + CSV_COMMA + CSV_QUOTE + "Newer Subfolders" + CSV_QUOTE
+        + CSV_COMMA + CSV_QUOTE + "Change Subfolders" + CSV_QUOTE
+        );
+      printLine();
+    }
+    else if (csvFlag && (topCount > 0)) // comma-separated values for -top?
+    {
+      /* Column headers (titles) for CSV output.  Must match the printTop()
+      method. */
+
+      outputBuffer.append(""
+        + CSV_QUOTE + "Type" + CSV_QUOTE
+        + CSV_COMMA + CSV_QUOTE + "Full Path" + CSV_QUOTE
+        + CSV_COMMA + CSV_QUOTE + "Bytes" + CSV_QUOTE
+        + CSV_COMMA + CSV_QUOTE + "Files" + CSV_QUOTE
+        );
+      printLine();
+    }
+    reportSetup();                // text, CSV, JSON, or binary for folders
+    if ((diffOlder == null) && (topCount == 0)) // normal report for folders?
+      reportWriter.begin();       // CSV column headers, etc
+    if (loadname != null)         // load a snapshot from a previous search?
+    {
+      try { snapLoaded = ShowFolderSize1Snapshot.load(loadname); }
+      catch (IOException ioe)
+      {
+        System.err.println("Can't load snapshot file " + loadname + ": "
+          + ioe.getMessage());
+        System.exit(EXIT_FAILURE); // exit application after printing error
+      }
+    }
+    if (savename != null)         // save a snapshot after this search?
+    {
+      keepFlag = true;            // snapshot needs all subfolders searched
+      try { snapSaved = ShowFolderSize1Snapshot.create(savename); }
+      catch (IOException ioe)
+      {
+        System.err.println("Can't create snapshot file " + savename + ": "
+          + ioe.getMessage());
+        System.exit(EXIT_FAILURE); // exit application after printing error
+      }
+    }
+    if (indexname != null)        // save an index after this search?
+    {
+      keepFlag = true;            // index needs all subfolders searched
+      try { indexSaved = ShowFolderSize1Index.create(indexname); }
+      catch (IOException ioe)
+      {
+        System.err.println("Can't create index file " + indexname + ": "
+          + ioe.getMessage());
+        System.exit(EXIT_FAILURE); // exit application after printing error
+      }
+    }
+    if (diffNewer != null)        // compare two snapshots, no searching?
+    {
+      scanner = new ShowFolderSize1Scanner(new ShowFolderSize1Options()
+        .withCase(caseFlag));     // only for sorting subfolders
+      try { diffSnapshots(); }
+      catch (IOException ioe)
+      {
+        printFlush();             // show output before error message
+        System.err.println("Can't compare snapshot files " + diffOlder
+          + " and " + diffNewer + ": " + ioe.getMessage());
+        System.exit(EXIT_FAILURE); // exit application after printing error
+      }
+      printFlush();               // write any buffered output
+      System.exit(EXIT_SUCCESS);
+    }
+    if (queryname != null)        // report from an index, no searching?
+    {
+      scanner = new ShowFolderSize1Scanner(new ShowFolderSize1Options()
+        .withCase(caseFlag));     // only for sorting subfolders
+      try { queryIndex(queryname, folderlist); }
+      catch (IOException ioe)
+      {
+        printFlush();             // show output before error message
+        System.err.println("Can't query index file " + queryname + ": "
+          + ioe.getMessage());
+        System.exit(EXIT_FAILURE); // exit application after printing error
+      }
+      reportWriter.finish();      // binary columns are written at the end
+      printFlush();               // write any buffered output
+      System.exit(EXIT_SUCCESS);
+    }
+    if (keepFlag)                 // keep data for all subfolders searched?
+      keepDepth = searchDepth;
+    else if (topCount > 0)        // nothing kept below top-level folders
+      keepDepth = 0;
+    else                          // keep only subfolders that we report
+      keepDepth = reportDepth;
+    options = scanOptions();      // everything else belongs to the scanner
+    for (i = 0; i < limitlist.size(); i ++) // limits for folders (mounts)
+    {
+      String limitword = (String) limitlist.get(i); // "#:folder"
+      int colon = limitword.indexOf(':'); // there is always a colon
+      try
+      {
+        options = options.withLimit(new File(limitword.substring(colon + 1))
+          .getCanonicalPath(), Integer.parseInt(limitword.substring(0,
+          colon)));
+      }
+      catch (IOException ioe)
+      {
+        System.err.println("Can't find folder for -q=#:folder option: "
+          + limitword + ": " + ioe.getMessage());
+        System.exit(EXIT_FAILURE); // exit application after printing error
+      }
+    }
+    try { scanner = new ShowFolderSize1Scanner(options); }
+    catch (IllegalArgumentException iae) // options can't be used together
+    {
+      System.err.println(iae.getMessage());
+      System.exit(EXIT_FAILURE);  // exit application after printing error
+    }
+    if (snapLoaded != null)       // folder totals from -load, if any
+      scanner.setLoaded(snapLoaded.roots, snapLoaded.searchDepth);
+    if (progressSeconds > 0)      // progress lines from a timer thread?
+    {
+      progress = scanner.startProgress(); // counts and times from threads
+      progressTimer = new java.util.Timer(true); // daemon, won't block exit
+      progressTimer.scheduleAtFixedRate(progress, (progressSeconds * 1000L),
+        (progressSeconds * 1000L));
+    }
+    errorcount = 0;               // no unreadable folders or files yet
+    foldercount = folderlist.size(); // get the number of folders
+    folderdone = null;            // assume one folder at a time
+    folderresults = new ShowFolderSize1Data[foldercount];
+    if ((foldercount > 1) && ((parallelCount > 0) || (pipelineCount > 0))
+      && (linkFlag == false))     // search all folders at the same time?
+    {
+      scanner.resetCompact();     // one set of compact arrays for all folders
+      folderdone = ShowFolderSize1Device.startAll(folderlist, folderresults);
+    }
+    for (i = 0; i < foldercount; i ++) // for each folder found
+    {
+      foldername = (String) folderlist.get(i); // get folder name
+      if (folderdone != null)     // wait for a folder searched in background
+      {
+        try { folderdone[i].await(); }
+        catch (InterruptedException ie) { /* not expected, no result */ }
+      }
+      else                        // search this folder now
+      {
+        scanner.resetCompact();   // new compact arrays for each folder
+        folderresults[i] = scanner.searchRoot(new File(foldername));
+      }
+      folderdata = folderresults[i];
+      if (servePort == 0)         // release memory after this folder
+        folderresults[i] = null;
+      if (folderdata == null)     // was folder search successful?
+      {
+        printFlush();             // show output before error message
         System.err.println("Folder does not exist: " + foldername);
         showHelp();               // show help summary
         System.exit(EXIT_FAILURE); // exit application after printing help
       }
       else                        // parameter was a directory (folder)
-        printData(0, "", folderdata); // print folder data, no starting indent
+      {
+        errorcount += folderdata.numerror + folderdata.suberror;
+        printStart = System.nanoTime(); // timing for -t option
+        if (snapSaved != null)    // save snapshot before printing
+        {
+          try { snapSaved.writeRoot(folderdata); }
+          catch (IOException ioe)
+          {
+            printFlush();         // show output before error message
+            System.err.println("Can't write snapshot file " + savename + ": "
+              + ioe.getMessage());
+            System.exit(EXIT_FAILURE); // exit application after printing error
+          }
+        }
+        if (indexSaved != null)   // save index before printing
+        {
+          try { indexSaved.writeRoot(folderdata); }
+          catch (IOException ioe)
+          {
+            printFlush();         // show output before error message
+            System.err.println("Can't write index file " + indexname + ": "
+              + ioe.getMessage());
+            System.exit(EXIT_FAILURE); // exit application after printing error
+          }
+        }
+        if (diffOlder != null)    // compare with older snapshot?
+        {
+          try { diffFolder(new ShowFolderSize1Cursor(folderdata, reportDepth),
+            folderdata.path); }
+          catch (IOException ioe)
+          {
+            printFlush();         // show output before error message
+            System.err.println("Can't compare snapshot file " + diffOlder
+              + ": " + ioe.getMessage());
+            System.exit(EXIT_FAILURE); // exit application after printing error
+          }
+        }
+        else if (topCount == 0)   // normal report for folder
+          printData(0, "", folderdata); // print folder data, no indent
+        if (progress != null)     // add printing time for -t option
+          progress.printNanos.addAndGet(System.nanoTime() - printStart);
+      }
+    }
+    if ((diffOlder == null) && (topCount == 0)) // normal report for folders?
+      reportWriter.finish();      // binary columns are written at the end
+    if (diffCursor != null)       // older snapshot, open between folders
+    {
+      try { diffCursor.snapshot.close(); }
+      catch (IOException ioe) { /* only read, nothing is lost */ }
+    }
+    if (topCount > 0)             // largest folders and files after search
+    {
+      printStart = System.nanoTime(); // timing for -t option
+      printTop(((messageLevel == 0)
+        ? "Largest folders (not including subfolders):"
+        : "Largest folders (including subfolders):"), "folder",
+        scanner.getTopFolders());
+      printTop("Largest files:", "file", scanner.getTopFiles());
+      if (progress != null)       // add printing time for -t option
+        progress.printNanos.addAndGet(System.nanoTime() - printStart);
+    }
+    if (snapSaved != null)        // finish snapshot after all folders
+    {
+      try { snapSaved.close(); }
+      catch (IOException ioe)
+      {
+        printFlush();             // show output before error message
+        System.err.println("Can't write snapshot file " + savename + ": "
+          + ioe.getMessage());
+        System.exit(EXIT_FAILURE); // exit application after printing error
+      }
+    }
+    if (indexSaved != null)       // finish index after all folders
+    {
+      try { indexSaved.close(); }
+      catch (IOException ioe)
+      {
+        printFlush();             // show output before error message
+        System.err.println("Can't write index file " + indexname + ": "
+          + ioe.getMessage());
+        System.exit(EXIT_FAILURE); // exit application after printing error
+      }
+    }
+    printStart = System.nanoTime(); // output may still be in our buffer
+    printFlush();                 // write any buffered output
+    if (errorcount > 0)           // don't let unreadable folders look empty
+    {
+      System.err.println("Couldn't read " + formatComma.format(errorcount)
+        + " folders or files" + (errorFlag ? "." : " (-w1 to list them)."));
+    }
+    if (progress != null)         // timing summary after all output
+    {
+      progressTimer.cancel();     // stop timer thread
+      progress.printNanos.addAndGet(System.nanoTime() - printStart);
+      progress.summary();
+    }
+    if (servePort > 0)            // keep running and send reports?
+    {
+      try { server = new ShowFolderSize1Server(folderresults, servePort); }
+      catch (IOException ioe)
+      {
+        System.err.println("Can't serve reports on local port " + servePort
+          + ": " + ioe.getMessage());
+        System.exit(EXIT_FAILURE); // exit application after printing error
+      }
+      server.start();             // reports on their own thread
+      server.watch();             // watch for changes on this thread, forever
     }
     System.exit(EXIT_SUCCESS);
 
@@ -349,18 +1409,25 @@ public class ShowFolderSize1
 /*
   csvQuotedString() method
 
-  Return a string quoted for importing as a comma-separated value.  The only
+  Append a string quoted for importing as a comma-separated value.  The only
   change currently is replacing quotation marks.  Others can be added later.
+  The string may have a prefix (such as an indent), which is quoted along with
+  the string, so that the caller doesn't need to join them first.
 */
-  static String csvQuotedString(String input)
+  static void csvQuotedString(
+    StringBuilder buffer,         // line of output being built
+    String prefix,                // text before input string, may be empty
+    String input)                 // input string to be quoted
   {
-    StringBuffer buffer;          // faster than String for multiple appends
     char ch;                      // one character from input string
     int i;                        // index variable
     int length;                   // size of input string in characters
 
-    buffer = new StringBuffer();  // allocate empty string buffer for result
     buffer.append(CSV_QUOTE);     // starting (opening) quotation mark
+    if (prefix.indexOf(CSV_QUOTE) < 0) // usually spaces from an indent
+      buffer.append(prefix);
+    else                          // rare, so we don't mind the extra work
+      input = prefix + input;
     length = input.length();      // get size of input string in characters
     for (i = 0; i < length; i ++)
     {
@@ -374,122 +1441,467 @@ public class ShowFolderSize1
         buffer.append(ch);        // append one character unchanged to result
     }
     buffer.append(CSV_QUOTE);     // ending (closing) quotation mark
-    return(buffer.toString());    // give caller our converted string
 
   } // end of csvQuotedString() method
 
 
+/*
+  diffFind() method
+
+  Return a cursor for the older snapshot (-diff) at the given top-level
+  folder, or with null data if the folder isn't in the snapshot.  The file
+  stays open between top-level folders, and is only read again from the
+  beginning when a folder comes before the current position, so folders in
+  the same order on both sides are read once.
+*/
+  static ShowFolderSize1Cursor diffFind(
+    String path)                  // full path of top-level folder
+    throws IOException
+  {
+    boolean fresh;                // true if opened for this folder
+    ShowFolderSize1Snapshot snapshot; // older snapshot file
+
+    fresh = false;                // continue from current position
+    while (true)
+    {
+      if (diffCursor == null)     // first folder, or read again from start
+      {
+        snapshot = ShowFolderSize1Snapshot.open(diffOlder);
+        if (snapshot.caseFlag != caseFlag) // same order for both sides?
+        {
+          snapshot.close();
+          throw new IOException("saved with different -c option");
+        }
+        diffCursor = new ShowFolderSize1Cursor(snapshot, reportDepth);
+        fresh = true;
+      }
+      while ((diffCursor.data != null) && ((diffCursor.depth != 0)
+        || (diffCursor.data.name.equals(path) == false)))
+      {
+        diffCursor.next();        // skip until same top-level folder
+      }
+      if ((diffCursor.data != null) || fresh) // found, or not in snapshot
+        return(diffCursor);
+      diffCursor.snapshot.close(); // maybe before current position
+      diffCursor = null;
+    }
+  } // end of diffFind() method
+
+
+/*
+  diffFinish() method
+
+  Finish the rows at a depth and below, deepest first, before a new row at
+  that depth.  Each finished row is added to its parent's row if it will be
+  printed.  The top-level row is left in <rows> for the caller.
+*/
+  static void diffFinish(
+    ShowFolderSize1Change[] rows, // changes for current path at each depth
+    int depth)                    // depth of the next row
+  {
+    int i;                        // index variable
+
+    for (i = rows.length - 1; i >= Math.max(depth, 1); i --)
+    {
+      if (rows[i] != null)        // an unfinished row at this depth
+      {
+        rows[i].finish(rows[i - 1]);
+        rows[i] = null;
+      }
+    }
+    if ((depth == 0) && (rows[0] != null)) // end of top-level folder
+      rows[0].finish(null);
+
+  } // end of diffFinish() method
+
+
+
+
+/*
+  diffFolder() method
+
+  Compare one top-level folder from a search or a newer snapshot with the same
+  folder in the older snapshot, and print the changes.  Both sides are read
+  in sorted order, one folder at a time, and matched like a merge join.  Only
+  folders within <reportDepth> are compared.
+
+  Only the rows for the current path are kept while reading.  When a folder
+  is finished (the next row is not below it), it is kept in its parent's row
+  if it will be printed, and otherwise thrown away.  Printed rows have to be
+  kept until the top-level folder is finished, because each folder is
+  printed before its subfolders, and they are sorted by growth.
+*/
+  static void diffFolder(
+    ShowFolderSize1Cursor newer,  // top-level folder from search or snapshot
+    String path)                  // full path of top-level folder
+    throws IOException
+  {
+    int compare;                  // order of older and newer folders
+    boolean newerLeft, olderLeft; // true if more folders on each side
+    ShowFolderSize1Cursor older;  // same folder from older snapshot
+    ShowFolderSize1Change row;    // changes for one folder
+    ShowFolderSize1Change[] rows; // changes for current path at each depth
+
+    older = diffFind(path);       // null data if not in older snapshot
+
+    /* Match folders on both sides.  A folder missing from one side has zero
+    for all totals on that side.  Each side stops at the next top-level
+    folder, which is left for the next call. */
+
+    rows = new ShowFolderSize1Change[reportDepth + 1];
+    compare = 0;                  // top-level folders are always the same
+    newerLeft = true;
+    olderLeft = (older.data != null);
+    do
+    {
+      if (compare <= 0)           // newer folder, maybe older too
+      {
+        row = new ShowFolderSize1Change(newer.data.name);
+        row.setNewer(newer.data);
+        if ((compare == 0) && olderLeft)
+          row.setOlder(older.data);
+        diffFinish(rows, newer.depth);
+        rows[newer.depth] = row;
+        if ((compare == 0) && olderLeft)
+          older.next();
+        newer.next();
+      }
+      else                        // older folder only (deleted)
+      {
+        row = new ShowFolderSize1Change(older.data.name);
+        row.setOlder(older.data);
+        diffFinish(rows, older.depth);
+        rows[older.depth] = row;
+        older.next();
+      }
+      newerLeft = (newer.data != null) && (newer.depth != 0);
+      olderLeft = olderLeft && (older.data != null) && (older.depth != 0);
+      if (newerLeft == false)
+        compare = 1;
+      else if (olderLeft == false)
+        compare = -1;
+      else
+        compare = newer.compareTo(older);
+    } while (newerLeft || olderLeft);
+    diffFinish(rows, 0);          // finish all rows, top-level folder last
+
+    rows[0].name = path;          // full path for top-level folder
+    rows[0].wanted = true;        // always print top-level folder
+    printDiff("", rows[0]);       // print changes, no starting indent
+
+  } // end of diffFolder() method
+
+
+/*
+  diffSnapshots() method
+
+  Compare two snapshot files (-diff twice) with no searching.  Top-level
+  folders are printed in the order they appear in the newer snapshot.
+*/
+  static void diffSnapshots() throws IOException
+  {
+    ShowFolderSize1Cursor newer;  // folders from newer snapshot
+    ShowFolderSize1Snapshot snapshot; // newer snapshot file
+
+    snapshot = ShowFolderSize1Snapshot.open(diffNewer);
+    if (snapshot.caseFlag != caseFlag) // same order for both sides?
+    {
+      snapshot.close();
+      throw new IOException("saved with different -c option");
+    }
+    newer = new ShowFolderSize1Cursor(snapshot, reportDepth);
+    while (newer.data != null)    // for each top-level folder
+      diffFolder(newer, newer.data.name); // name is full path
+    snapshot.close();
+    if (diffCursor != null)       // older snapshot, open between folders
+      diffCursor.snapshot.close();
+
+  } // end of diffSnapshots() method
+
+
+/*
+  formatAlloc() method
+
+  Append sizes rounded up to blocks for the -d1 option, if requested, or
+  nothing.  There may be one size, or two sizes (folder plus subfolders) for
+  -m2.
+*/
+  static void formatAlloc(
+    StringBuilder buffer,         // line of output being built
+    long size,                    // allocated bytes
+    long subsize)                 // allocated bytes in subfolders, or -1
+  {
+    if (allocFlag)                // only if allocated sizes are requested
+    {
+      buffer.append(", ");
+      formatBytes(buffer, size);
+      if (subsize >= 0)           // second size for subfolders?
+      {
+        buffer.append(" + ");
+        formatBytes(buffer, subsize);
+      }
+      buffer.append(" rounded to blocks");
+    }
+  } // end of formatAlloc() method
+
+
 /*
   formatBytes() method
 
-  Given a number of bytes, return a formatted string with this in kilobytes,
-  megabytes, or gigabytes (whichever one is the most expressive).
+  Given a number of bytes, append a formatted string with this in kilobytes,
+  megabytes, or gigabytes (whichever one is the most expressive).  The scale
+  factors are powers of two, so the scaled size is exact, and formatNumber()
+  gets the same result as NumberFormat from the original bytes.
 */
-  static String formatBytes(long size)
+  static void formatBytes(
+    StringBuilder buffer,         // line of output being built
+    long size)                    // number of bytes
   {
+    long divisor;                 // scale factor as an integer
     String suffix;                // units string for scaled size
     double units;                 // converted size reduced from bytes
 
     if (fixFactor > 0.0)          // is there a forced scale factor?
     {
-      units = (double) size / fixFactor; // reduce bytes to fixed units
+      divisor = (long) fixFactor; // reduce bytes to fixed units
       suffix = fixSuffix;         // matching string with those units
     }
     else                          // find closest scale factor
     {
       units = (double) size / 1024.0; // reduce bytes to kilobytes
+      divisor = 1024L;
       suffix = " KB";             // matching string with those units
-      if (units > 999.4) { units = units / 1024.0; suffix = " MB"; }
-      if (units > 999.4) { units = units / 1024.0; suffix = " GB"; }
-      if (units > 999.4) { units = units / 1024.0; suffix = " TB"; }
+      if (units > 999.4)
+        { units = units / 1024.0; divisor = 1L << 20; suffix = " MB"; }
+      if (units > 999.4)
+        { units = units / 1024.0; divisor = 1L << 30; suffix = " GB"; }
+      if (units > 999.4)
+        { units = units / 1024.0; divisor = 1L << 40; suffix = " TB"; }
     }
-    return(formatUser.format(units) + suffix); // scaled into units
+    formatNumber(buffer, size, divisor, formatUser); // scaled into units
+    buffer.append(suffix);
 
   } // end of formatBytes() method
 
 
 /*
-  printData() method
+  formatChange() method
 
-  Give the data object for a folder, print the folder's name, total file size,
-  number of files, etc.  Subfolders depend upon <reportDepth>.  We indent each
-  additional level by <indentString>.
+  Append a change in bytes with a plus or minus sign, scaled the same as
+  formatBytes() for the size of the change.
 */
-  static void printData(
-    int depth,                    // current subfolder report depth
-    String indent,                // current left indent string
-    ShowFolderSize1Data givenData) // data object for this folder/subfolder
+  static void formatChange(
+    StringBuilder buffer,         // line of output being built
+    long size)                    // change in number of bytes
+  {
+    buffer.append((size < 0) ? '-' : '+');
+    formatBytes(buffer, Math.abs(size));
+
+  } // end of formatChange() method
+
+
+/*
+  formatCount() method
+
+  Append a count (files, subfolders) with digit grouping, the same as the
+  <formatComma> number formatter.
+*/
+  static void formatCount(
+    StringBuilder buffer,         // line of output being built
+    long count)                   // number of files, subfolders, etc
+  {
+    formatNumber(buffer, count, 1, formatComma);
+
+  } // end of formatCount() method
+
+
+/*
+  formatNumber() method
+
+  Append a number divided by a scale factor, the same as a NumberFormat object
+  would format the result, but without creating any objects.  We round the
+  exact quotient to the formatter's maximum decimal digits (half even), then
+  drop trailing zeros down to its minimum digits.  If the locale's format is
+  unusual, or the number is too large to be exact as a double (and hence give
+  the same result), we fall back to the NumberFormat object.
+*/
+  static void formatNumber(
+    StringBuilder buffer,         // line of output being built
+    long value,                   // number before scaling
+    long divisor,                 // scale factor, one or more
+    NumberFormat format)          // formatter with number of decimal digits
   {
+    int decimals;                 // number of decimal digits to append
+    long fraction;                // decimal digits as an integer
+    int group;                    // digits in current group
     int i;                        // index variable
-    int newdepth;                 // new report depth for subfolders
-    String newindent;             // new left indent for subfolders
-    ShowFolderSize1Data[] subfolders; // sorted data for subfolders
+    long magnitude;               // absolute value of number
+    int maxDigits;                // maximum decimal digits from formatter
+    long quotient;                // rounded result times <scale>
+    long remainder;               // left over after division
+    long scale;                   // ten to the power of <maxDigits>
+    long whole;                   // integer part of result
 
-    if (csvFlag)                  // output as raw comma-separated values?
+    maxDigits = format.getMaximumFractionDigits();
+    scale = 1;
+    for (i = 0; i < maxDigits; i ++)
+      scale *= 10;
+    magnitude = Math.abs(value);
+    if ((formatFast == false) || (magnitude < 0) || (maxDigits > 6)
+      || (magnitude > (1L << 53)) || (magnitude > (Long.MAX_VALUE / scale)))
     {
-      /* Comment out lines for fields you don't want.  If you add formatting
-      for numbers, make sure "digit grouping" is turned off -- otherwise you
-      may end up with extra commas in the output (American locales).  Either
-      that, or turn <CSV_COMMA> into a tab character. */
-
-      System.out.println(""
-        + csvQuotedString(indent + givenData.name)                              // standard code
-//      + depth                                                                 // optional code
-//      + CSV_COMMA + csvQuotedString(givenData.name)                           // optional code
-        + CSV_COMMA + givenData.numbyte
-        + CSV_COMMA + givenData.numfile
-        + CSV_COMMA + givenData.numfold
-        + CSV_COMMA + givenData.subbyte
-        + CSV_COMMA + givenData.subfile
-        + CSV_COMMA + givenData.subfold
-        + CSV_COMMA + (givenData.numbyte + givenData.subbyte)
-        + CSV_COMMA + (givenData.numfile + givenData.subfile)
-        + CSV_COMMA + (givenData.numfold + givenData.subfold)
-        );
+      buffer.append((divisor == 1) ? format.format(value)
+        : format.format((double) value / (double) divisor));
+      return;
     }
-    else if (givenData.numfold == 0) // are there any subfolders?
+
+    quotient = (magnitude * scale) / divisor;
+    remainder = (magnitude * scale) % divisor;
+    if (((remainder * 2) > divisor) || (((remainder * 2) == divisor)
+      && ((quotient & 1) != 0)))
     {
-      System.out.println(indent + givenData.name + " = "
-        + formatBytes(givenData.numbyte) + " in "
-        + formatComma.format(givenData.numfile) + " files.");
+      quotient ++;                // round half even, like NumberFormat
     }
-    else if (messageLevel == 0)   // show details for this folder only
+    whole = quotient / scale;
+    fraction = quotient % scale;
+    decimals = maxDigits;
+    while ((decimals > format.getMinimumFractionDigits())
+      && ((fraction % 10) == 0))
     {
-      System.out.println(indent + givenData.name + " = "
-        + formatBytes(givenData.numbyte) + " in "
-        + formatComma.format(givenData.numfile) + " files with "
-        + formatComma.format(givenData.numfold) + " subfolders.");
+      fraction /= 10;             // drop trailing zeros
+      decimals --;
     }
-    else if (messageLevel == 1)   // add subfolder data to folder details
+
+    if (value < 0)                // negative numbers have a prefix
+      buffer.append(formatMinus);
+    i = 0;                        // number of characters in <formatDigits>
+    while (decimals -- > 0)       // decimal digits, in reverse order
     {
-      System.out.println(indent + givenData.name + " = "
-        + formatBytes(givenData.numbyte + givenData.subbyte) + " in "
-        + formatComma.format(givenData.numfile + givenData.subfile)
-        + " files and "
-        + formatComma.format(givenData.numfold + givenData.subfold)
-        + " subfolders.");
+      formatDigits[i ++] = (char) ('0' + (fraction % 10));
+      fraction /= 10;
+      if (decimals == 0)
+        formatDigits[i ++] = formatDecimal;
     }
-    else                          // assume the "excessive detail" option
+    group = 0;                    // no digits in first group yet
+    do                            // integer digits, in reverse order
     {
-      /* Despite the humorous name, this is where you can change the program to
-      print any level of detail about folders with subfolders.  Folders without
-      subfolders are always handled above, at the beginning. */
+      if (group == formatGroupSize) // time for another group?
+      {
+        formatDigits[i ++] = formatGroup;
+        group = 0;
+      }
+      formatDigits[i ++] = (char) ('0' + (whole % 10));
+      whole /= 10;
+      group ++;
+    } while (whole > 0);
+    while (i > 0)                 // append digits in correct order
+      buffer.append(formatDigits[-- i]);
+
+  } // end of formatNumber() method
+
+
+/*
+  formatSetup() method
+
+  Initialize number formatting styles for the current locale.  This is
+  separate from the main() method so that benchmarks can call it.
+*/
+  static void formatSetup()
+  {
+    DecimalFormat decimal;        // locale's number format, if simple enough
+    DecimalFormatSymbols symbols; // locale's digits and separators
+
+    formatComma = NumberFormat.getInstance(); // current locale
+    formatComma.setGroupingUsed(true); // use commas or digit groups
+
+    formatPointOne = NumberFormat.getInstance(); // current locale
+    formatPointOne.setGroupingUsed(true); // use commas or digit groups
+    formatPointOne.setMaximumFractionDigits(1); // force one decimal digit
+    formatPointOne.setMinimumFractionDigits(1);
+
+    formatPointTwo = NumberFormat.getInstance(); // current locale
+    formatPointTwo.setGroupingUsed(true); // use commas or digit groups
+    formatPointTwo.setMaximumFractionDigits(2); // force two decimal digits
+    formatPointTwo.setMinimumFractionDigits(2);
+
+    formatUser = formatPointOne;  // normally format file sizes with this
 
-      System.out.println(indent + givenData.name + " = "
-        + formatBytes(givenData.numbyte) + " in "
-        + formatComma.format(givenData.numfile) + " files + "
-        + formatBytes(givenData.subbyte) + " in "
-        + formatComma.format(givenData.numfold + givenData.subfold)
-        + " subfolders.");
+    /* Most locales have simple number formats that we can do ourselves, much
+    faster than NumberFormat.  Otherwise, we use NumberFormat as before. */
+
+    formatDigits = new char[80];  // enough for any long with separators
+    formatFast = false;           // assume we need NumberFormat
+    if (formatComma instanceof DecimalFormat)
+    {
+      decimal = (DecimalFormat) formatComma;
+      symbols = decimal.getDecimalFormatSymbols();
+      formatDecimal = symbols.getDecimalSeparator();
+      formatGroup = symbols.getGroupingSeparator();
+      formatGroupSize = decimal.getGroupingSize();
+      formatMinus = decimal.getNegativePrefix();
+      formatFast = (symbols.getZeroDigit() == '0')
+        && (decimal.getPositivePrefix().length() == 0)
+        && (decimal.getPositiveSuffix().length() == 0)
+        && (decimal.getNegativeSuffix().length() == 0)
+        && (decimal.getRoundingMode() == java.math.RoundingMode.HALF_EVEN)
+        && (formatGroupSize > 0);
     }
 
+  } // end of formatSetup() method
+
+
+/*
+  parseSize() method
+
+  Parse a number of bytes, which may end with K, M, G, or T for kilobytes,
+  megabytes, etc.  Return -1 if the number is not valid.
+*/
+  static long parseSize(String text)
+  {
+    long factor;                  // multiplier for suffix units
+    String number;                // text without any suffix
+
+    factor = 1;                   // assume plain bytes
+    number = text.toLowerCase();  // easier to process if consistent case
+    if (number.endsWith("k")) factor = 1024L;
+    else if (number.endsWith("m")) factor = 1048576L;
+    else if (number.endsWith("g")) factor = 1073741824L;
+    else if (number.endsWith("t")) factor = 1099511627776L;
+    if (factor > 1)               // remove suffix from number
+      number = number.substring(0, (number.length() - 1));
+    try { return(Math.max(-1, (Long.parseLong(number) * factor))); }
+    catch (NumberFormatException nfe) { return(-1); }
+
+  } // end of parseSize() method
+
+
+/*
+  printData() method
+
+  Give the data object for a folder, print the folder's name, total file size,
+  number of files, etc.  Subfolders depend upon <reportDepth>.  We indent each
+  additional level by <indentString>.  Subfolders in compact arrays (-a1) are
+  sorted by getSubfolders() and given to us as temporary data objects.  How
+  each folder is printed depends on <reportWriter>, from reportSetup().
+*/
+  static void printData(
+    int depth,                    // current subfolder report depth
+    String indent,                // current left indent string
+    ShowFolderSize1Data givenData) // data object for this folder/subfolder
+  {
+    int i;                        // index variable
+    int newdepth;                 // new report depth for subfolders
+    String newindent;             // new left indent for subfolders
+    ShowFolderSize1Data[] subfolders; // sorted data for subfolders
+
+    reportWriter.folder(depth, indent, givenData); // text, CSV, JSON, etc
+
     if ((givenData.numfold > 0) && (depth < reportDepth))
                                   // report subfolders until limit reached
     {
       newdepth = depth + 1;       // increase subfolder report depth
       newindent = indent + indentString; // indent each subfolder by this
-      subfolders = (ShowFolderSize1Data[]) givenData.sublist.values()
-        .toArray(new ShowFolderSize1Data[0]); // no keys, just sorted values
+      subfolders = scanner.getSubfolders(givenData, sortOrder); // sorted
       for (i = 0; i < subfolders.length; i ++) // for each subfolder
         printData(newdepth, newindent, subfolders[i]); // recursively print
     }
@@ -497,72 +1909,327 @@ public class ShowFolderSize1
 
 
 /*
-  searchFolder() method
+  printDetail() method
 
-  Given a folder, return a data object with information about that folder.
-  Return <null> for errors.  Subfolders depend upon <searchDepth>.
+  Print the file size histogram and the largest file types for a folder, for
+  the -x1 option.  Sizes are powers of two, and only non-zero counts are shown.
+  Types are sorted by the most bytes first, and the rest are added together.
 */
-  static ShowFolderSize1Data searchFolder(
-    int depth,                    // current subfolder search depth
-    File givenFolder)             // folder object to search
+  static void printDetail(
+    String indent,                // current left indent string
+    ShowFolderSize1Detail detail) // file sizes and types, or null if no files
   {
-    File canon;                   // real (canonical) folder
-    File[] contents;              // unsorted contents of folder
     int i;                        // index variable
-    int newdepth;                 // new search depth for subfolders
-    File next;                    // next File object from <contents>
-    ShowFolderSize1Data result;   // our result as a data object
-    ShowFolderSize1Data subdata;  // data object for a subfolder
+    StringBuilder line;           // one line of output, empty to start
+    long otherBytes, otherFiles;  // totals for types that aren't shown
+    int[] sorted;                 // index of each type, most bytes first
 
-    /* First we need the real (canonical) name of the folder. */
+    if (detail == null)           // no files, nothing to show
+      return;
+    line = outputBuffer;          // same buffer for every line
+    line.append(indent).append("sizes:");
+    for (i = 0; i < ShowFolderSize1Detail.SIZE_BUCKETS; i ++)
+      if (detail.sizeCounts[i] > 0) // skip sizes without any files
+      {
+        line.append(' ');
+        ShowFolderSize1Detail.sizeLabel(line, i);
+        line.append(" = ");
+        formatCount(line, detail.sizeCounts[i]);
+        line.append(',');
+      }
+    line.setLength(line.length() - 1); // remove last comma
+    line.append('.');
+    printLine();
 
-    try { canon = givenFolder.getCanonicalFile(); }
-    catch (IOException ioe) { canon = null; }
-    if ((canon == null)           // if we can't get real File object
-      || (canon.exists() == false) // if File object doesn't exist
-      || (canon.isDirectory() == false)) // if it isn't a folder
+    line.append(indent).append("types:");
+    sorted = detail.sortedTypes();
+    otherBytes = otherFiles = 0;
+    for (i = 0; i < sorted.length; i ++)
     {
-      return(null);               // no error message, just return nothing
+      if (i >= DETAIL_TYPES)      // too many types for one line?
+      {
+        otherBytes += detail.typeBytes[sorted[i]];
+        otherFiles += detail.typeFiles[sorted[i]];
+        continue;
+      }
+      line.append(' ').append((detail.typeNames[sorted[i]].length() == 0)
+        ? "(none)" : ("." + detail.typeNames[sorted[i]])).append(" = ");
+      formatBytes(line, detail.typeBytes[sorted[i]]);
+      line.append(" in ");
+      formatCount(line, detail.typeFiles[sorted[i]]);
+      line.append(" files,");
+    }
+    if (otherFiles > 0)           // add everything else together
+    {
+      line.append(' ');
+      formatCount(line, (sorted.length - DETAIL_TYPES));
+      line.append(" others = ");
+      formatBytes(line, otherBytes);
+      line.append(" in ");
+      formatCount(line, otherFiles);
+      line.append(" files,");
     }
+    line.setLength(line.length() - 1); // remove last comma
+    line.append('.');
+    printLine();
 
-    result = new ShowFolderSize1Data(); // start with empty result
-    result.name = canon.getName(); // correct and official folder name
-    if ((result.name == null) || (result.name.length() == 0))
-      result.name = canon.getPath(); // may be root folder of a drive
+  } // end of printDetail() method
 
-    /* We have a real File object that is a directory (folder). */
 
-    contents = canon.listFiles(); // no filter, not sorted
-    if (contents == null)         // for protected operating system folders
-      contents = new File[0];     // replace with an empty array
-    newdepth = depth + 1;         // increase subfolder search depth
-    result.sublist = new TreeMap(); // data for a list of subfolders
-    for (i = 0; i < contents.length; i ++) // for each file or subfolder
-    {
-      next = contents[i];         // get next File object from <contents>
-      if (next.isDirectory() && (depth < searchDepth)) // is this a subfolder?
-      {
-        subdata = searchFolder(newdepth, next); // recursively search
-        if (subdata != null)      // don't propagate errors
-        {
-          result.numfold ++;      // one more subfolder in this folder
-          result.subbyte += subdata.numbyte + subdata.subbyte;
-          result.subfile += subdata.numfile + subdata.subfile;
-          result.subfold += subdata.numfold + subdata.subfold;
-          result.sublist.put(((caseFlag ? "" : (subdata.name.toLowerCase()
-            + " ")) + subdata.name), subdata); // sort by name, save data
-        }
+/*
+  printDiff() method
+
+  Print the changes for a folder and its subfolders from diffFolder().  Only
+  folders marked as wanted are printed: those that changed by at least
+  <diffMinimum> bytes, plus their parent folders.  Subfolders are sorted with
+  the largest growth first.
+*/
+  static void printDiff(
+    String indent,                // current left indent string
+    ShowFolderSize1Change row)    // changes for this folder/subfolder
+  {
+    int i;                        // index variable
+    StringBuilder line;           // one line of output, empty to start
+    ShowFolderSize1Change[] subfolders; // sorted changes for subfolders
+
+    line = outputBuffer;          // same buffer for every line
+    if (csvFlag)                  // output as raw comma-separated values?
+    {
+      csvQuotedString(line, indent, row.name);
+      line.append(CSV_COMMA).append(row.oldbyte);
+      line.append(CSV_COMMA).append(row.newbyte);
+      line.append(CSV_COMMA).append(row.newbyte - row.oldbyte);
+      line.append(CSV_COMMA).append(row.oldfile);
+      line.append(CSV_COMMA).append(row.newfile);
+      line.append(CSV_COMMA).append(row.newfile - row.oldfile);
+      line.append(CSV_COMMA).append(row.oldfold);
+      line.append(CSV_COMMA).append(row.newfold);
+      line.append(CSV_COMMA).append(row.newfold - row.oldfold);
+    }
+    else                          // formatted text
+    {
+      line.append(indent).append(row.name).append(" = ");
+      formatChange(line, (row.newbyte - row.oldbyte));
+      line.append(" in ").append((row.newfile < row.oldfile) ? "" : "+");
+      formatCount(line, (row.newfile - row.oldfile));
+      line.append(" files and ").append((row.newfold < row.oldfold) ? ""
+        : "+");
+      formatCount(line, (row.newfold - row.oldfold));
+      line.append(" subfolders, now ");
+      formatBytes(line, row.newbyte);
+      line.append('.');
+    }
+    printLine();
+    subfolders = row.sortedChildren(); // largest growth first
+    for (i = 0; i < subfolders.length; i ++)
+      if (subfolders[i].wanted)   // anything to print for subfolder?
+        printDiff((indent + indentString), subfolders[i]);
+
+  } // end of printDiff() method
+
+
+/*
+  printFlush() method
+
+  Write any buffered output.  Call this before exiting, and before printing
+  error messages, so that they appear after the output that came before them.
+*/
+  static void printFlush()
+  {
+    if (outputError == false)     // don't try again after an error
+    {
+      try { outputWriter.flush(); }
+      catch (IOException ioe) { outputError = true; }
+    }
+  } // end of printFlush() method
+
+
+/*
+  printLine() method
+
+  Write the line in <outputBuffer> plus a line separator to our buffered output,
+  then empty the buffer for the next line.  Like System.out, errors are quietly
+  ignored, such as when output goes to a program that stops reading early.
+*/
+  static void printLine()
+  {
+    int length;                   // number of characters in line
+
+    if (outputError == false)     // don't try again after an error
+    {
+      length = outputBuffer.length();
+      if (length > outputChars.length) // need a bigger array for copying?
+        outputChars = new char[length * 2];
+      outputBuffer.getChars(0, length, outputChars, 0);
+      try
+      {
+        outputWriter.write(outputChars, 0, length);
+        outputWriter.write(LINE_SEPARATOR);
+      }
+      catch (IOException ioe) { outputError = true; }
+    }
+    outputBuffer.setLength(0);    // empty buffer for next line
+
+  } // end of printLine() method
+
+
+/*
+  printTop() method
+
+  Print the largest folders or files found by the -top option, largest first.
+*/
+  static void printTop(
+    String title,                 // heading for formatted text
+    String type,                  // "folder" or "file" for CSV output
+    ShowFolderSize1Data[] entries) // largest folders or files, largest first
+  {
+    int i;                        // index variable
+    StringBuilder line;           // one line of output, empty to start
+
+    line = outputBuffer;          // same buffer for every line
+    if (csvFlag == false)         // formatted text has a heading
+    {
+      line.append(title);
+      printLine();
+    }
+    for (i = 0; i < entries.length; i ++)
+    {
+      if (csvFlag)                // output as raw comma-separated values?
+      {
+        csvQuotedString(line, "", type);
+        line.append(CSV_COMMA);
+        csvQuotedString(line, "", entries[i].name);
+        line.append(CSV_COMMA).append(entries[i].numbyte);
+        line.append(CSV_COMMA).append(entries[i].numfile);
+      }
+      else if (type.equals("file")) // file sizes don't need a count
+      {
+        line.append(indentString).append(entries[i].name).append(" = ");
+        formatBytes(line, entries[i].numbyte);
+        line.append('.');
       }
-      else if (next.isFile())     // is this a normal file?
+      else                        // folders have a number of files
       {
-        result.numbyte += next.length(); // add file size to folder total
-        result.numfile ++;        // one more file in this folder
+        line.append(indentString).append(entries[i].name).append(" = ");
+        formatBytes(line, entries[i].numbyte);
+        line.append(" in ");
+        formatCount(line, entries[i].numfile);
+        line.append(" files.");
       }
-      else { /* silently ignore non-file objects */ }
+      printLine();
+    }
+  } // end of printTop() method
+
+
+/*
+  queryIndex() method
+
+  Report folders from an index file (-query) without searching.  Each folder
+  name is looked up by its full path, and printed with its subfolders the same
+  as after a search, from temporary data objects for only the records that
+  are printed.  With no folder names, all top-level folders are printed.
+*/
+  static void queryIndex(
+    String filename,              // index file to read
+    Vector folderlist)            // folder names from the command line
+    throws IOException
+  {
+    ShowFolderSize1Data data;     // temporary data for folder and subfolders
+    int i;                        // index variable
+    ShowFolderSize1Index index;   // mapped index file
+    String path;                  // full path for one folder
+    long row;                     // record number for one folder
+    Vector rows;                  // record numbers to print, in order
+
+    index = ShowFolderSize1Index.open(filename);
+    if (allocFlag && (index.allocFlag == false)) // nothing to show for -d1
+      throw new IOException("saved without -d1 option");
+    rows = new Vector();
+    if (folderlist.size() == 0)   // no names, print all top-level folders
+    {
+      for (row = 0; row < index.rows; row = index.get(row,
+        ShowFolderSize1Index.END_FIELD))
+      {
+        rows.add(Long.valueOf(row));
+      }
+    }
+    for (i = 0; i < folderlist.size(); i ++) // look up all names first
+    {
+      path = new File((String) folderlist.get(i)).getAbsolutePath();
+      try { path = new File(path).getCanonicalPath(); }
+      catch (IOException ioe) { /* folder may be gone, try it as given */ }
+      row = index.find(path);     // binary search in mapped records
+      if (row < 0)                // not in the index?
+        throw new IOException("folder not found: " + folderlist.get(i));
+      rows.add(Long.valueOf(row));
+    }
+    for (i = 0; i < rows.size(); i ++) // for each folder found
+    {
+      row = ((Long) rows.get(i)).longValue();
+      data = index.getData(row, 0, reportDepth); // only what we print
+      data.path = index.getPath(row); // full path for top-level folder
+      printData(0, "", data);     // print folder data, no indent
     }
-    return(result);               // give caller whatever we could find
+  } // end of queryIndex() method
 
-  } // end of searchFolder() method
+
+/*
+  reportSetup() method
+
+  Choose the report style for printData() from <reportStyle>.  This is
+  separate from the main() method so that benchmarks and -serve can call it.
+  Binary columns (-v3) go straight to standard output as bytes.
+*/
+  static void reportSetup()
+  {
+    if (reportStyle == REPORT_BINARY) // binary columns, not characters
+      reportWriter = new ShowFolderSize1ReportBinary(new FileOutputStream(
+        FileDescriptor.out));
+    else if (reportStyle == REPORT_CSV) // comma-separated values
+      reportWriter = new ShowFolderSize1ReportCsv();
+    else if (reportStyle == REPORT_JSON) // JSON Lines
+      reportWriter = new ShowFolderSize1ReportJson();
+    else                          // formatted text
+      reportWriter = new ShowFolderSize1ReportText();
+
+  } // end of reportSetup() method
+
+
+/*
+  scanOptions() method
+
+  Return the options for a ShowFolderSize1Scanner from our command-line
+  options.  Options for printing stay here in the main class, and the scanner
+  gets everything needed for searching.  This is separate from the main()
+  method so that benchmarks can call it.
+*/
+  static ShowFolderSize1Options scanOptions()
+  {
+    int i;                        // index variable
+    ShowFolderSize1Options result; // our result
+
+    result = new ShowFolderSize1Options()
+      .withAlloc(allocFlag, allocBlock)
+      .withCase(caseFlag)
+      .withCompact(compactFlag)
+      .withDetail(detailFlag)
+      .withEstimate(estimateLevel, estimateSeconds)
+      .withKeepDepth(keepDepth)
+      .withLinks(linkFlag)
+      .withListTimeout(listSeconds * 1000L)
+      .withNio(nioFlag)
+      .withOneDevice(oneFlag)
+      .withParallel(parallelCount)
+      .withPipeline(pipelineCount)
+      .withSearchDepth(searchDepth)
+      .withTop(topCount, (messageLevel == 0)); // -m0 for folder only
+    for (i = 0; i < excludeList.size(); i ++)
+      result = result.withExclude((String) excludeList.get(i));
+    for (i = 0; i < includeList.size(); i ++)
+      result = result.withInclude((String) includeList.get(i));
+    return(result);
+
+  } // end of scanOptions() method
 
 
 /*
@@ -581,17 +2248,58 @@ public class ShowFolderSize1
     System.err.println();
     System.err.println("Options:");
     System.err.println("  -? = -help = show summary of command-line syntax");
+    System.err.println("  -a0 = keep subfolder data as separate objects (default)");
+    System.err.println("  -a1 = keep subfolder data in compact arrays (less memory, large trees)");
     System.err.println("  -b -kb -mb -gb -tb = show sizes in kilobytes, megabytes, etc.");
     System.err.println("  -c0 = ignore uppercase/lowercase in subfolder names (default)");
     System.err.println("  -c1 = -c = strict Unicode order for case in subfolder names");
+    System.err.println("  -d0 = show only the sizes of files, not rounded to blocks (default)");
+    System.err.println("  -d1 = also show sizes rounded to blocks (sparse not detected); or -d=#");
+    System.err.println("  -diff=file = show changes since snapshot file (twice for two snapshots)");
+    System.err.println("  -e0 = search all subfolders for exact totals (default)");
+    System.err.println("  -e# = estimate: list # levels of folders, then a sample of subfolders");
+    System.err.println("  -et=# = keep sampling for # seconds per folder to refine estimates (-e#)");
+    System.err.println("  -exclude=pattern = skip folders and files that match (repeat for more)");
+    System.err.println("  -f0 = call java.io.File methods separately for each file (older, slower)");
+    System.err.println("  -f1 = read attributes once per file with java.nio.file (default)");
+    System.err.println("  -h0 = count every hard link to a file separately (default)");
+    System.err.println("  -h1 = count files with hard links only once (same device and inode)");
     System.err.println("  -i# = incremental left indent for subfolders; default is -i" + DEFAULT_INDENT.length());
+    System.err.println("  -include=pattern = count only files that match (repeat for more)");
+    System.err.println("  -index=file = save a memory-mapped index of all folders for -query");
+    System.err.println("  -k0 = keep data only for subfolders within report depth (default)");
+    System.err.println("  -k1 = keep data for all subfolders searched (uses more memory)");
+    System.err.println("  -load=file = load snapshot file and only list folders that changed");
     System.err.println("  -m0 = report details for each folder, but don't add subfolders");
     System.err.println("  -m1 = report details for each folder plus subfolders (default)");
     System.err.println("  -m2 = show excessive details about every folder and subfolder");
+    System.err.println("  -min=# = minimum change in bytes for -diff, may end with K M G T");
+    System.err.println("  -o0 = search subfolders on all file systems (default)");
+    System.err.println("  -o1 = don't search subfolders on other file systems (mounts)");
+    System.err.println("  -p# = number of parallel threads for searching; default is -p0 (serial)");
+    System.err.println("  -q# = number of pipelined listing threads (network drives); default -q0");
+    System.err.println("  -q=#:folder = at most # folders listed at once below a folder (mount)");
+    System.err.println("  -query=file = report folders from an index file, without searching");
     System.err.println("  -r# = maximum subfolder depth to report; default is -r" + DEFAULT_REPORT);
     System.err.println("  -s# = maximum subfolder depth to search; default is -s" + DEFAULT_SEARCH);
+    System.err.println("  -save=file = save data for all folders and subfolders in snapshot file");
+    System.err.println("  -serve=# = keep running, watch for changes, send reports to local port #");
+    System.err.println("  -sort=name = sort subfolders by name (default); -c1 for strict case");
+    System.err.println("  -sort=natural = sort names with numbers by value, as in d2 before d10");
+    System.err.println("  -sort=size = sort subfolders by total size, largest first");
+    System.err.println("  -t# = show progress on standard error every # seconds, then time taken");
+    System.err.println("  -top# = show only the # largest folders and files (-m0 for folder only)");
+    System.err.println("  -u0 = output in the locale's default character set (default)");
+    System.err.println("  -u1 = -u = output in UTF-8 (Unicode); or -u=name for other character sets");
     System.err.println("  -v0 = output as formatted text with -b or -m options (default)");
     System.err.println("  -v1 = -v = output as raw comma-separated values (see source code)");
+    System.err.println("  -v2 = output as JSON Lines, one object per folder with full path");
+    System.err.println("  -v3 = output as binary columns for other programs (see source code)");
+    System.err.println("  -w0 = count folders and files that can't be read (default)");
+    System.err.println("  -w1 = also list paths that can't be read, and add error columns to CSV");
+    System.err.println("  -wt=# = give up listing a folder after # seconds (stuck network mounts)");
+    System.err.println("  -x0 = don't show file sizes or types in each folder (default)");
+    System.err.println("  -x1 = also show a histogram of file sizes and bytes by file type");
     System.err.println();
     System.err.println("Search depth should be large.  Subfolders beyond search depth are ignored (not");
     System.err.println("counted, not reported).  Report depth is less than or equal to search depth.");
@@ -607,38 +2315,2171 @@ public class ShowFolderSize1
 // ------------------------------------------------------------------------- //
 
 /*
-  ShowFolderSize1Data class
+  ShowFolderSize1Change class
+
+  Changes for one folder between an older snapshot and a newer search or
+  snapshot, for the -diff option.  Totals include all subfolders.
+*/
+
+class ShowFolderSize1Change
+{
+  /* class variables */
+
+  Vector children;                // subfolders that will be printed
+  String name;                    // folder name (no path)
+  long newbyte;                   // total bytes in newer data
+  long newfile;                   // total files in newer data
+  long newfold;                   // total subfolders in newer data
+  long oldbyte;                   // total bytes in older data
+  long oldfile;                   // total files in older data
+  long oldfold;                   // total subfolders in older data
+  boolean wanted;                 // true if this folder will be printed
+
+  /* constructor */
+
+  public ShowFolderSize1Change(String name)
+  {
+    this.children = new Vector(); // no subfolders yet
+    this.name = name;             // save caller's folder name
+    this.newbyte = this.newfile = this.newfold = 0; // missing until found
+    this.oldbyte = this.oldfile = this.oldfold = 0;
+    this.wanted = false;          // not printed until marked
+  }
+
+  /* isChanged() method: true if this folder changed by at least the minimum
+  number of bytes */
+
+  boolean isChanged()
+  {
+    return(((newbyte != oldbyte) || (newfile != oldfile)
+      || (newfold != oldfold)) && (Math.abs(newbyte - oldbyte)
+      >= ShowFolderSize1.diffMinimum));
+  }
+
+  /* finish() method: called when all subfolders have been compared.  Mark
+  this folder for printing if it changed or if any subfolder is marked, and
+  if so, add it to its parent folder's row, which is then also marked.
+  Folders that won't be printed are not kept. */
+
+  void finish(ShowFolderSize1Change parent) // parent's row, or null
+  {
+    if (isChanged())              // this folder by itself
+      wanted = true;              // or already marked by a subfolder
+    if (wanted && (parent != null))
+    {
+      parent.children.add(this);
+      parent.wanted = true;
+    }
+  }
+
+  /* setNewer() method: copy totals from newer data object */
+
+  void setNewer(ShowFolderSize1Data data)
+  {
+    newbyte = data.numbyte + data.subbyte;
+    newfile = data.numfile + data.subfile;
+    newfold = data.numfold + data.subfold;
+  }
+
+  /* setOlder() method: copy totals from older data object */
+
+  void setOlder(ShowFolderSize1Data data)
+  {
+    oldbyte = data.numbyte + data.subbyte;
+    oldfile = data.numfile + data.subfile;
+    oldfold = data.numfold + data.subfold;
+  }
+
+  /* sortedChildren() method: return subfolders with the largest growth in
+  bytes first.  The sort is stable, so equal growth stays sorted by name. */
+
+  ShowFolderSize1Change[] sortedChildren()
+  {
+    ShowFolderSize1Change[] result; // our result
+
+    result = (ShowFolderSize1Change[]) children.toArray(
+      new ShowFolderSize1Change[0]);
+    Arrays.sort(result, new Comparator()
+    {
+      public int compare(Object a, Object b)
+      {
+        ShowFolderSize1Change x = (ShowFolderSize1Change) a;
+        ShowFolderSize1Change y = (ShowFolderSize1Change) b;
+        return(Long.compare((y.newbyte - y.oldbyte), (x.newbyte
+          - x.oldbyte)));         // descending order of growth
+      }
+    });
+    return(result);
+  }
+
+} // end of ShowFolderSize1Change class
+
+// ------------------------------------------------------------------------- //
+
+/*
+  ShowFolderSize1Cursor class
+
+  Visit folders one at a time in sorted order (depth first), either from a
+  snapshot file or from data objects after a search, for the -diff option.
+  Two cursors in the same order can be compared like a merge join.  Folders
+  deeper than a given limit are skipped.
+*/
+
+class ShowFolderSize1Cursor
+{
+  /* class variables */
+
+  ShowFolderSize1Data data;       // current folder, or null at the end
+  int depth;                      // subfolder depth of current folder
+  int[] index;                    // position in <lists> at each depth
+  String[] keys;                  // names for current path at each depth
+  ShowFolderSize1Data[][] lists;  // sorted subfolders at each depth
+  int maxDepth;                   // maximum subfolder depth to visit
+  ShowFolderSize1Snapshot snapshot; // snapshot file, or null for data objects
+
+  /* constructor for data objects after a search */
+
+  public ShowFolderSize1Cursor(
+    ShowFolderSize1Data root,     // top-level folder
+    int maxDepth)                 // maximum subfolder depth to visit
+  {
+    this.data = root;             // start with top-level folder
+    this.depth = 0;
+    this.index = new int[maxDepth + 1];
+    this.keys = new String[maxDepth + 1];
+    this.keys[0] = "";            // top-level folders are matched by path
+    this.lists = new ShowFolderSize1Data[maxDepth + 1][];
+    this.maxDepth = maxDepth;
+    this.snapshot = null;
+  }
+
+  /* constructor for a snapshot file, already open */
+
+  public ShowFolderSize1Cursor(
+    ShowFolderSize1Snapshot snapshot, // snapshot file after header
+    int maxDepth)                 // maximum subfolder depth to visit
+    throws IOException
+  {
+    this.data = null;             // until first folder is read
+    this.depth = 0;
+    this.index = null;            // not used for snapshots
+    this.keys = new String[maxDepth + 1];
+    this.keys[0] = "";            // top-level folders are matched by path
+    this.lists = null;            // not used for snapshots
+    this.maxDepth = maxDepth;
+    this.snapshot = snapshot;
+    next();                       // read first folder
+  }
+
+  /* compareTo() method: compare the positions of two cursors in sorted order
+  (depth first), for folders below the same top-level folder */
+
+  int compareTo(ShowFolderSize1Cursor other)
+  {
+    int compare;                  // result of comparing one name
+    int i;                        // index variable
+    int limit;                    // smaller of the two depths
+
+    limit = Math.min(depth, other.depth);
+    for (i = 1; i <= limit; i ++) // compare each name in both paths
+    {
+      compare = ShowFolderSize1Order.compareNames(keys[i], other.keys[i],
+        ShowFolderSize1.caseFlag);
+      if (compare != 0)
+        return(compare);
+    }
+    return(depth - other.depth);  // parent folders come first
+  }
+
+  /* next() method: move to the next folder, or set <data> to null at the end
+  of the snapshot file or the top-level folder */
+
+  void next() throws IOException
+  {
+    int top;                      // depth with subfolders left to visit
+
+    if (snapshot != null)         // read from snapshot file
+    {
+      do
+      {
+        data = snapshot.readNext(); // next folder in sorted order
+        depth = snapshot.lastDepth;
+      } while ((data != null) && (depth > maxDepth)); // skip deeper folders
+    }
+    else                          // visit data objects
+    {
+      top = depth;                // assume no subfolders to visit
+      if (depth < maxDepth)       // visit subfolders of current folder?
+      {
+        top = depth + 1;
+        lists[top] = ShowFolderSize1.scanner.getSubfolders(data,
+          ShowFolderSize1.SORT_NAME); // same order as snapshot files
+        index[top] = -1;          // before first subfolder
+      }
+      data = null;                // assume nothing more to visit
+      while (top > 0)             // top-level folder has no siblings
+      {
+        index[top] ++;            // next subfolder at this depth
+        if (index[top] < lists[top].length)
+        {
+          data = lists[top][index[top]];
+          depth = top;
+          break;
+        }
+        lists[top] = null;        // finished this depth
+        top --;
+      }
+    }
+    if ((data != null) && (depth > 0)) // save name for comparing paths
+      keys[depth] = data.name;
+  }
+
+} // end of ShowFolderSize1Cursor class
+
+// ------------------------------------------------------------------------- //
+
+/*
+  ShowFolderSize1Device class
+
+  Search folders from the command line at the same time, for the -p# and -q#
+  options.  Folders are grouped by device (file store), and each device has
+  its own thread that searches its folders in command-line order, one after
+  another, using the shared fork-join pool or pipeline for subfolders.  The
+  main thread waits for each folder in command-line order, so it can print a
+  folder as soon as that folder and all before it are done.  These threads
+  spend almost all of their time waiting.
+*/
+
+class ShowFolderSize1Device extends Thread
+{
+  /* class variables */
+
+  CountDownLatch[] done;          // released as each folder is searched
+  Vector folders;                 // indexes of folders on this device
+  Vector names;                   // all folder names from command line
+  ShowFolderSize1Data[] results;  // data for all folders, or null for errors
+
+  /* constructor */
+
+  public ShowFolderSize1Device(
+    Vector names,                 // all folder names from command line
+    ShowFolderSize1Data[] results, // data for all folders, filled in later
+    CountDownLatch[] done)        // released as each folder is searched
+  {
+    this.done = done;
+    this.folders = new Vector();  // no folders on this device yet
+    this.names = names;
+    this.results = results;
+    this.setDaemon(true);         // won't block exit
+  }
+
+  /* run() method: search each folder on this device, one after another */
+
+  public void run()
+  {
+    int i;                        // index variable
+    int index;                    // index of one folder on command line
+
+    for (i = 0; i < folders.size(); i ++)
+    {
+      index = ((Integer) folders.get(i)).intValue();
+      try { results[index] = ShowFolderSize1.scanner.searchRoot(new File(
+        (String) names.get(index))); }
+      finally { done[index].countDown(); } // even for errors
+    }
+  }
+
+  /* startAll() method: group folders by device, start a thread for each
+  device, and return a latch for each folder */
+
+  static CountDownLatch[] startAll(
+    Vector names,                 // all folder names from command line
+    ShowFolderSize1Data[] results) // data for all folders, filled in later
+  {
+    ShowFolderSize1Device device; // thread for one device
+    HashMap devices;              // device thread for each file store
+    CountDownLatch[] done;        // released as each folder is searched
+    int i;                        // index variable
+    Object key;                   // file store, or name if we can't find one
+
+    devices = new HashMap();
+    done = new CountDownLatch[names.size()];
+    for (i = 0; i < names.size(); i ++)
+    {
+      done[i] = new CountDownLatch(1);
+      try { key = Files.getFileStore(Paths.get((String) names.get(i))); }
+      catch (IOException ioe) { key = names.get(i); }
+      catch (RuntimeException re) { key = names.get(i); } // invalid path
+      device = (ShowFolderSize1Device) devices.get(key);
+      if (device == null)         // first folder on this device?
+      {
+        device = new ShowFolderSize1Device(names, results, done);
+        devices.put(key, device);
+      }
+      device.folders.add(Integer.valueOf(i));
+    }
+    Iterator iter = devices.values().iterator(); // all folders are assigned
+    while (iter.hasNext())
+      ((ShowFolderSize1Device) iter.next()).start();
+    return(done);
+  }
+
+} // end of ShowFolderSize1Device class
+
+// ------------------------------------------------------------------------- //
+
+/*
+  ShowFolderSize1Index class
+
+  Write or read an index file for the -index and -query options: a table of
+  full paths sorted so that each folder's subfolders come right after it,
+  plus one fixed-width record of totals for each folder.  The file is mapped
+  into memory for reading, and lookups read numbers in place with a binary
+  search, so the only cost is the pages that are touched.  Nothing is loaded
+  or converted when the file is opened.  All numbers are 64-bit little-endian
+  integers.  There is a header of 8 numbers (64 bytes):
+
+      0 = magic bytes "SFS1INDX" as ASCII characters
+      1 = format version, currently 1
+      2 = number of records (folders)
+      3 = bytes in each record, currently 128 (16 numbers)
+      4 = byte offset of first record, after header
+      5 = byte offset of string table, after all records
+      6 = number of bytes in string table, before padding
+      7 = path separator character, plus 0x10000 if -d1 was given
+
+  Record n starts at byte offset (header[4] + (n * header[3])).  Each record
+  has the same totals as a ShowFolderSize1Data object:
+
+      0 = byte offset of full path in string table
+      1 = number of bytes in full path (UTF-8)
+      2 = parent's record number, or -1 for top-level folders
+      3 = depth, zero for top-level folders
+      4 = record number after this folder's last subfolder
+      5 = modification time in milliseconds, or zero
+      6 = bytes in this folder only
+      7 = files in this folder only
+      8 = subfolders in this folder only
+      9 = bytes in all subfolders
+     10 = files in all subfolders
+     11 = subfolders in all subfolders
+     12 = allocated bytes in this folder only (-d1), or zero
+     13 = allocated bytes in all subfolders (-d1), or zero
+     14 = unreadable entries in this folder only
+     15 = unreadable entries in all subfolders
 
-  A data structure to hold information about one folder.
+  Top-level folders are in command-line order.  Below each, records are in
+  order by the UTF-8 bytes of their full paths, with the path separator
+  before all other bytes, so a folder and everything below it are one range
+  of records (from n to field 4), and subfolders can be found by skipping
+  from one to the next.  The string table has the UTF-8 bytes of all paths,
+  padded with zeros to a multiple of 8 bytes.  The header is written last, so
+  an unfinished file isn't mistaken for an index.  Unreadable paths (-w1) and
+  file sizes and types (-x1) aren't saved.
+
+  Java maps at most 2 GB at once, so the records and the string table are
+  each mapped as regions of 1 GB.  Records never cross a region (1 GB is a
+  multiple of 128 bytes), but paths may.  While writing, the string table
+  goes into a temporary file beside the index, and is copied to the end when
+  the index is closed, so neither part is limited by the size of an array,
+  and 20 million folders need about 2.5 GB for records and no heap.
 */
 
-class ShowFolderSize1Data
+class ShowFolderSize1Index implements Comparator
 {
+  /* constants */
+
+  static final int END_FIELD = 4; // record number after last subfolder
+  static final int FIELDS = 16;   // numbers in each record
+  static final int HEADER_SIZE = 64; // eight numbers before first record
+  static final long MAGIC = 0x58444E4931534653L; // "SFS1INDX" little-endian
+  static final int RECORD_SIZE = FIELDS * 8; // bytes in each record
+  static final int REGION_BITS = 30; // each mapped region is 1 GB
+  static final long REGION_MASK = (1L << REGION_BITS) - 1; // offset in region
+  static final int VERSION = 1;   // format version in header
+
   /* class variables */
 
-  String name;                    // folder name (no path), or null
-  long numbyte;                   // number of bytes in this folder only
-  long numfile;                   // number of files in this folder only
-  long numfold;                   // number of subfolders in this folder only
-  long subbyte;                   // number of bytes in all subfolders
-  long subfile;                   // number of files in all subfolders
-  long subfold;                   // number of subfolders in all subfolders
-  TreeMap sublist;                // sorted list of subfolders, or null
+  boolean allocFlag;              // true if allocated sizes were counted (-d1)
+  ByteBuffer buffer;              // little-endian numbers before writing
+  FileChannel channel;            // for writing an index, or null
+  ByteBuffer[] records;           // mapped records for reading, or null
+  long rows;                      // number of records (folders)
+  char separator;                 // path separator when index was written
+  ByteBuffer[] strings;           // mapped string table for reading, or null
+  OutputStream table;             // UTF-8 bytes of paths while writing
+  File tableFile;                 // temporary file for <table>, or null
+  long tableSize;                 // bytes written to <table>
+  long written;                   // bytes written to file before <buffer>
 
   /* constructor (no arguments) */
 
-  public ShowFolderSize1Data()
+  public ShowFolderSize1Index()
+  {
+    this.allocFlag = ShowFolderSize1.allocFlag; // same as current options
+    this.buffer = null;           // nothing to write
+    this.channel = null;          // no output file
+    this.records = this.strings = null; // no input file
+    this.rows = 0;                // no folders yet
+    this.separator = File.separatorChar; // same as current system
+    this.table = null;
+    this.tableFile = null;
+    this.tableSize = 0;
+    this.written = 0;
+  }
+
+  /* close() method: finish writing an index file with the string table and
+  then the header */
+
+  void close() throws IOException
+  {
+    long copied;                  // bytes of string table copied so far
+    ByteBuffer header;            // numbers at start of file
+    FileChannel input;            // temporary file with string table
+
+    if (channel == null)          // nothing to write, mapping needs no close
+      return;
+    buffer.flip();                // last records before string table
+    while (buffer.hasRemaining())
+      channel.write(buffer);
+    table.write(new byte[(int) ((8 - (tableSize % 8)) % 8)]); // padding
+    table.close();                // header field 6 doesn't include padding
+    input = new FileInputStream(tableFile).getChannel();
+    try
+    {
+      for (copied = 0; copied < input.size(); ) // after the last record
+        copied += input.transferTo(copied, (input.size() - copied), channel);
+    }
+    finally { input.close(); }
+    tableFile.delete();
+    header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    header.putLong(MAGIC);
+    header.putLong(VERSION);
+    header.putLong(rows);
+    header.putLong(RECORD_SIZE);
+    header.putLong(HEADER_SIZE);
+    header.putLong(HEADER_SIZE + (rows * RECORD_SIZE));
+    header.putLong(tableSize);
+    header.putLong(separator | (allocFlag ? 0x10000 : 0));
+    header.flip();
+    while (header.hasRemaining())
+      channel.write(header, header.position());
+    channel.close();
+    channel = null;
+  }
+
+  /* compare() method: compare the names of two data objects by their UTF-8
+  bytes, which is the same as comparing Unicode code points.  Characters from
+  0xE000 up are moved below the surrogate pairs, which come after them in
+  UTF-8, the same as in String.compareTo() otherwise. */
+
+  public int compare(Object first, Object second)
+  {
+    char ch1, ch2;                // one character from each name
+    int i;                        // index variable
+    int length;                   // length of the shorter name
+    String one, two;              // names of two subfolders
+
+    one = ((ShowFolderSize1Data) first).name;
+    two = ((ShowFolderSize1Data) second).name;
+    length = Math.min(one.length(), two.length());
+    for (i = 0; i < length; i ++)
+    {
+      ch1 = one.charAt(i);
+      ch2 = two.charAt(i);
+      if (ch1 != ch2)
+      {
+        if ((ch1 >= 0xD800) && (ch2 >= 0xD800)) // code point order
+        {
+          ch1 = (char) ((ch1 >= 0xE000) ? (ch1 - 0x800) : (ch1 + 0x2000));
+          ch2 = (char) ((ch2 >= 0xE000) ? (ch2 - 0x800) : (ch2 + 0x2000));
+        }
+        return(ch1 - ch2);
+      }
+    }
+    return(one.length() - two.length());
+  }
+
+  /* compareKey() method: compare the full path for a record with a path in
+  UTF-8 bytes, with the path separator before all other bytes */
+
+  int compareKey(long row, byte[] key)
+  {
+    int ch1, ch2;                 // one byte from each path, as sort keys
+    int i;                        // index variable
+    int length;                   // bytes in path for record
+    long start;                   // offset of path in string table
+
+    start = get(row, 0);
+    length = (int) get(row, 1);
+    for (i = 0; (i < length) && (i < key.length); i ++)
+    {
+      ch1 = getByte(start + i);
+      ch2 = key[i];
+      ch1 = (ch1 == separator) ? 0 : ((ch1 & 0xFF) + 1);
+      ch2 = (ch2 == separator) ? 0 : ((ch2 & 0xFF) + 1);
+      if (ch1 != ch2)
+        return(ch1 - ch2);
+    }
+    return(length - key.length);
+  }
+
+  /* create() method: create a new index file, with room for the header */
+
+  static ShowFolderSize1Index create(String filename) throws IOException
+  {
+    ShowFolderSize1Index result;  // our result
+
+    result = new ShowFolderSize1Index(); // header has current options
+    result.buffer = ByteBuffer.allocate(65536).order(ByteOrder.LITTLE_ENDIAN);
+    result.buffer.put(new byte[HEADER_SIZE]); // written by close()
+    result.channel = new FileOutputStream(filename).getChannel();
+    result.tableFile = File.createTempFile("index", ".tmp", new File(
+      filename).getAbsoluteFile().getParentFile()); // same file system
+    result.tableFile.deleteOnExit(); // in case we don't finish
+    result.table = new BufferedOutputStream(new FileOutputStream(
+      result.tableFile), 65536);
+    return(result);
+  }
+
+  /* find() method: return the record number for a full path, or -1 if the
+  path isn't in the index.  The top-level folder with the longest path that
+  holds this path is searched, in case one is below another. */
+
+  long find(String path)
+  {
+    long best;                    // record for top-level folder, or -1
+    long bestLength;              // bytes in path for <best>
+    long high, low, middle;       // range of records for binary search
+    int compare;                  // result of comparing one path
+    byte[] key;                   // UTF-8 bytes of path
+    long length;                  // bytes in path for top-level folder
+    long row;                     // record number for top-level folder
+
+    key = path.getBytes(StandardCharsets.UTF_8);
+    best = bestLength = -1;       // no top-level folder found yet
+    for (row = 0; row < rows; row = get(row, END_FIELD))
+    {
+      length = get(row, 1);
+      if ((length > bestLength) && (length <= key.length)
+        && (compareKey(row, Arrays.copyOf(key, (int) length)) == 0)
+        && ((length == key.length) || (key[(int) length] == separator)
+        || (key[(int) length - 1] == separator)))
+      {
+        best = row;
+        bestLength = length;
+      }
+    }
+    if (best < 0)                 // not below any top-level folder
+      return(-1);
+    low = best;
+    high = get(best, END_FIELD) - 1;
+    while (low <= high)           // binary search, paths in sorted order
+    {
+      middle = (low + high) >>> 1;
+      compare = compareKey(middle, key);
+      if (compare == 0)
+        return(middle);
+      else if (compare < 0)
+        low = middle + 1;
+      else
+        high = middle - 1;
+    }
+    return(-1);
+  }
+
+  /* get() method: return one number from a record */
+
+  long get(long row, int field)
+  {
+    long offset;                  // byte offset in records
+
+    offset = (row * RECORD_SIZE) + (field * 8);
+    return(records[(int) (offset >>> REGION_BITS)].getLong((int) (offset
+      & REGION_MASK)));
+  }
+
+  /* getByte() method: return one byte from the string table */
+
+  byte getByte(long offset)
+  {
+    return(strings[(int) (offset >>> REGION_BITS)].get((int) (offset
+      & REGION_MASK)));
+  }
+
+  /* getData() method: return a temporary data object for one record, with
+  subfolders down to <maxDepth> for printing */
+
+  ShowFolderSize1Data getData(long row, int depth, int maxDepth)
+  {
+    long end;                     // record after last subfolder
+    int last;                     // index of last separator in path
+    String path;                  // full path for this record
+    ShowFolderSize1Data result;   // our result
+    ShowFolderSize1Data subdata;  // data object for one subfolder
+
+    result = new ShowFolderSize1Data(); // start with empty result
+    path = getPath(row);
+    last = path.lastIndexOf(separator);
+    result.name = ((last >= 0) && (last < (path.length() - 1)))
+      ? path.substring(last + 1) : path; // may be root folder of a drive
+    result.modified = get(row, 5);
+    result.numbyte = get(row, 6);
+    result.numfile = get(row, 7);
+    result.numfold = get(row, 8);
+    result.subbyte = get(row, 9);
+    result.subfile = get(row, 10);
+    result.subfold = get(row, 11);
+    if (ShowFolderSize1.allocFlag) // same as a search without -d1
+    {
+      result.numalloc = get(row, 12);
+      result.suballoc = get(row, 13);
+    }
+    result.numerror = get(row, 14);
+    result.suberror = get(row, 15);
+    end = get(row, END_FIELD);
+    if ((depth < maxDepth) && (end > (row + 1))) // subfolders wanted?
+    {
+      result.sublist = new HashMap(); // indexed by exact name
+      for (row = row + 1; row < end; row = get(row, END_FIELD))
+      {
+        subdata = getData(row, (depth + 1), maxDepth);
+        subdata.parent = result;
+        result.sublist.put(subdata.name, subdata);
+      }
+    }
+    return(result);
+  }
+
+  /* getPath() method: return the full path for a record */
+
+  String getPath(long row)
+  {
+    byte[] bytes;                 // UTF-8 bytes of path
+    int i;                        // index variable
+    long start;                   // offset of path in string table
+
+    bytes = new byte[(int) get(row, 1)];
+    start = get(row, 0);
+    for (i = 0; i < bytes.length; i ++)
+      bytes[i] = getByte(start + i);
+    return(new String(bytes, StandardCharsets.UTF_8));
+  }
+
+  /* map() method: map part of a file into memory as regions of 1 GB, since
+  one mapping can't be larger than 2 GB */
+
+  static ByteBuffer[] map(
+    FileChannel channel,          // file to map, open for reading
+    long start,                   // byte offset in file
+    long size)                    // number of bytes to map
+    throws IOException
+  {
+    int i;                        // index variable
+    long offset;                  // byte offset of region from <start>
+    ByteBuffer[] result;          // our result
+
+    result = new ByteBuffer[(int) ((size + REGION_MASK) >>> REGION_BITS)];
+    for (i = 0; i < result.length; i ++)
+    {
+      offset = ((long) i) << REGION_BITS;
+      result[i] = channel.map(FileChannel.MapMode.READ_ONLY, (start
+        + offset), Math.min((REGION_MASK + 1), (size - offset))).order(
+        ByteOrder.LITTLE_ENDIAN);
+    }
+    return(result);
+  }
+
+  /* open() method: open an existing index file, check the header, and map
+  the records and string table into memory */
+
+  static ShowFolderSize1Index open(String filename) throws IOException
+  {
+    FileChannel channel;          // index file for mapping
+    ByteBuffer header;            // numbers at start of file
+    RandomAccessFile input;       // index file, closed after mapping
+    ShowFolderSize1Index result;  // our result
+    long stringSize, stringStart; // string table in file
+
+    result = new ShowFolderSize1Index(); // replaced by header
+    input = new RandomAccessFile(filename, "r");
+    try
+    {
+      channel = input.getChannel();
+      if (channel.size() < HEADER_SIZE)
+        throw new IOException("not an index file, or wrong version");
+      header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE)
+        .order(ByteOrder.LITTLE_ENDIAN);
+      if ((header.getLong(0) != MAGIC) || (header.getLong(8) != VERSION)
+        || (header.getLong(24) != RECORD_SIZE))
+      {
+        throw new IOException("not an index file, or wrong version");
+      }
+      result.rows = header.getLong(16);
+      stringStart = header.getLong(40);
+      stringSize = header.getLong(48);
+      result.separator = (char) (header.getLong(56) & 0xFFFF);
+      result.allocFlag = (header.getLong(56) & 0x10000) != 0;
+      if (result.separator != File.separatorChar) // paths won't match
+        throw new IOException("saved with a different path separator");
+      if ((stringStart + stringSize) > channel.size())
+        throw new IOException("file is not complete");
+      result.records = map(channel, header.getLong(32), (result.rows
+        * RECORD_SIZE));
+      result.strings = map(channel, stringStart, stringSize);
+    }
+    finally { input.close(); }    // mapping stays after file is closed
+    return(result);
+  }
+
+  /* putLong() method: add one number to the buffer, writing when full */
+
+  void putLong(long value) throws IOException
+  {
+    if (buffer.remaining() < 8)   // buffer is full?
+    {
+      buffer.flip();
+      while (buffer.hasRemaining())
+        written += channel.write(buffer);
+      buffer.clear();
+    }
+    buffer.putLong(value);
+  }
+
+  /* setEnd() method: set the record number after a folder's last subfolder,
+  in the buffer if the record hasn't been written yet, or else in the file */
+
+  void setEnd(long row, long end) throws IOException
+  {
+    ByteBuffer number;            // one little-endian number
+    long offset;                  // byte offset of number in file
+
+    offset = HEADER_SIZE + (row * RECORD_SIZE) + (END_FIELD * 8);
+    if (offset >= written)        // still in the buffer?
+      buffer.putLong((int) (offset - written), end);
+    else                          // already in the file, write in place
+    {
+      number = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+      number.putLong(end).flip();
+      while (number.hasRemaining())
+        channel.write(number, (offset + number.position()));
+    }
+  }
+
+  /* writeFolder() method: write a folder record and all subfolders below it,
+  in sorted order */
+
+  void writeFolder(
+    String path,                  // full path of folder
+    ShowFolderSize1Data data,     // data object for folder
+    long parent,                  // parent's record number, or -1
+    int depth) throws IOException
+  {
+    byte[] bytes;                 // UTF-8 bytes of path
+    int i;                        // index variable
+    long row;                     // record number for this folder
+    ShowFolderSize1Data[] subfolders; // sorted data for subfolders
+
+    subfolders = ShowFolderSize1.scanner.getSubfolders(data,
+      ShowFolderSize1.SORT_NONE); // sorted here by UTF-8 bytes
+    Arrays.sort(subfolders, this);
+    bytes = path.getBytes(StandardCharsets.UTF_8);
+    row = rows ++;
+    putLong(tableSize);
+    putLong(bytes.length);
+    putLong(parent);
+    putLong(depth);
+    putLong(0);                   // replaced by setEnd() after subfolders
+    putLong(data.modified);
+    putLong(data.numbyte);
+    putLong(data.numfile);
+    putLong(data.numfold);
+    putLong(data.subbyte);
+    putLong(data.subfile);
+    putLong(data.subfold);
+    putLong(data.numalloc);
+    putLong(data.suballoc);
+    putLong(data.numerror);
+    putLong(data.suberror);
+    table.write(bytes, 0, bytes.length);
+    tableSize += bytes.length;
+    if (path.endsWith(File.separator) == false) // root folder has one
+      path += File.separator;
+    for (i = 0; i < subfolders.length; i ++)
+      writeFolder((path + subfolders[i].name), subfolders[i], row,
+        (depth + 1));             // recursively write
+    setEnd(row, rows);
+  }
+
+  /* writeRoot() method: write a top-level folder and all subfolders */
+
+  void writeRoot(ShowFolderSize1Data data) throws IOException
+  {
+    writeFolder(data.path, data, -1, 0);
+  }
+
+} // end of ShowFolderSize1Index class
+
+// ------------------------------------------------------------------------- //
+
+/*
+  ShowFolderSize1Report interface
+
+  One style of report for printData(): formatted text, comma-separated values,
+  JSON Lines, or binary columns.  The printData() method walks the tree of
+  folders in sorted order and gives each folder to folder(), with its depth, so
+  the parent of a folder is always the last folder given to us one level up.
+  The begin() method is called before the first top-level folder, and finish()
+  after the last.  Reports go to the program's output buffer and writer, except
+  binary columns.
+*/
+
+interface ShowFolderSize1Report
+{
+  void begin();                   // column headers, if any
+  void finish();                  // anything saved until the end
+  void folder(                    // print one folder or subfolder
+    int depth,                    // current subfolder report depth
+    String indent,                // current left indent string
+    ShowFolderSize1Data givenData); // data object for this folder/subfolder
+
+} // end of ShowFolderSize1Report interface
+
+// ------------------------------------------------------------------------- //
+
+/*
+  ShowFolderSize1ReportBinary class
+
+  Binary columns (-v3) for programs that map the output file into memory.  All
+  numbers are 64-bit little-endian integers.  There is a header of 8 numbers
+  (64 bytes), then each column has one number per folder (row), then a string
+  table with the UTF-8 bytes of all names, padded with zeros to a multiple of
+  8 bytes.  Rows are in the same order as the text report, so a parent always
+  comes before its subfolders.  The header is:
+
+      0 = magic bytes "SFS1COLS" as ASCII characters
+      1 = format version, currently 1
+      2 = number of rows (folders)
+      3 = number of columns, currently 12
+      4 = byte offset of first column, after header
+      5 = byte offset of string table, after all columns
+      6 = number of bytes in string table, before padding
+      7 = reserved, zero
+
+  Column n starts at byte offset (header[4] + (n * rows * 8)).  The columns
+  are:
+
+      0 = parent's row number, or -1 for top-level folders
+      1 = depth, zero for top-level folders
+      2 = byte offset of name in string table
+      3 = number of bytes in name (UTF-8)
+      4 = bytes in this folder only
+      5 = files in this folder only
+      6 = subfolders in this folder only
+      7 = bytes in all subfolders
+      8 = files in all subfolders
+      9 = subfolders in all subfolders
+     10 = allocated bytes in this folder only (-d1), or zero
+     11 = allocated bytes in all subfolders (-d1), or zero
+
+  Names for top-level folders are full paths, and names for subfolders don't
+  have a path.  File sizes and types (-x1) are not included.  Rows are kept in
+  memory until finish(), since each column must be complete before the next.
+*/
+
+class ShowFolderSize1ReportBinary implements ShowFolderSize1Report
+{
+  /* constants */
+
+  static final int COLUMNS = 12;  // number of columns for each row
+  static final int HEADER_SIZE = 64; // eight numbers before first column
+  static final long MAGIC = 0x534C4F4331534653L; // "SFS1COLS" little-endian
+  static final int VERSION = 1;   // format version in header
+
+  /* class variables */
+
+  ByteBuffer buffer;              // little-endian numbers before writing
+  long[][] columns;               // numbers for each column, then each row
+  long[] lastRows;                // row number of last folder at each depth
+  OutputStream output;            // binary output, not characters
+  int rows;                       // number of rows (folders) so far
+  ByteArrayOutputStream strings;  // UTF-8 bytes of all names
+
+  /* constructor */
+
+  public ShowFolderSize1ReportBinary(OutputStream output)
+  {
+    this.buffer = ByteBuffer.allocate(65536).order(ByteOrder.LITTLE_ENDIAN);
+    this.columns = new long[COLUMNS][1024];
+    this.lastRows = new long[16];
+    this.output = output;
+    this.rows = 0;
+    this.strings = new ByteArrayOutputStream();
+  }
+
+  /* begin() method: nothing before the first folder */
+
+  public void begin() { }
+
+  /* finish() method: write the header, all columns, and the string table.
+  Errors are quietly ignored, the same as ShowFolderSize1.printLine(). */
+
+  public void finish()
+  {
+    int i, k;                     // index variables
+    long stringStart;             // byte offset of string table
+
+    if (ShowFolderSize1.outputError) // don't try after an error
+      return;
+    stringStart = HEADER_SIZE + ((long) COLUMNS * rows * 8);
+    try
+    {
+      putLong(MAGIC);
+      putLong(VERSION);
+      putLong(rows);
+      putLong(COLUMNS);
+      putLong(HEADER_SIZE);
+      putLong(stringStart);
+      putLong(strings.size());
+      putLong(0);
+      for (k = 0; k < COLUMNS; k ++)
+        for (i = 0; i < rows; i ++)
+          putLong(columns[k][i]);
+      buffer.flip();              // numbers before string table
+      output.write(buffer.array(), 0, buffer.limit());
+      buffer.clear();
+      strings.writeTo(output);
+      output.write(new byte[(8 - (strings.size() % 8)) % 8]); // padding
+      output.flush();
+    }
+    catch (IOException ioe) { ShowFolderSize1.outputError = true; }
+  }
+
+  /* folder() method: save one row in the columns */
+
+  public void folder(
+    int depth,                    // current subfolder report depth
+    String indent,                // current left indent string
+    ShowFolderSize1Data givenData) // data object for this folder/subfolder
+  {
+    int k;                        // index variable
+    byte[] name;                  // UTF-8 bytes of name or full path
+
+    if (rows == columns[0].length) // need more space for rows?
+      for (k = 0; k < COLUMNS; k ++)
+        columns[k] = Arrays.copyOf(columns[k], (rows * 2));
+    if (depth == lastRows.length) // deeper than before?
+      lastRows = Arrays.copyOf(lastRows, (depth * 2));
+    name = (((depth == 0) && (givenData.path != null)) ? givenData.path
+      : givenData.name).getBytes(StandardCharsets.UTF_8);
+    columns[0][rows] = (depth == 0) ? -1 : lastRows[depth - 1];
+    columns[1][rows] = depth;
+    columns[2][rows] = strings.size();
+    columns[3][rows] = name.length;
+    columns[4][rows] = givenData.numbyte;
+    columns[5][rows] = givenData.numfile;
+    columns[6][rows] = givenData.numfold;
+    columns[7][rows] = givenData.subbyte;
+    columns[8][rows] = givenData.subfile;
+    columns[9][rows] = givenData.subfold;
+    columns[10][rows] = givenData.numalloc;
+    columns[11][rows] = givenData.suballoc;
+    strings.write(name, 0, name.length);
+    lastRows[depth] = rows ++;
+  }
+
+  /* putLong() method: add one number to the buffer, writing when full */
+
+  void putLong(long value) throws IOException
+  {
+    if (buffer.remaining() < 8)   // buffer is full?
+    {
+      buffer.flip();
+      output.write(buffer.array(), 0, buffer.limit());
+      buffer.clear();
+    }
+    buffer.putLong(value);
+  }
+
+} // end of ShowFolderSize1ReportBinary class
+
+// ------------------------------------------------------------------------- //
+
+/*
+  ShowFolderSize1ReportCsv class
+
+  Comma-separated values (-v1) with one line for each folder, after a line of
+  column headers.  The folder name has spaces in front for the indent.
+*/
+
+class ShowFolderSize1ReportCsv implements ShowFolderSize1Report
+{
+  /* begin() method: column headers */
+
+  public void begin()
+  {
+    StringBuilder line;           // one line of output, empty to start
+
+    /* Column headers (titles) for CSV output.  Must match the folder()
+    method.  Comment out lines for fields you don't want.  This text is for
+    explaining the data fields.  Users can and should replace the text or
+    reformat it for their purposes.  In other words, edit your spreadsheet;
+    don't expect this program to do it for you. */
+
+    final char CSV_COMMA = ShowFolderSize1.CSV_COMMA; // shorter names
+    final char CSV_QUOTE = ShowFolderSize1.CSV_QUOTE;
+
+    line = ShowFolderSize1.outputBuffer; // same buffer for every line
+    line.append(""
+//    + CSV_QUOTE + "Subfolder Depth" + CSV_QUOTE + CSV_COMMA                   // optional code
+      + CSV_QUOTE + "Folder Name" + CSV_QUOTE
+      + CSV_COMMA + CSV_QUOTE + "Folder Bytes" + CSV_QUOTE
+      + CSV_COMMA + CSV_QUOTE + "Folder Files" + CSV_QUOTE
+      + CSV_COMMA + CSV_QUOTE + "Folder Subfolders" + CSV_QUOTE
+      + CSV_COMMA + CSV_QUOTE + "Subfolder Bytes" + CSV_QUOTE
+      + CSV_COMMA + CSV_QUOTE + "Subfolder Files" + CSV_QUOTE
+      + CSV_COMMA + CSV_QUOTE + "Subfolder Folders" + CSV_QUOTE
+      + CSV_COMMA + CSV_QUOTE + "Total Bytes" + CSV_QUOTE
+      + CSV_COMMA + CSV_QUOTE + "Total Files" + CSV_QUOTE
+      + CSV_COMMA + CSV_QUOTE + "Total Subfolders" + CSV_QUOTE
+      );
+    if (ShowFolderSize1.allocFlag) // allocated sizes only if requested
+    {
+      line.append(""
+        + CSV_COMMA + CSV_QUOTE + "Folder Rounded Bytes" + CSV_QUOTE
+        + CSV_COMMA + CSV_QUOTE + "Subfolder Rounded Bytes" + CSV_QUOTE
+        + CSV_COMMA + CSV_QUOTE + "Total Rounded Bytes" + CSV_QUOTE
+        );
+    }
+    if (ShowFolderSize1.estimateLevel > 0) // intervals only for estimates
+    {
+      line.append(""
+        + CSV_COMMA + CSV_QUOTE + "Total Bytes Error" + CSV_QUOTE
+        + CSV_COMMA + CSV_QUOTE + "Total Files Error" + CSV_QUOTE
+        );
+    }
+    if (ShowFolderSize1.detailFlag) // file sizes and types only if requested
+    {
+      line.append(""
+        + CSV_COMMA + CSV_QUOTE + "Total Size Counts" + CSV_QUOTE
+        + CSV_COMMA + CSV_QUOTE + "Total Type Bytes" + CSV_QUOTE
+        );
+    }
+    if (ShowFolderSize1.errorFlag) // unreadable paths only if requested
+    {
+      line.append(""
+        + CSV_COMMA + CSV_QUOTE + "Folder Errors" + CSV_QUOTE
+        + CSV_COMMA + CSV_QUOTE + "Subfolder Errors" + CSV_QUOTE
+        + CSV_COMMA + CSV_QUOTE + "Total Errors" + CSV_QUOTE
+        + CSV_COMMA + CSV_QUOTE + "Unreadable Paths" + CSV_QUOTE
+        );
+    }
+    ShowFolderSize1.printLine();
+  }
+
+  /* finish() method: nothing after the last folder */
+
+  public void finish() { }
+
+  /* folder() method: one line for a folder */
+
+  public void folder(
+    int depth,                    // current subfolder report depth
+    String indent,                // current left indent string
+    ShowFolderSize1Data givenData) // data object for this folder/subfolder
+  {
+    ShowFolderSize1Detail detail; // file sizes and types to print, or null
+    long[] error;                 // intervals for estimates (-e#), or null
+    int i;                        // index variable
+    StringBuilder line;           // one line of output, empty to start
+    StringBuilder paths;          // unreadable paths for -w1
+
+    /* Comment out lines for fields you don't want.  If you add formatting
+    for numbers, make sure "digit grouping" is turned off -- otherwise you
+    may end up with extra commas in the output (American locales).  Either
+    that, or turn <CSV_COMMA> into a tab character. */
+
+    final char CSV_COMMA = ShowFolderSize1.CSV_COMMA; // shorter name
+
+    line = ShowFolderSize1.outputBuffer; // same buffer for every line
+    line.setLength(0);            // start a new line
+    ShowFolderSize1.csvQuotedString(line, indent, givenData.name);              // standard code
+//  line.append(depth);                                                         // optional code
+//  line.append(CSV_COMMA); ShowFolderSize1.csvQuotedString(line, "", givenData.name); // optional code
+    line.append(CSV_COMMA).append(givenData.numbyte);
+    line.append(CSV_COMMA).append(givenData.numfile);
+    line.append(CSV_COMMA).append(givenData.numfold);
+    line.append(CSV_COMMA).append(givenData.subbyte);
+    line.append(CSV_COMMA).append(givenData.subfile);
+    line.append(CSV_COMMA).append(givenData.subfold);
+    line.append(CSV_COMMA).append(givenData.numbyte + givenData.subbyte);
+    line.append(CSV_COMMA).append(givenData.numfile + givenData.subfile);
+    line.append(CSV_COMMA).append(givenData.numfold + givenData.subfold);
+    if (ShowFolderSize1.allocFlag) // allocated sizes only if requested
+    {
+      line.append(CSV_COMMA).append(givenData.numalloc);
+      line.append(CSV_COMMA).append(givenData.suballoc);
+      line.append(CSV_COMMA).append(givenData.numalloc + givenData.suballoc);
+    }
+    if (ShowFolderSize1.estimateLevel > 0) // intervals only for estimates
+    {
+      error = ShowFolderSize1.scanner.estimateError(givenData);
+      line.append(CSV_COMMA).append((error == null) ? 0 : error[0]);
+      line.append(CSV_COMMA).append((error == null) ? 0 : error[1]);
+    }
+    if (ShowFolderSize1.detailFlag) // file sizes and types only if requested
+    {
+      detail = ShowFolderSize1Detail.combine(givenData.numdetail,
+        givenData.subdetail);
+      line.append(CSV_COMMA);     // empty strings if no files
+      ShowFolderSize1.csvQuotedString(line, "", ((detail == null) ? ""
+        : detail.sizeText()));
+      line.append(CSV_COMMA);
+      ShowFolderSize1.csvQuotedString(line, "", ((detail == null) ? ""
+        : detail.typeText()));
+    }
+    if (ShowFolderSize1.errorFlag) // unreadable paths only if requested
+    {
+      line.append(CSV_COMMA).append(givenData.numerror);
+      line.append(CSV_COMMA).append(givenData.suberror);
+      line.append(CSV_COMMA).append(givenData.numerror + givenData.suberror);
+      paths = new StringBuilder(); // separated by semicolons, maybe empty
+      for (i = 0; (givenData.errlist != null)
+        && (i < givenData.errlist.size()); i ++)
+      {
+        paths.append((i > 0) ? "; " : "").append(givenData.errlist.get(i));
+      }
+      line.append(CSV_COMMA);
+      ShowFolderSize1.csvQuotedString(line, "", paths.toString());
+    }
+    ShowFolderSize1.printLine();
+  }
+
+} // end of ShowFolderSize1ReportCsv class
+
+// ------------------------------------------------------------------------- //
+
+/*
+  ShowFolderSize1ReportJson class
+
+  JSON Lines (-v2), with one object on each line for each folder, written as
+  soon as the folder is printed.  Folders have id numbers in the order they are
+  printed, starting from zero, and each object has the id of its parent folder
+  (or -1), so the tree can be built again without parsing names or paths.
+  Field names are the same as the CSV column headers, in "camel case".
+  Characters that aren't ASCII are written as escapes (backslash, u, and four
+  hex digits), unless output is in UTF-8, since JSON is always Unicode.
+*/
+
+class ShowFolderSize1ReportJson implements ShowFolderSize1Report
+{
+  /* class variables */
+
+  boolean asciiFlag;              // true if non-ASCII characters are escaped
+  long nextId;                    // id number for next folder
+  long[] parentIds;               // id of last folder at each depth
+  String[] parentPaths;           // full path of last folder at each depth
+
+  /* constructor (no arguments) */
+
+  public ShowFolderSize1ReportJson()
+  {
+    this.asciiFlag = (ShowFolderSize1.outputCharset.equals(StandardCharsets
+      .UTF_8) == false);
+    this.nextId = 0;
+    this.parentIds = new long[16];
+    this.parentPaths = new String[16];
+  }
+
+  /* begin() method: nothing before the first folder */
+
+  public void begin() { }
+
+  /* finish() method: nothing after the last folder */
+
+  public void finish() { }
+
+  /* folder() method: one object for a folder */
+
+  public void folder(
+    int depth,                    // current subfolder report depth
+    String indent,                // current left indent string
+    ShowFolderSize1Data givenData) // data object for this folder/subfolder
+  {
+    ShowFolderSize1Detail detail; // file sizes and types to print, or null
+    long[] error;                 // intervals for estimates (-e#), or null
+    int i, last;                  // index variables
+    StringBuilder line;           // one line of output, empty to start
+    String path;                  // full path for this folder
+    int[] sorted;                 // index of each type, most bytes first
+
+    if (depth == parentIds.length) // deeper than before?
+    {
+      parentIds = Arrays.copyOf(parentIds, (depth * 2));
+      parentPaths = Arrays.copyOf(parentPaths, (depth * 2));
+    }
+    if (depth == 0)               // top-level folders have a full path
+      path = (givenData.path != null) ? givenData.path : givenData.name;
+    else
+      path = parentPaths[depth - 1] + File.separator + givenData.name;
+
+    line = ShowFolderSize1.outputBuffer; // same buffer for every line
+    line.append("{\"id\":").append(nextId);
+    line.append(",\"parent\":").append((depth == 0) ? -1
+      : parentIds[depth - 1]);
+    line.append(",\"depth\":").append(depth);
+    line.append(",\"name\":");
+    quotedString(line, givenData.name);
+    line.append(",\"path\":");
+    quotedString(line, path);
+    line.append(",\"folderBytes\":").append(givenData.numbyte);
+    line.append(",\"folderFiles\":").append(givenData.numfile);
+    line.append(",\"folderSubfolders\":").append(givenData.numfold);
+    line.append(",\"subfolderBytes\":").append(givenData.subbyte);
+    line.append(",\"subfolderFiles\":").append(givenData.subfile);
+    line.append(",\"subfolderFolders\":").append(givenData.subfold);
+    line.append(",\"totalBytes\":").append(givenData.numbyte
+      + givenData.subbyte);
+    line.append(",\"totalFiles\":").append(givenData.numfile
+      + givenData.subfile);
+    line.append(",\"totalSubfolders\":").append(givenData.numfold
+      + givenData.subfold);
+    if (ShowFolderSize1.allocFlag) // allocated sizes only if requested
+    {
+      line.append(",\"folderRoundedBytes\":").append(givenData.numalloc);
+      line.append(",\"subfolderRoundedBytes\":").append(givenData.suballoc);
+      line.append(",\"totalRoundedBytes\":").append(givenData.numalloc
+        + givenData.suballoc);
+    }
+    if (ShowFolderSize1.estimateLevel > 0) // intervals only for estimates
+    {
+      error = ShowFolderSize1.scanner.estimateError(givenData);
+      line.append(",\"totalBytesError\":").append((error == null) ? 0
+        : error[0]);
+      line.append(",\"totalFilesError\":").append((error == null) ? 0
+        : error[1]);
+    }
+    if (ShowFolderSize1.detailFlag) // file sizes and types only if requested
+    {
+      detail = ShowFolderSize1Detail.combine(givenData.numdetail,
+        givenData.subdetail);
+      line.append(",\"totalSizeCounts\":[");
+      last = -1;                  // last size bucket with any files
+      if (detail != null)
+        for (i = 0; i < ShowFolderSize1Detail.SIZE_BUCKETS; i ++)
+          if (detail.sizeCounts[i] > 0)
+            last = i;
+      for (i = 0; i <= last; i ++) // bucket n is less than 2^n bytes
+        line.append((i > 0) ? "," : "").append(detail.sizeCounts[i]);
+      line.append("],\"totalTypeBytes\":{");
+      sorted = (detail == null) ? new int[0] : detail.sortedTypes();
+      for (i = 0; i < sorted.length; i ++) // most bytes first
+      {
+        line.append((i > 0) ? "," : "");
+        quotedString(line, detail.typeNames[sorted[i]]);
+        line.append(':').append(detail.typeBytes[sorted[i]]);
+      }
+      line.append("},\"totalTypeFiles\":{");
+      for (i = 0; i < sorted.length; i ++) // same order as bytes
+      {
+        line.append((i > 0) ? "," : "");
+        quotedString(line, detail.typeNames[sorted[i]]);
+        line.append(':').append(detail.typeFiles[sorted[i]]);
+      }
+      line.append('}');
+    }
+    if (ShowFolderSize1.errorFlag) // unreadable paths only if requested
+    {
+      line.append(",\"folderErrors\":").append(givenData.numerror);
+      line.append(",\"subfolderErrors\":").append(givenData.suberror);
+      line.append(",\"totalErrors\":").append(givenData.numerror
+        + givenData.suberror);
+      line.append(",\"unreadablePaths\":[");
+      for (i = 0; (givenData.errlist != null)
+        && (i < givenData.errlist.size()); i ++)
+      {
+        line.append((i > 0) ? "," : "");
+        quotedString(line, (String) givenData.errlist.get(i));
+      }
+      line.append(']');
+    }
+    line.append('}');
+    ShowFolderSize1.printLine();
+
+    parentIds[depth] = nextId ++; // for subfolders of this folder
+    parentPaths[depth] = path;
+  }
+
+  /* quotedString() method: append a JSON string with escapes */
+
+  void quotedString(
+    StringBuilder buffer,         // line of output being built
+    String input)                 // input string to be quoted
+  {
+    char ch;                      // one character from input string
+    int i;                        // index variable
+    int length;                   // size of input string in characters
+
+    buffer.append('"');
+    length = input.length();
+    for (i = 0; i < length; i ++)
+    {
+      ch = input.charAt(i);
+      if ((ch == '"') || (ch == '\\')) // must escape quotes, backslashes
+        buffer.append('\\').append(ch);
+      else if ((ch < 0x20) || (asciiFlag && (ch > 0x7E))) // control, etc
+      {
+        buffer.append("\\u");
+        buffer.append(Character.forDigit(((ch >> 12) & 0xF), 16));
+        buffer.append(Character.forDigit(((ch >> 8) & 0xF), 16));
+        buffer.append(Character.forDigit(((ch >> 4) & 0xF), 16));
+        buffer.append(Character.forDigit((ch & 0xF), 16));
+      }
+      else
+        buffer.append(ch);
+    }
+    buffer.append('"');
+  }
+
+} // end of ShowFolderSize1ReportJson class
+
+// ------------------------------------------------------------------------- //
+
+/*
+  ShowFolderSize1ReportText class
+
+  Formatted text (-v0), with one line for each folder, plus lines for file
+  sizes and types (-x1), and unreadable paths (-w1) after top-level folders.
+  The -m options choose which totals are shown.
+*/
+
+class ShowFolderSize1ReportText implements ShowFolderSize1Report
+{
+  /* begin() method: nothing before the first folder */
+
+  public void begin() { }
+
+  /* finish() method: nothing after the last folder */
+
+  public void finish() { }
+
+  /* folder() method: one line for a folder, maybe more for -x1 */
+
+  public void folder(
+    int depth,                    // current subfolder report depth
+    String indent,                // current left indent string
+    ShowFolderSize1Data givenData) // data object for this folder/subfolder
+  {
+    long[] error;                 // intervals for estimates (-e#), or null
+    long errors;                  // number of folders and files not read
+    StringBuilder line;           // one line of output, empty to start
+
+    line = ShowFolderSize1.outputBuffer; // same buffer for every line
+    line.append(indent).append(givenData.name).append(" = ");
+    if (givenData.numfold == 0)   // are there any subfolders?
+    {
+      ShowFolderSize1.formatBytes(line, givenData.numbyte);
+      line.append(" in ");
+      ShowFolderSize1.formatCount(line, givenData.numfile);
+      line.append(" files");
+      ShowFolderSize1.formatAlloc(line, givenData.numalloc, -1);
+    }
+    else if (ShowFolderSize1.messageLevel == 0) // this folder only
+    {
+      ShowFolderSize1.formatBytes(line, givenData.numbyte);
+      line.append(" in ");
+      ShowFolderSize1.formatCount(line, givenData.numfile);
+      line.append(" files with ");
+      ShowFolderSize1.formatCount(line, givenData.numfold);
+      line.append(" subfolders");
+      ShowFolderSize1.formatAlloc(line, givenData.numalloc, -1);
+    }
+    else if (ShowFolderSize1.messageLevel == 1) // add subfolder data
+    {
+      ShowFolderSize1.formatBytes(line, (givenData.numbyte
+        + givenData.subbyte));
+      line.append(" in ");
+      ShowFolderSize1.formatCount(line, (givenData.numfile
+        + givenData.subfile));
+      line.append(" files and ");
+      ShowFolderSize1.formatCount(line, (givenData.numfold
+        + givenData.subfold));
+      line.append(" subfolders");
+      ShowFolderSize1.formatAlloc(line, (givenData.numalloc
+        + givenData.suballoc), -1);
+    }
+    else                          // assume the "excessive detail" option
+    {
+      /* Despite the humorous name, this is where you can change the program to
+      print any level of detail about folders with subfolders.  Folders without
+      subfolders are always handled above, at the beginning. */
+
+      ShowFolderSize1.formatBytes(line, givenData.numbyte);
+      line.append(" in ");
+      ShowFolderSize1.formatCount(line, givenData.numfile);
+      line.append(" files + ");
+      ShowFolderSize1.formatBytes(line, givenData.subbyte);
+      line.append(" in ");
+      ShowFolderSize1.formatCount(line, (givenData.numfold
+        + givenData.subfold));
+      line.append(" subfolders");
+      ShowFolderSize1.formatAlloc(line, givenData.numalloc,
+        givenData.suballoc);
+    }
+    error = ShowFolderSize1.scanner.estimateError(givenData);
+    if ((error != null) && (ShowFolderSize1.messageLevel > 0)) // estimated?
+    {
+      line.append(" (estimate +/- ");
+      ShowFolderSize1.formatBytes(line, error[0]);
+      line.append(", +/- ");
+      ShowFolderSize1.formatCount(line, error[1]);
+      line.append(" files)");
+    }
+    errors = (ShowFolderSize1.messageLevel == 0) ? givenData.numerror
+      : (givenData.numerror + givenData.suberror);
+    if (errors > 0)               // folders or files that couldn't be read
+    {
+      line.append(" (");
+      ShowFolderSize1.formatCount(line, errors);
+      line.append(" unreadable)");
+    }
+    line.append('.');
+    ShowFolderSize1.printLine();
+
+    if (ShowFolderSize1.detailFlag) // file sizes and types after folder?
+    {
+      ShowFolderSize1.printDetail((indent + ShowFolderSize1.indentString),
+        ((ShowFolderSize1.messageLevel == 0) ? givenData.numdetail
+        : ShowFolderSize1Detail.combine(givenData.numdetail,
+        givenData.subdetail)));
+    }
+    if (ShowFolderSize1.errorFlag && (depth == 0)
+      && (givenData.errlist != null)) // unreadable paths below folder?
+    {
+      printErrors((indent + ShowFolderSize1.indentString), givenData);
+    }
+  }
+
+  /* printErrors() method: one line for each unreadable path kept for a
+  top-level folder, and how many more there were.  Subfolders would only
+  repeat the same paths, so they don't get these lines. */
+
+  void printErrors(
+    String indent,                // left indent for these lines
+    ShowFolderSize1Data givenData) // data object for top-level folder
+  {
+    int i;                        // index variable
+    StringBuilder line;           // one line of output, empty to start
+    long more;                    // errors without a path in the list
+
+    line = ShowFolderSize1.outputBuffer; // same buffer for every line
+    for (i = 0; i < givenData.errlist.size(); i ++)
+    {
+      line.append(indent).append("unreadable: ").append(givenData.errlist
+        .get(i));
+      ShowFolderSize1.printLine();
+    }
+    more = givenData.numerror + givenData.suberror - givenData.errlist.size();
+    if (more > 0)                 // list is only the first few for each
+    {
+      line.append(indent).append("unreadable: ");
+      ShowFolderSize1.formatCount(line, more);
+      line.append(" more not shown");
+      ShowFolderSize1.printLine();
+    }
+  }
+
+} // end of ShowFolderSize1ReportText class
+
+// ------------------------------------------------------------------------- //
+
+/*
+  ShowFolderSize1Server class
+
+  Resident mode for the -serve=# option.  After the normal search and report,
+  data objects for all folders and subfolders stay in memory, each folder is
+  watched with a java.nio.file WatchService, and a thread answers requests for
+  a new report on a local socket.  When a folder changes, only that folder's
+  own files are listed again, and the difference in its totals is added to
+  each parent folder.  A new subfolder is searched and added to its parent;
+  a deleted subfolder is removed with all of its totals.  If the operating
+  system drops events (overflow), the folder's subfolders are checked against
+  a new listing.
+
+  One lock (this object) protects the data objects, so that a report always
+  has a consistent tree.  Reports call the same printData() method as the
+  command line, with output going to the socket instead.
+*/
+
+class ShowFolderSize1Server extends Thread
+{
+  /* constants */
+
+  static final int READ_TIMEOUT = 5000; // milliseconds to wait for a request
+
+  /* class variables */
+
+  IdentityHashMap folderKeys;     // watch key for each data object
+  HashMap keyFolders;             // data objects for each watch key (Vector)
+  ShowFolderSize1Data[] roots;    // top-level folders in command-line order
+  ServerSocket socket;            // listens for report requests
+  boolean watchError;             // true after first folder we can't watch
+  WatchService watcher;           // events for all folders being watched
+
+  /* constructor */
+
+  public ShowFolderSize1Server(
+    ShowFolderSize1Data[] roots,  // top-level folders in command-line order
+    int port)                     // local port number for report requests
+    throws IOException
+  {
+    int i;                        // index variable
+
+    this.folderKeys = new IdentityHashMap();
+    this.keyFolders = new HashMap();
+    this.roots = roots;
+    this.socket = new ServerSocket(port, 50, InetAddress
+      .getLoopbackAddress());     // only this computer can connect
+    this.watchError = false;
+    this.watcher = FileSystems.getDefault().newWatchService();
+    for (i = 0; i < roots.length; i ++)
+      watchTree(roots[i], new File(roots[i].path));
+    this.setDaemon(true);         // main thread keeps program running
+  }
+
+  /* addChange() method: add the change in a folder's totals (since <before>)
+  to all of its parent folders */
+
+  void addChange(ShowFolderSize1Data folder, long[] before)
+  {
+    ShowFolderSize1Data above;    // one of the parent folders
+    long[] after;                 // new totals for folder
+
+    after = totals(folder);
+    for (above = folder.parent; above != null; above = above.parent)
+    {
+      above.subbyte += after[0] - before[0];
+      above.subfile += after[1] - before[1];
+      above.subfold += after[2] - before[2];
+      above.suballoc += after[3] - before[3];
+      above.suberror += after[4] - before[4];
+    }
+  }
+
+  /* addFolder() method: search a new subfolder and start watching it.  Files
+  may be added after the search and before the watch starts, so the new
+  folders are listed once more after they are being watched. */
+
+  void addFolder(ShowFolderSize1Data parent, File path, int depth, String name)
+  {
+    BasicFileAttributes attrs;    // type and time for new subfolder
+    long[] before;                // parent's totals before new subfolder
+    File next;                    // path for new subfolder
+    Path nextPath;                // same subfolder for searching, or null
+    ShowFolderSize1Data subdata;  // data object for new subfolder
+
+    next = new File(path, name);
+    attrs = ShowFolderSize1Scanner.readAttributes(next);
+    if ((attrs == null) || (attrs.isDirectory() == false))
+      return;                     // gone already, or not a folder
+    before = totals(parent);
+    nextPath = ShowFolderSize1Scanner.toPath(next, parent);
+    if (nextPath != null)         // null if name can't be converted
+      ShowFolderSize1.scanner.searchSubfolder((depth + 1), nextPath, attrs,
+        parent, null);
+    addChange(parent, before);    // totals for all parent folders
+    subdata = (ShowFolderSize1Data) parent.sublist.get(name);
+    if (subdata != null)          // null if it was a loop
+    {
+      watchTree(subdata, next);
+      updateTree(subdata, next, (depth + 1));
+    }
+  }
+
+  /* depthOf() method: return subfolder depth for a data object */
+
+  static int depthOf(ShowFolderSize1Data folder)
+  {
+    int depth;                    // number of parent folders
+
+    for (depth = 0; folder.parent != null; folder = folder.parent)
+      depth ++;
+    return(depth);
+  }
+
+  /* pathOf() method: return the full path for a data object, built from the
+  top-level folder's path and the names of subfolders */
+
+  static File pathOf(ShowFolderSize1Data folder)
+  {
+    if (folder.parent == null)    // top-level folders have a full path
+      return(new File(folder.path));
+    return(new File(pathOf(folder.parent), folder.name));
+  }
+
+  /* recheck() method: compare a folder's subfolders with a new listing, after
+  the operating system dropped some events */
+
+  void recheck(ShowFolderSize1Data folder, File path, int depth)
+  {
+    int i;                        // index variable
+    String[] names;               // names in folder, files and subfolders
+    HashSet present;              // names of subfolders that exist
+    ShowFolderSize1Data[] subfolders; // data for subfolders before listing
+
+    names = path.list();          // no filter, not sorted
+    if (names == null)            // folder is gone or can't be read
+      names = new String[0];
+    present = new HashSet();
+    for (i = 0; i < names.length; i ++)
+      if (new File(path, names[i]).isDirectory()) // only subfolders
+      {
+        present.add(names[i]);
+        if (folder.sublist.containsKey(names[i]) == false) // new subfolder?
+        {
+          addFolder(folder, path, depth, names[i]);
+        }
+      }
+    subfolders = ShowFolderSize1.scanner.getSubfolders(folder,
+      ShowFolderSize1.SORT_NONE);
+    for (i = 0; i < subfolders.length; i ++)
+      if (present.contains(subfolders[i].name) == false) // no longer exists?
+      {
+        removeFolder(folder, subfolders[i]);
+      }
+  }
+
+  /* removeFolder() method: remove a subfolder and its totals from its parent,
+  and stop watching it */
+
+  void removeFolder(ShowFolderSize1Data parent, ShowFolderSize1Data subdata)
+  {
+    long[] before;                // parent's totals before removing
+
+    before = totals(parent);
+    parent.sublist.remove(subdata.name);
+    parent.numfold --;
+    parent.subbyte -= subdata.numbyte + subdata.subbyte;
+    parent.subfile -= subdata.numfile + subdata.subfile;
+    parent.subfold -= subdata.numfold + subdata.subfold;
+    parent.suballoc -= subdata.numalloc + subdata.suballoc;
+    parent.suberror -= subdata.numerror + subdata.suberror;
+    addChange(parent, before);    // totals for all parent folders
+    unwatchTree(subdata);
+  }
+
+  /* report() method: send one report to a client */
+
+  void report(Socket client) throws IOException
+  {
+    int i;                        // index variable
+    String request;               // "text", "csv", "json", or empty
+    boolean savedError;           // output error state for standard output
+    ShowFolderSize1Report savedReport; // report style from command line
+    int savedStyle;               // style number from command line
+    Writer savedWriter;           // standard output
+    int style;                    // report style for this client
+    Writer writer;                // buffered output to client
+
+    client.setSoTimeout(READ_TIMEOUT); // don't wait forever for a request
+    try { request = new BufferedReader(new InputStreamReader(client
+      .getInputStream(), ShowFolderSize1.outputCharset)).readLine(); }
+    catch (SocketTimeoutException ste) { request = null; }
+    request = (request == null) ? "" : request.trim().toLowerCase();
+    if (request.equals("csv"))    // comma-separated values
+      style = ShowFolderSize1.REPORT_CSV;
+    else if (request.equals("json")) // JSON Lines
+      style = ShowFolderSize1.REPORT_JSON;
+    else if (request.equals("text")) // formatted text
+      style = ShowFolderSize1.REPORT_TEXT;
+    else                          // same format as command line
+      style = ShowFolderSize1.reportStyle;
+    writer = new BufferedWriter(new OutputStreamWriter(client
+      .getOutputStream(), ShowFolderSize1.outputCharset), 65536);
+
+    synchronized (this)           // no updates while printing
+    {
+      savedError = ShowFolderSize1.outputError;
+      savedReport = ShowFolderSize1.reportWriter;
+      savedStyle = ShowFolderSize1.reportStyle;
+      savedWriter = ShowFolderSize1.outputWriter;
+      ShowFolderSize1.outputError = false;
+      ShowFolderSize1.outputWriter = writer;
+      ShowFolderSize1.reportStyle = style;
+      ShowFolderSize1.reportSetup(); // new report for each client
+      ShowFolderSize1.reportWriter.begin(); // column headers before data
+      for (i = 0; i < roots.length; i ++) // command-line order
+        ShowFolderSize1.printData(0, "", roots[i]);
+      ShowFolderSize1.reportWriter.finish();
+      ShowFolderSize1.printFlush();
+      ShowFolderSize1.outputError = savedError;
+      ShowFolderSize1.outputWriter = savedWriter;
+      ShowFolderSize1.reportStyle = savedStyle;
+      ShowFolderSize1.reportWriter = savedReport;
+    }
+  }
+
+  /* run() method: answer report requests forever, one client at a time */
+
+  public void run()
+  {
+    Socket client;                // one connection from a client
+
+    while (true)
+    {
+      try
+      {
+        client = socket.accept();
+        try { report(client); }
+        finally { client.close(); }
+      }
+      catch (IOException ioe) { /* client went away, wait for the next */ }
+    }
+  }
+
+  /* totals() method: return the bytes, files, subfolders, allocated bytes,
+  and errors for a folder plus its subfolders */
+
+  static long[] totals(ShowFolderSize1Data folder)
+  {
+    return(new long[] { (folder.numbyte + folder.subbyte), (folder.numfile
+      + folder.subfile), (folder.numfold + folder.subfold), (folder.numalloc
+      + folder.suballoc), (folder.numerror + folder.suberror) });
+  }
+
+  /* unwatchTree() method: stop watching a folder and all of its subfolders */
+
+  void unwatchTree(ShowFolderSize1Data folder)
+  {
+    Vector folders;               // data objects for the same watch key
+    int i;                        // index variable
+    WatchKey key;                 // watch key for this folder, or null
+    ShowFolderSize1Data[] subfolders; // data for subfolders
+
+    key = (WatchKey) folderKeys.remove(folder);
+    if (key != null)              // were we watching this folder?
+    {
+      folders = (Vector) keyFolders.get(key);
+      folders.remove(folder);     // Vector.remove() uses equals(), identity
+      if (folders.size() == 0)    // no other path for this folder?
+      {
+        key.cancel();
+        keyFolders.remove(key);
+      }
+    }
+    subfolders = ShowFolderSize1.scanner.getSubfolders(folder,
+      ShowFolderSize1.SORT_NONE);
+    for (i = 0; i < subfolders.length; i ++)
+      unwatchTree(subfolders[i]);
+  }
+
+  /* update() method: a watched folder has changed, so list its own files
+  again, check for new or deleted subfolders, and fix totals for parents.
+  Without any events, all subfolders are checked against a new listing. */
+
+  void update(
+    ShowFolderSize1Data folder,   // data object for changed folder
+    File path,                    // full path for this folder
+    int depth,                    // subfolder depth for this folder
+    List events)                  // changes from watch key, or null
+  {
+    long[] before;                // totals before listing files
+    WatchEvent event;             // one change in this folder
+    ShowFolderSize1Data files;    // new totals for files in this folder only
+    Path folderPath;              // same folder for searching, or null
+    int i;                        // index variable
+    String name;                  // name of changed file or subfolder
+    ShowFolderSize1Data subdata;  // data object for one subfolder, or null
+
+    before = totals(folder);
+
+    /* Searching at the maximum depth lists only files, not subfolders. */
+
+    files = new ShowFolderSize1Data();
+    folderPath = ShowFolderSize1Scanner.toPath(path, files);
+    if (folderPath != null)       // null if name can't be converted
+      ShowFolderSize1.scanner.searchList(ShowFolderSize1.searchDepth,
+        folderPath, files, null);
+    folder.numalloc = files.numalloc;
+    folder.numbyte = files.numbyte;
+    folder.numerror = files.numerror; // counts only, paths aren't updated
+    folder.numfile = files.numfile;
+    addChange(folder, before);    // totals for all parent folders
+
+    /* New and deleted subfolders fix their own totals for parent folders. */
+
+    if ((depth >= ShowFolderSize1.searchDepth) || (folder.sublist == null))
+      { /* no subfolders at this depth */ }
+    else if (events == null)      // check all subfolders
+      recheck(folder, path, depth);
+    else                          // only subfolders named in events
+    {
+      for (i = 0; i < events.size(); i ++)
+      {
+        event = (WatchEvent) events.get(i);
+        if (event.kind() == StandardWatchEventKinds.OVERFLOW) // lost events?
+        {
+          recheck(folder, path, depth);
+          continue;
+        }
+        name = event.context().toString(); // name of file or subfolder
+        subdata = (ShowFolderSize1Data) folder.sublist.get(name);
+        if ((subdata != null)
+          && (event.kind() == StandardWatchEventKinds.ENTRY_DELETE))
+        {
+          removeFolder(folder, subdata); // deleted or renamed subfolder
+        }
+        else if ((subdata == null)
+          && (event.kind() == StandardWatchEventKinds.ENTRY_CREATE))
+        {
+          addFolder(folder, path, depth, name); // does nothing for files
+        }
+      }
+    }
+  }
+
+  /* updateTree() method: list a folder and all of its subfolders again */
+
+  void updateTree(ShowFolderSize1Data folder, File path, int depth)
+  {
+    int i;                        // index variable
+    ShowFolderSize1Data[] subfolders; // data for subfolders before listing
+
+    subfolders = ShowFolderSize1.scanner.getSubfolders(folder,
+      ShowFolderSize1.SORT_NONE);
+    update(folder, path, depth, null);
+    for (i = 0; i < subfolders.length; i ++)
+      if (folderKeys.containsKey(subfolders[i])) // not removed by update()?
+        updateTree(subfolders[i], new File(path, subfolders[i].name),
+          (depth + 1));
+  }
+
+  /* watch() method: wait for changes to folders, forever */
+
+  void watch()
+  {
+    List events;                  // changes to one folder
+    ShowFolderSize1Data folder;   // data object for a changed folder
+    Vector folders;               // data objects for a changed folder
+    int i;                        // index variable
+    WatchKey key;                 // events for one folder
+
+    while (true)
+    {
+      try { key = watcher.take(); }
+      catch (InterruptedException ie) { return; }
+      synchronized (this)         // no reports while updating
+      {
+        events = key.pollEvents();
+        folders = (Vector) keyFolders.get(key);
+        if (folders != null)      // null if we stopped watching it
+        {
+          folders = new Vector(folders); // updates may change the list
+          for (i = 0; i < folders.size(); i ++)
+          {
+            folder = (ShowFolderSize1Data) folders.get(i);
+            if (folderKeys.containsKey(folder)) // not removed yet?
+              update(folder, pathOf(folder), depthOf(folder), events);
+          }
+        }
+        if ((key.reset() == false) && (folders != null)) // folder is gone?
+        {
+          keyFolders.remove(key);
+          for (i = 0; i < folders.size(); i ++)
+            folderKeys.remove(folders.get(i));
+        }
+      }
+    }
+  }
+
+  /* watchTree() method: start watching a folder and all of its subfolders */
+
+  void watchTree(ShowFolderSize1Data folder, File path)
+  {
+    Vector folders;               // data objects for the same watch key
+    int i;                        // index variable
+    WatchKey key;                 // watch key for this folder
+    ShowFolderSize1Data[] subfolders; // data for subfolders
+
+    try
+    {
+      key = path.toPath().register(watcher,
+        StandardWatchEventKinds.ENTRY_CREATE,
+        StandardWatchEventKinds.ENTRY_DELETE,
+        StandardWatchEventKinds.ENTRY_MODIFY);
+      folders = (Vector) keyFolders.get(key); // same key for same folder
+      if (folders == null)        // first path to this folder?
+      {
+        folders = new Vector();
+        keyFolders.put(key, folders);
+      }
+      folders.add(folder);        // symbolic links give more than one path
+      folderKeys.put(folder, key);
+    }
+    catch (IOException ioe)       // usually too many folders being watched
+    {
+      if (watchError == false)    // only one warning, not thousands
+        System.err.println("Can't watch folder " + path + " (and maybe more): "
+          + ioe.getMessage());
+      watchError = true;
+    }
+    catch (InvalidPathException ipe) // name can't be converted
+    {
+      /* already counted as unreadable by the search */
+    }
+    subfolders = ShowFolderSize1.scanner.getSubfolders(folder,
+      ShowFolderSize1.SORT_NONE);
+    for (i = 0; i < subfolders.length; i ++)
+      watchTree(subfolders[i], new File(path, subfolders[i].name));
+  }
+
+} // end of ShowFolderSize1Server class
+
+// ------------------------------------------------------------------------- //
+
+/*
+  ShowFolderSize1Snapshot class
+
+  Read or write a snapshot file with data for all folders and subfolders, for
+  the -load and -save options.  The file starts with a header, followed by a
+  record for each top-level folder, with records for its subfolders nested
+  inside in sorted order (depth first).  Each record has a name, modification
+  time, totals from the data object, and number of subfolder records.  Numbers
+  are written as variable-length integers (seven bits per byte), because most
+  counters are small.  The name for a top-level folder is its full path.
+
+  Snapshots loaded for an incremental search are kept in memory as data
+  objects, indexed by the full path of each top-level folder.
+*/
+
+class ShowFolderSize1Snapshot
+{
+  /* constants */
+
+  static final int FILE_MAGIC = 0x53465331; // "SFS1" at start of snapshot
+  static final int FILE_VERSION = 1; // version number for format changes
+
+  /* class variables */
+
+  boolean caseFlag;               // "case" option when snapshot was saved
+  DataInputStream input;          // for reading a snapshot, or null
+  int lastDepth;                  // depth of folder from readNext()
+  long[] nestCount;               // subfolder records left at each depth
+  int nestLevel;                  // number of depths in <nestCount>
+  DataOutputStream output;        // for writing a snapshot, or null
+  Hashtable roots;                // top-level folders by full path, or null
+  int searchDepth;                // search depth when snapshot was saved
+
+  /* constructor (no arguments) */
+
+  public ShowFolderSize1Snapshot()
+  {
+    this.caseFlag = ShowFolderSize1.caseFlag; // same as current options
+    this.input = null;            // no input file
+    this.lastDepth = -1;          // no folders read yet
+    this.nestCount = new long[ShowFolderSize1.DEFAULT_SEARCH + 2];
+    this.nestLevel = 0;           // not inside any folder yet
+    this.output = null;           // no output file
+    this.roots = null;            // no top-level folders loaded
+    this.searchDepth = ShowFolderSize1.searchDepth;
+  }
+
+  /* close() method: finish writing or reading a snapshot file */
+
+  void close() throws IOException
+  {
+    if (output != null)           // are we writing?
+    {
+      output.writeByte(0);        // no more top-level folders
+      output.close();             // flush buffers and close file
+      output = null;
+    }
+    if (input != null)            // are we reading?
+    {
+      input.close();
+      input = null;
+    }
+  }
+
+  /* create() method: create a new snapshot file and write the header */
+
+  static ShowFolderSize1Snapshot create(String filename) throws IOException
+  {
+    ShowFolderSize1Snapshot result; // our result
+
+    result = new ShowFolderSize1Snapshot(); // header has current options
+    result.output = new DataOutputStream(new BufferedOutputStream(
+      new FileOutputStream(filename), 65536));
+    result.output.writeInt(FILE_MAGIC);
+    result.output.writeInt(FILE_VERSION);
+    result.output.writeBoolean(result.caseFlag);
+    result.output.writeInt(result.searchDepth);
+    return(result);
+  }
+
+  /* load() method: read an entire snapshot file into memory */
+
+  static ShowFolderSize1Snapshot load(String filename) throws IOException
+  {
+    ShowFolderSize1Data folder;   // one top-level folder
+    ShowFolderSize1Snapshot result; // our result
+
+    result = open(filename);      // check header before reading folders
+    result.roots = new Hashtable(); // top-level folders by full path
+    while (result.input.readByte() != 0) // for each top-level folder
+    {
+      folder = result.readFolder(); // read folder and all subfolders
+      folder.path = folder.name;  // name is full path for top-level folders
+      result.roots.put(folder.path, folder);
+    }
+    result.close();               // nothing more to read
+    return(result);
+  }
+
+  /* open() method: open an existing snapshot file and check the header */
+
+  static ShowFolderSize1Snapshot open(String filename) throws IOException
+  {
+    ShowFolderSize1Snapshot result; // our result
+
+    result = new ShowFolderSize1Snapshot(); // replaced by header
+    result.input = new DataInputStream(new BufferedInputStream(
+      new FileInputStream(filename), 65536));
+    if ((result.input.readInt() != FILE_MAGIC)
+      || (result.input.readInt() != FILE_VERSION))
+    {
+      result.input.close();
+      throw new IOException("not a snapshot file, or wrong version");
+    }
+    result.caseFlag = result.input.readBoolean();
+    result.searchDepth = result.input.readInt();
+    return(result);
+  }
+
+  /* readFolder() method: read a folder record and all nested subfolders */
+
+  ShowFolderSize1Data readFolder() throws IOException
+  {
+    long count;                   // number of subfolder records
+    ShowFolderSize1Data result;   // our result
+    ShowFolderSize1Data subdata;  // data object for one subfolder
+
+    result = new ShowFolderSize1Data(); // start with empty result
+    count = readRecord(result);   // folder without subfolders
+    result.sublist = new HashMap(); // indexed by exact name
+    while (count -- > 0)
+    {
+      subdata = readFolder();     // recursively read subfolder
+      subdata.parent = result;
+      result.sublist.put(subdata.name, subdata);
+    }
+    return(result);
+  }
+
+  /* readNext() method: read the next folder record in sorted order (depth
+  first), without keeping its subfolders, and set <lastDepth> to its depth.
+  Return null at the end of the file. */
+
+  ShowFolderSize1Data readNext() throws IOException
+  {
+    ShowFolderSize1Data result;   // our result
+
+    while ((nestLevel > 0) && (nestCount[nestLevel - 1] == 0))
+      nestLevel --;               // no more subfolders at this depth
+    if (nestLevel == 0)           // next top-level folder, if any
+    {
+      if (input.readByte() == 0)  // end of snapshot file?
+        return(null);
+    }
+    else
+      nestCount[nestLevel - 1] --; // one less subfolder at this depth
+    result = new ShowFolderSize1Data(); // start with empty result
+    lastDepth = nestLevel;        // depth of this folder
+    if (nestLevel == nestCount.length) // need more room for depths?
+      nestCount = Arrays.copyOf(nestCount, (nestLevel * 2));
+    nestCount[nestLevel ++] = readRecord(result); // subfolders follow
+    return(result);
+  }
+
+  /* readNumber() method: read a variable-length integer */
+
+  long readNumber() throws IOException
+  {
+    int next;                     // next byte from input
+    long result;                  // our result
+    int shift;                    // bits already in result
+
+    result = 0;
+    shift = 0;
+    do
+    {
+      next = input.readUnsignedByte();
+      result |= ((long) (next & 0x7F)) << shift; // seven bits per byte
+      shift += 7;
+    } while ((next & 0x80) != 0);  // high bit set if more bytes follow
+    return(result);
+  }
+
+  /* readRecord() method: read one folder record without subfolders, and
+  return the number of subfolder records that follow */
+
+  long readRecord(ShowFolderSize1Data result) throws IOException
+  {
+    result.name = input.readUTF();
+    result.modified = readNumber();
+    result.numbyte = readNumber();
+    result.numfile = readNumber();
+    result.numfold = readNumber();
+    result.subbyte = readNumber();
+    result.subfile = readNumber();
+    result.subfold = readNumber();
+    return(readNumber());
+  }
+
+  /* writeFolder() method: write a folder record and all nested subfolders */
+
+  void writeFolder(
+    String name,                  // full path or folder name
+    ShowFolderSize1Data data) throws IOException
+  {
+    int i;                        // index variable
+    ShowFolderSize1Data[] subfolders; // sorted data for subfolders
+
+    subfolders = ShowFolderSize1.scanner.getSubfolders(data,
+      ShowFolderSize1.SORT_NAME); // always sorted by name in files
+    output.writeUTF(name);
+    writeNumber(data.modified);
+    writeNumber(data.numbyte);
+    writeNumber(data.numfile);
+    writeNumber(data.numfold);
+    writeNumber(data.subbyte);
+    writeNumber(data.subfile);
+    writeNumber(data.subfold);
+    writeNumber(subfolders.length);
+    for (i = 0; i < subfolders.length; i ++)
+      writeFolder(subfolders[i].name, subfolders[i]); // recursively write
+  }
+
+  /* writeNumber() method: write a variable-length integer */
+
+  void writeNumber(long value) throws IOException
+  {
+    while ((value & ~0x7FL) != 0) // more than seven bits left?
+    {
+      output.writeByte((int) ((value & 0x7F) | 0x80)); // more bytes follow
+      value >>>= 7;
+    }
+    output.writeByte((int) value); // last byte has high bit clear
+  }
+
+  /* writeRoot() method: write a top-level folder and all subfolders */
+
+  void writeRoot(ShowFolderSize1Data data) throws IOException
   {
-    this.name = null;             // no folder name
-    this.numbyte = 0;             // no bytes in files yet
-    this.numfile = 0;             // no files found yet
-    this.numfold = 0;             // no subfolders found yet
-    this.subbyte = 0;             // no bytes in subfolders yet
-    this.subfile = 0;             // no files in subfolders yet
-    this.subfold = 0;             // no subfolders in subfolders yet
-    this.sublist = null;          // no subfolder list
+    output.writeByte(1);          // one more top-level folder
+    writeFolder(data.path, data); // full path instead of name
   }
 
-} // end of ShowFolderSize1Data class
+} // end of ShowFolderSize1Snapshot class
 
 /* Copyright (c) 2014 by Keith Fenske.  Apache License or GNU GPL. */
@@ -0,0 +1,26 @@
+/*
+  Writer That Discards Output for Show Folder Size Benchmarks
+  Copyright (c) 2014 by Keith Fenske.  Apache License or GNU GPL.
+
+  Count characters written, then throw them away.  The count keeps the JIT
+  compiler from removing output code as having no effect.
+*/
+
+package io.github.kwfenske.bench;
+
+import java.io.*;                 // standard I/O
+
+final class DiscardWriter extends Writer
+{
+  long count;                     // total number of characters written
+
+  public void close() { }
+
+  public void flush() { }
+
+  public void write(char[] buffer, int offset, int length)
+  {
+    count += length;
+  }
+
+} // end of DiscardWriter class
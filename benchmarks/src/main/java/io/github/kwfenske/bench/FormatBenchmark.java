@@ -0,0 +1,76 @@
+/*
+  Benchmark for Formatting Sizes in Show Folder Size
+  Copyright (c) 2014 by Keith Fenske.  Apache License or GNU GPL.
+
+  Time formatBytes() for a fixed set of sizes, spread evenly on a logarithmic
+  scale from one byte to several terabytes, so that every unit (KB, MB, GB, TB)
+  is used.  The "units" parameter is the same as the -b, -kb, -mb, -gb, and
+  -tb options, with "auto" for the default (most expressive) units.
+*/
+
+package io.github.kwfenske.bench;
+
+import java.util.*;               // random numbers
+import java.util.concurrent.*;    // time units
+import org.openjdk.jmh.annotations.*; // JMH benchmark annotations
+
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+public class FormatBenchmark
+{
+  static final int SIZE_COUNT = 1024; // number of sizes, a power of two
+
+  @Param({"auto", "b", "kb", "gb"})
+  public String units;            // fixed units, or "auto" for closest
+
+  StringBuilder buffer;           // reused for each result
+  int next;                       // index of next size to format
+  long[] sizes;                   // sizes to format, in bytes
+
+  @Setup(Level.Trial)
+  public void setup()
+  {
+    int i;                        // index variable
+    Random random;                // sizes from a fixed seed
+
+    ProgramAccess.reset(new DiscardWriter());
+    if (units.equals("b"))
+    {
+      ProgramAccess.set("fixFactor", 1.0);
+      ProgramAccess.set("fixSuffix", " B");
+      ProgramAccess.set("formatUser", ProgramAccess.get("formatComma"));
+    }
+    else if (units.equals("kb"))
+    {
+      ProgramAccess.set("fixFactor", 1024.0);
+      ProgramAccess.set("fixSuffix", " KB");
+    }
+    else if (units.equals("gb"))
+    {
+      ProgramAccess.set("fixFactor", 1073741824.0);
+      ProgramAccess.set("fixSuffix", " GB");
+      ProgramAccess.set("formatUser", ProgramAccess.get("formatPointTwo"));
+    }
+
+    buffer = new StringBuilder();
+    next = 0;
+    random = new Random(SyntheticTree.RANDOM_SEED);
+    sizes = new long[SIZE_COUNT];
+    for (i = 0; i < SIZE_COUNT; i ++)
+      sizes[i] = (long) Math.pow(2.0, random.nextDouble() * 43.0);
+  }
+
+  @Benchmark
+  public int formatBytes() throws Throwable
+  {
+    buffer.setLength(0);
+    ProgramAccess.FORMAT_BYTES.invokeExact(buffer, sizes[next]);
+    next = (next + 1) & (SIZE_COUNT - 1);
+    return(buffer.length());
+  }
+
+} // end of FormatBenchmark class
@@ -0,0 +1,76 @@
+/*
+  Benchmark for Printing Reports in Show Folder Size
+  Copyright (c) 2014 by Keith Fenske.  Apache License or GNU GPL.
+
+  Search a synthetic folder tree once, keeping every subfolder, then time
+  printData() for the whole tree as formatted text, comma-separated values
+  (CSV), or JSON Lines, depending on the "format" parameter.  Output goes
+  through the program's buffered writer to a writer that discards everything,
+  so the time doesn't include a console or disk.
+
+  The "messageLevel" parameter is the same as the -m0, -m1, and -m2 options.
+*/
+
+package io.github.kwfenske.bench;
+
+import io.github.kwfenske.showfoldersize.*; // searching, data objects
+import java.io.*;                 // standard I/O
+import java.util.concurrent.*;    // time units
+import org.openjdk.jmh.annotations.*; // JMH benchmark annotations
+
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 2)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+public class PrintBenchmark
+{
+  static final int ALL_DEPTH = 999; // more than any synthetic tree
+
+  @Param({"deep", "small", "wide"})
+  public String shape;            // shape of synthetic folder tree
+
+  @Param({"1"})
+  public int scale;               // multiplies number of folders
+
+  @Param({"text", "csv", "json"})
+  public String format;           // formatted text, or same as -v1 or -v2
+
+  @Param({"0", "1", "2"})
+  public int messageLevel;        // amount of detail, same as -m0 to -m2
+
+  ShowFolderSize1Data data;       // search result for the whole tree
+  DiscardWriter output;           // counts characters, then drops them
+
+  @Setup(Level.Trial)
+  public void setup() throws Throwable
+  {
+    ShowFolderSize1Scanner scanner; // searches with options set above
+    SyntheticTree tree;           // files created for search, then deleted
+
+    output = new DiscardWriter();
+    ProgramAccess.reset(new BufferedWriter(output, 65536));
+    ProgramAccess.set("csvFlag", format.equals("csv"));
+    ProgramAccess.set("reportStyle", ProgramAccess.get("REPORT_"
+      + format.toUpperCase()));   // REPORT_TEXT, REPORT_CSV, or REPORT_JSON
+    ProgramAccess.REPORT_SETUP.invokeExact();
+    ProgramAccess.set("keepDepth", ALL_DEPTH);
+    ProgramAccess.set("messageLevel", messageLevel);
+    ProgramAccess.set("reportDepth", ALL_DEPTH);
+    ProgramAccess.set("searchDepth", ALL_DEPTH);
+    scanner = ProgramAccess.scanSetup();
+    tree = new SyntheticTree(shape, scale);
+    try { data = scanner.searchRoot(tree.root.toFile()); }
+    finally { tree.delete(); }
+  }
+
+  @Benchmark
+  public long printData() throws Throwable
+  {
+    ProgramAccess.PRINT_DATA.invokeExact(0, "", data);
+    ProgramAccess.PRINT_FLUSH.invokeExact();
+    return(output.count);
+  }
+
+} // end of PrintBenchmark class
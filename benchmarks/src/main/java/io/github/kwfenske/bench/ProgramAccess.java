@@ -0,0 +1,215 @@
+/*
+  Access to Show Folder Size Methods for Benchmarks
+  Copyright (c) 2014 by Keith Fenske.  Apache License or GNU GPL.
+
+  The command line, ShowFolderSize1, is in the default (unnamed) package, and
+  its methods have default (package) access, so benchmark classes in a named
+  package can't call them directly.  We look up method handles once, and keep
+  them in static final fields, which the JIT compiler treats as constants.
+  Calls through these are nearly as fast as direct calls, so they don't
+  distort the measurements.  The scanner, options, and data objects are public
+  in the io.github.kwfenske.showfoldersize package, and are called directly.
+
+  The program keeps its options in static variables, which are normally set by
+  main() from the command line.  The reset() method sets the same defaults as
+  main() without parsing any options or calling System.exit().  Searching is
+  done by a scanner object created from those options, so benchmarks call
+  scanSetup() after changing any search options.
+*/
+
+package io.github.kwfenske.bench;
+
+import io.github.kwfenske.showfoldersize.*; // searching, data objects
+import java.io.*;                 // standard I/O
+import java.lang.invoke.*;        // method handles
+import java.lang.reflect.*;       // fields and methods by name
+import java.nio.charset.*;        // character set for output
+import java.util.*;               // lists of -exclude and -include patterns
+
+final class ProgramAccess
+{
+  /* class constants */
+
+  static final Class<?> MAIN_CLASS = findClass("ShowFolderSize1");
+
+  /* method handles */
+
+  static final MethodHandle FORMAT_BYTES = findMethod("formatBytes",
+    MethodType.methodType(void.class, StringBuilder.class, long.class));
+  static final MethodHandle FORMAT_SETUP = findMethod("formatSetup",
+    MethodType.methodType(void.class));
+  static final MethodHandle PRINT_DATA = findMethod("printData",
+    MethodType.methodType(void.class, int.class, String.class,
+    ShowFolderSize1Data.class));
+  static final MethodHandle PRINT_FLUSH = findMethod("printFlush",
+    MethodType.methodType(void.class));
+  static final MethodHandle REPORT_SETUP = findMethod("reportSetup",
+    MethodType.methodType(void.class));
+  static final MethodHandle SCAN_OPTIONS = findMethod("scanOptions",
+    MethodType.methodType(ShowFolderSize1Options.class));
+
+/*
+  findClass() method
+
+  Load one of the program's classes by name.
+*/
+  static Class<?> findClass(String name)
+  {
+    try { return(Class.forName(name)); }
+    catch (ClassNotFoundException cnfe)
+    {
+      throw new IllegalStateException("ShowFolderSize1 jar not on class path: "
+        + name, cnfe);
+    }
+  } // end of findClass() method
+
+
+/*
+  findMethod() method
+
+  Find a static method by name in the main program class, and return a method
+  handle with the given type.
+*/
+  static MethodHandle findMethod(String name, MethodType type)
+  {
+    Method method;                // method found by name
+
+    try
+    {
+      method = MAIN_CLASS.getDeclaredMethod(name, type.parameterArray());
+      method.setAccessible(true); // default (package) access
+      return(MethodHandles.lookup().unreflect(method));
+    }
+    catch (IllegalAccessException | NoSuchMethodException e)
+    {
+      throw new IllegalStateException("can't find method: " + name, e);
+    }
+  } // end of findMethod() method
+
+
+/*
+  get() method
+
+  Get the value of a static variable in the main program class.
+*/
+  static Object get(String name)
+  {
+    Field field;                  // static variable found by name
+
+    try
+    {
+      field = MAIN_CLASS.getDeclaredField(name);
+      field.setAccessible(true);
+      return(field.get(null));
+    }
+    catch (IllegalAccessException | NoSuchFieldException e)
+    {
+      throw new IllegalStateException("can't get variable: " + name, e);
+    }
+  } // end of get() method
+
+
+/*
+  reset() method
+
+  Set the program's options to the same defaults as main(), with output going
+  to the given writer.  Benchmarks change options after this with set().
+*/
+  static void reset(Writer output)
+  {
+    set("allocBlock", 0L);
+    set("allocFlag", false);
+    set("caseFlag", false);
+    set("compactFlag", false);
+    set("csvFlag", false);
+    set("detailFlag", false);
+    set("diffMinimum", 0L);
+    set("diffNewer", null);
+    set("diffOlder", null);
+    set("errorFlag", false);
+    set("estimateLevel", 0);
+    set("estimateSeconds", 0);
+    set("excludeList", new Vector());
+    set("fixFactor", 0.0);
+    set("fixSuffix", null);
+    set("includeList", new Vector());
+    set("indentString", get("DEFAULT_INDENT"));
+    set("indexSaved", null);
+    set("keepDepth", get("DEFAULT_REPORT"));
+    set("keepFlag", false);
+    set("linkFlag", false);
+    set("listSeconds", 0);
+    set("messageLevel", 1);
+    set("mswinFlag", System.getProperty("os.name").startsWith("Windows"));
+    set("nioFlag", true);
+    set("oneFlag", false);
+    set("outputBuffer", new StringBuilder());
+    set("outputChars", new char[256]);
+    set("outputCharset", Charset.defaultCharset());
+    set("outputError", false);
+    set("outputWriter", output);
+    set("parallelCount", 0);
+    set("pipelineCount", 0);
+    set("progress", null);
+    set("progressSeconds", 0);
+    set("reportDepth", get("DEFAULT_REPORT"));
+    set("reportStyle", get("REPORT_TEXT"));
+    set("scanner", null);
+    set("searchDepth", get("DEFAULT_SEARCH"));
+    set("servePort", 0);
+    set("snapLoaded", null);
+    set("sortOrder", get("SORT_NAME"));
+    set("snapSaved", null);
+    set("topCount", 0);
+
+    try
+    {
+      FORMAT_SETUP.invokeExact();
+      REPORT_SETUP.invokeExact();
+    }
+    catch (Throwable t) { throw new IllegalStateException(t); }
+
+  } // end of reset() method
+
+
+/*
+  scanSetup() method
+
+  Create a scanner from the current options, the same way main() does after
+  parsing the command line, and save it for the program's printing methods.
+*/
+  static ShowFolderSize1Scanner scanSetup()
+  {
+    ShowFolderSize1Scanner result; // our result
+
+    try { result = new ShowFolderSize1Scanner((ShowFolderSize1Options)
+      SCAN_OPTIONS.invokeExact()); }
+    catch (Throwable t) { throw new IllegalStateException(t); }
+    set("scanner", result);
+    return(result);
+  } // end of scanSetup() method
+
+
+/*
+  set() method
+
+  Set the value of a static variable in the main program class.  Primitive
+  types are given as their wrapper objects (Boolean, Integer, etc).
+*/
+  static void set(String name, Object value)
+  {
+    Field field;                  // static variable found by name
+
+    try
+    {
+      field = MAIN_CLASS.getDeclaredField(name);
+      field.setAccessible(true);
+      field.set(null, value);
+    }
+    catch (IllegalAccessException | NoSuchFieldException e)
+    {
+      throw new IllegalStateException("can't set variable: " + name, e);
+    }
+  } // end of set() method
+
+} // end of ProgramAccess class
@@ -0,0 +1,64 @@
+/*
+  Benchmark for Searching Folders in Show Folder Size
+  Copyright (c) 2014 by Keith Fenske.  Apache License or GNU GPL.
+
+  Time one complete search of a synthetic folder tree, through searchRoot()
+  and searchFolder() as the command line would.  The operating system caches
+  folder listings and file attributes after the first search, so this mostly
+  measures our own work plus the system calls, not disk speed.
+
+  The "nio" parameter chooses between one attribute read per file (true, the
+  default) and the older java.io.File methods (false).
+*/
+
+package io.github.kwfenske.bench;
+
+import io.github.kwfenske.showfoldersize.*; // searching, data objects
+import java.io.*;                 // standard I/O
+import java.util.concurrent.*;    // time units
+import org.openjdk.jmh.annotations.*; // JMH benchmark annotations
+
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 2)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+public class SearchBenchmark
+{
+  @Param({"deep", "huge", "small", "wide"})
+  public String shape;            // shape of synthetic folder tree
+
+  @Param({"1"})
+  public int scale;               // multiplies number of folders
+
+  @Param({"true", "false"})
+  public boolean nio;             // true if java.nio.file reads attributes
+
+  File folder;                    // top-level folder of the tree
+  ShowFolderSize1Scanner scanner; // searches with options from setup()
+  SyntheticTree tree;             // files created for this trial
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException
+  {
+    tree = new SyntheticTree(shape, scale);
+    folder = tree.root.toFile();
+    ProgramAccess.reset(new DiscardWriter());
+    ProgramAccess.set("nioFlag", nio);
+    scanner = ProgramAccess.scanSetup();
+  }
+
+  @TearDown(Level.Trial)
+  public void teardown() throws IOException
+  {
+    tree.delete();
+  }
+
+  @Benchmark
+  public ShowFolderSize1Data searchFolder()
+  {
+    return(scanner.searchRoot(folder));
+  }
+
+} // end of SearchBenchmark class
@@ -0,0 +1,86 @@
+/*
+  Benchmark for Sorting Subfolder Names in Show Folder Size
+  Copyright (c) 2014 by Keith Fenske.  Apache License or GNU GPL.
+
+  Each folder keeps its subfolders in a HashMap while searching, and sorts an
+  array of them only when the folder is printed, comparing names one character
+  at a time with ShowFolderSize1Order.compareNames().  Time sorting the names
+  of every folder in a synthetic tree, without reading any files.
+
+  The "treeMap" benchmark is the older way: a TreeMap for every folder, with
+  keys made from a lowercase copy of each name plus the name itself, so that
+  two new strings are created for each subfolder.
+
+  The "caseFlag" parameter is the same as the -c0 (false, the default) and -c1
+  options: whether uppercase and lowercase names sort separately.
+*/
+
+package io.github.kwfenske.bench;
+
+import io.github.kwfenske.showfoldersize.*; // name comparison
+import java.io.*;                 // standard I/O
+import java.util.*;               // arrays and TreeMap
+import java.util.concurrent.*;    // time units
+import org.openjdk.jmh.annotations.*; // JMH benchmark annotations
+import org.openjdk.jmh.infra.*;   // black holes
+
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 2)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+public class SortNameBenchmark
+{
+  @Param({"deep", "small", "wide"})
+  public String shape;            // shape of synthetic folder tree
+
+  @Param({"1"})
+  public int scale;               // multiplies number of folders
+
+  @Param({"false", "true"})
+  public boolean caseFlag;        // true if upper/lower case names different
+
+  String[][] folders;             // subfolder names for each folder
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException
+  {
+    SyntheticTree tree;           // only needed for the names
+
+    tree = new SyntheticTree(shape, scale);
+    tree.delete();
+    folders = tree.folderNames.toArray(new String[0][]);
+  }
+
+  @Benchmark
+  public void compareNames(Blackhole hole)
+  {
+    for (String[] names : folders)
+    {
+      String[] sorted = names.clone(); // in the order they were listed
+      Arrays.sort(sorted, new Comparator<String>()
+      {
+        public int compare(String one, String two)
+        {
+          return(ShowFolderSize1Order.compareNames(one, two, caseFlag));
+        }
+      });
+      hole.consume(sorted);
+    }
+  }
+
+  @Benchmark
+  public void treeMap(Blackhole hole)
+  {
+    for (String[] names : folders)
+    {
+      TreeMap<String, String> sublist = new TreeMap<String, String>();
+      for (String name : names)
+        sublist.put((caseFlag ? "" : (name.toLowerCase() + " ")) + name,
+          name);
+      hole.consume(sublist);
+    }
+  }
+
+} // end of SortNameBenchmark class
@@ -0,0 +1,105 @@
+/*
+  Benchmark for Starting Show Folder Size as a New Process
+  Copyright (c) 2014 by Keith Fenske.  Apache License or GNU GPL.
+
+  Time one complete run of the program, as a shell script or cron job would
+  start it, on a tiny folder tree where starting the JVM and loading classes
+  take longer than the search itself.  Each measurement is one new process, so
+  this uses single-shot time with many iterations instead of average time.
+
+  The "launcher" parameter chooses how the program is started:
+
+      jvm    = java -jar target/ShowFolderSize1.jar
+      cds    = same, with the class archive from "mvn -Pcds package"
+      quick  = same as cds, with only the fast JIT compiler (C1)
+      native = target/ShowFolderSize1 from "mvn -Pnative package" (GraalVM)
+
+  Paths are relative to the main folder, where the benchmarks are run from.
+  Launchers that haven't been built fail in setup, and JMH goes on to the next
+  one.  Results from one machine are in benchmarks/startup.txt.
+*/
+
+package io.github.kwfenske.bench;
+
+import java.io.*;                 // standard I/O
+import java.util.*;               // lists of command-line arguments
+import java.util.concurrent.*;    // time units
+import org.openjdk.jmh.annotations.*; // JMH benchmark annotations
+
+@BenchmarkMode(Mode.SingleShotTime)
+@Fork(1)
+@Measurement(iterations = 30)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 5)
+public class StartupBenchmark
+{
+  static final String ARCHIVE_FILE = "target/ShowFolderSize1.jsa";
+  static final String JAR_FILE = "target/ShowFolderSize1.jar";
+  static final String NATIVE_FILE = "target/ShowFolderSize1";
+
+  @Param({"jvm", "cds", "quick", "native"})
+  public String launcher;         // how the program is started
+
+  List<String> command;           // program and arguments for each run
+  File output;                    // program's report, thrown away
+  SyntheticTree tree;             // files created for this trial
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException
+  {
+    command = new ArrayList<String>();
+    if (launcher.equals("native"))
+      command.add(findFile(NATIVE_FILE, "-Pnative"));
+    else
+    {
+      command.add(System.getProperty("java.home") + File.separator + "bin"
+        + File.separator + "java");
+      if (launcher.equals("cds") || launcher.equals("quick"))
+        command.add("-XX:SharedArchiveFile=" + findFile(ARCHIVE_FILE,
+          "-Pcds"));
+      if (launcher.equals("quick")) // short runs don't need C2 compiler
+        command.add("-XX:TieredStopAtLevel=1");
+      command.add("-jar");
+      command.add(findFile(JAR_FILE, ""));
+    }
+    tree = new SyntheticTree("tiny", 1);
+    command.add(tree.root.toString());
+    output = File.createTempFile("sfs-bench-", ".txt");
+  }
+
+  @TearDown(Level.Trial)
+  public void teardown() throws IOException
+  {
+    tree.delete();
+    output.delete();
+  }
+
+  @Benchmark
+  public int startProgram() throws IOException, InterruptedException
+  {
+    Process process;              // one run of the program
+
+    process = new ProcessBuilder(command).redirectErrorStream(true)
+      .redirectOutput(output).start();
+    return(process.waitFor());
+  }
+
+/*
+  findFile() method
+
+  Return the absolute path for a file built by Maven, or throw an exception
+  that says how to build it.
+*/
+  static String findFile(String name, String profile)
+  {
+    File file;                    // file relative to current folder
+
+    file = new File(name);
+    if (file.isFile() == false)
+      throw new IllegalStateException("not found: " + name + " (run \"mvn "
+        + profile + (profile.length() > 0 ? " " : "") + "package\" first)");
+    return(file.getAbsolutePath());
+  } // end of findFile() method
+
+} // end of StartupBenchmark class
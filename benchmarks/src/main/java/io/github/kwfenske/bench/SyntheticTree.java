@@ -0,0 +1,199 @@
+/*
+  Synthetic Folder Trees for Show Folder Size Benchmarks
+  Copyright (c) 2014 by Keith Fenske.  Apache License or GNU GPL.
+
+  Create a folder tree with a known shape in a temporary folder, so that
+  benchmarks search the same files on every run.  File sizes are set with
+  RandomAccessFile.setLength(), which makes sparse files on most systems, so
+  even the "huge" shape takes almost no disk space and is quick to create.
+
+  The shapes are:
+
+      deep  = long chains of nested subfolders, two files in each
+      huge  = few folders with a few very large files
+      small = few folders with many small files
+      tiny  = three folders with ten small files each, for startup time
+      wide  = one level of many subfolders, a few files in each
+
+  The scale multiplies the number of folders (or chains), and a fixed random
+  seed chooses the same names and sizes every time.
+*/
+
+package io.github.kwfenske.bench;
+
+import java.io.*;                 // standard I/O
+import java.nio.file.*;           // temporary folders, tree walking
+import java.nio.file.attribute.*; // file attributes for tree walking
+import java.util.*;               // lists and random numbers
+
+final class SyntheticTree
+{
+  /* class constants */
+
+  static final int DEEP_LEVELS = 90; // less than default search depth of 99
+  static final long RANDOM_SEED = 20140228L; // same tree on every run
+
+  /* instance variables */
+
+  List<String[]> folderNames;     // names of subfolders in each folder
+  Random random;                  // sizes and names from a fixed seed
+  Path root;                      // top-level folder of the tree
+  List<Long> sizes;               // every file size that we created
+
+/*
+  constructor
+
+  Create a tree of the given shape and scale in a new temporary folder.
+*/
+  SyntheticTree(String shape, int scale) throws IOException
+  {
+    Path chain;                   // current folder in one chain
+    String[] chains;              // names of top-level chains for "deep"
+    int i, level;                 // index variables
+
+    folderNames = new ArrayList<String[]>();
+    random = new Random(RANDOM_SEED);
+    root = Files.createTempDirectory("sfs-bench-");
+    sizes = new ArrayList<Long>();
+
+    if (shape.equals("deep"))
+    {
+      chains = new String[20 * scale];
+      for (i = 0; i < chains.length; i ++)
+        chains[i] = "chain" + i;
+      folderNames.add(chains);
+      for (i = 0; i < chains.length; i ++)
+      {
+        chain = root.resolve(chains[i]);
+        for (level = 0; level < DEEP_LEVELS; level ++)
+        {
+          Files.createDirectory(chain);
+          makeFiles(chain, 2, 1024, 65536);
+          folderNames.add(new String[] { "d" + level });
+          chain = chain.resolve("d" + level);
+        }
+      }
+    }
+    else if (shape.equals("huge"))
+      makeFolders(root, 5 * scale, 2, 1L << 30, 8L << 30);
+    else if (shape.equals("small"))
+      makeFolders(root, 20 * scale, 500, 0, 4096);
+    else if (shape.equals("tiny"))
+      makeFolders(root, 3 * scale, 10, 0, 4096);
+    else if (shape.equals("wide"))
+      makeFolders(root, 1000 * scale, 4, 1024, 65536);
+    else
+      throw new IllegalArgumentException("unknown tree shape: " + shape);
+
+  } // end of constructor
+
+
+/*
+  delete() method
+
+  Delete the tree and its temporary folder.  This is called after each trial,
+  so that benchmarks don't fill the temporary folder.
+*/
+  void delete() throws IOException
+  {
+    Files.walkFileTree(root, new SimpleFileVisitor<Path>()
+    {
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
+        throws IOException
+      {
+        Files.delete(file);
+        return(FileVisitResult.CONTINUE);
+      }
+
+      public FileVisitResult postVisitDirectory(Path dir, IOException ioe)
+        throws IOException
+      {
+        Files.delete(dir);
+        return(FileVisitResult.CONTINUE);
+      }
+    });
+  } // end of delete() method
+
+
+/*
+  makeFiles() method
+
+  Create some files in a folder, with random sizes in the given range.
+*/
+  void makeFiles(
+    Path folder,                  // folder for new files
+    int count,                    // number of files
+    long minSize,                 // smallest file size in bytes
+    long maxSize)                 // largest file size in bytes
+    throws IOException
+  {
+    RandomAccessFile file;        // one new file
+    int i;                        // index variable
+    long size;                    // size of one file
+
+    for (i = 0; i < count; i ++)
+    {
+      size = minSize + (long) (random.nextDouble() * (maxSize - minSize));
+      file = new RandomAccessFile(folder.resolve("file" + i
+        + ".dat").toFile(), "rw");
+      try { file.setLength(size); }
+      finally { file.close(); }
+      sizes.add(size);
+    }
+  } // end of makeFiles() method
+
+
+/*
+  makeFolders() method
+
+  Create one level of subfolders with files in each.  Names have random
+  uppercase and lowercase letters, so that sorting has some work to do.
+*/
+  void makeFolders(
+    Path parent,                  // folder for new subfolders
+    int count,                    // number of subfolders
+    int files,                    // number of files in each subfolder
+    long minSize,                 // smallest file size in bytes
+    long maxSize)                 // largest file size in bytes
+    throws IOException
+  {
+    int i;                        // index variable
+    String[] names;               // names of new subfolders
+    Path next;                    // one new subfolder
+
+    names = new String[count];
+    for (i = 0; i < count; i ++)
+    {
+      names[i] = randomName() + i; // unique even if random parts match
+      next = parent.resolve(names[i]);
+      Files.createDirectory(next);
+      makeFiles(next, files, minSize, maxSize);
+      folderNames.add(new String[0]); // no subfolders below this level
+    }
+    folderNames.add(0, names);    // subfolders of top-level folder go first
+  } // end of makeFolders() method
+
+
+/*
+  randomName() method
+
+  Return a short folder name with random letters.
+*/
+  String randomName()
+  {
+    StringBuilder buffer;         // faster than String for multiple appends
+    char ch;                      // one random letter
+    int i;                        // index variable
+    int length;                   // number of letters in name
+
+    buffer = new StringBuilder();
+    length = 4 + random.nextInt(12);
+    for (i = 0; i < length; i ++)
+    {
+      ch = (char) ('a' + random.nextInt(26));
+      buffer.append(random.nextBoolean() ? Character.toUpperCase(ch) : ch);
+    }
+    return(buffer.toString());
+  } // end of randomName() method
+
+} // end of SyntheticTree class
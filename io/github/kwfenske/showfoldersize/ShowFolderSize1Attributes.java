@@ -0,0 +1,57 @@
+/*
+  ShowFolderSize1Attributes class
+  Copyright (c) 2014 by Keith Fenske.  Apache License or GNU GPL.
+
+  File attributes from the "unix" view, read with one system call (stat) as a
+  map, and presented as BasicFileAttributes so that the normal search code can
+  use them.  The extra attributes are the device, inode, and number of hard
+  links for the -h1 option.
+*/
+
+package io.github.kwfenske.showfoldersize;
+
+import java.io.*;                 // standard I/O
+import java.nio.file.*;           // directory streams, paths
+import java.nio.file.attribute.*; // basic file attributes
+import java.util.*;               // lists, maps, vectors
+
+class ShowFolderSize1Attributes implements BasicFileAttributes
+{
+  /* class constants */
+
+  static final String NAMES = "unix:dev,fileKey,ino,isDirectory,"
+    + "isRegularFile,lastModifiedTime,nlink,size"; // everything we need
+
+  /* class variables */
+
+  Map map;                        // attribute values by name
+
+  /* constructor */
+
+  public ShowFolderSize1Attributes(Path path) throws IOException
+  {
+    this.map = Files.readAttributes(path, NAMES);
+  }
+
+  /* device(), inode(), and links() methods: extra "unix" attributes */
+
+  long device() { return(((Long) map.get("dev")).longValue()); }
+  long inode() { return(((Long) map.get("ino")).longValue()); }
+  int links() { return(((Integer) map.get("nlink")).intValue()); }
+
+  /* BasicFileAttributes methods: only what the search uses is in the map */
+
+  public FileTime creationTime() { return(lastModifiedTime()); }
+  public Object fileKey() { return(map.get("fileKey")); }
+  public boolean isDirectory()
+    { return(Boolean.TRUE.equals(map.get("isDirectory"))); }
+  public boolean isOther() { return(false); }
+  public boolean isRegularFile()
+    { return(Boolean.TRUE.equals(map.get("isRegularFile"))); }
+  public boolean isSymbolicLink() { return(false); } // links are followed
+  public FileTime lastAccessTime() { return(lastModifiedTime()); }
+  public FileTime lastModifiedTime()
+    { return((FileTime) map.get("lastModifiedTime")); }
+  public long size() { return(((Long) map.get("size")).longValue()); }
+
+} // end of ShowFolderSize1Attributes class
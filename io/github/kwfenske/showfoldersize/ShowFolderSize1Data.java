@@ -0,0 +1,73 @@
+/*
+  ShowFolderSize1Data class
+  Copyright (c) 2014 by Keith Fenske.  Apache License or GNU GPL.
+
+  A data structure to hold information about one folder.  Public fields are
+  the results of a search, for reading by the caller.  The others are only
+  used while searching.
+*/
+
+package io.github.kwfenske.showfoldersize;
+
+import java.util.*;               // lists, maps, vectors
+
+public class ShowFolderSize1Data
+{
+  /* class variables */
+
+  ShowFolderSize1Data cached;     // snapshot data while searching, or null
+  long device;                    // device number for -o1, or zero
+  public Vector errlist;          // unreadable paths here and below, or null
+  Object filekey;                 // file key while searching, or null
+  public long modified;           // folder's modification time, or zero
+  public String name;             // folder name (no path), or null
+  public long numalloc;           // allocated bytes in this folder only (-d1)
+  public long numbyte;            // number of bytes in this folder only
+  public ShowFolderSize1Detail numdetail; // file sizes and types, or null
+  public long numerror;           // unreadable entries in this folder only
+  public long numfile;            // number of files in this folder only
+  public long numfold;            // number of subfolders in this folder only
+  public ShowFolderSize1Data parent; // data object for parent folder, or null
+  public String path;             // full path for top-level folders, or null
+  ShowFolderSize1Search search;   // search that found this folder, or null
+  public long suballoc;           // allocated bytes in all subfolders (-d1)
+  public long subbyte;            // number of bytes in all subfolders
+  public ShowFolderSize1Detail subdetail; // file sizes and types in subfolders
+  public long suberror;           // unreadable entries in all subfolders
+  public long subfile;            // number of files in all subfolders
+  public long subfold;            // number of subfolders in all subfolders
+  public HashMap sublist;         // subfolders by name (not sorted), or null
+  int treenode;                   // node index in compact arrays, or -1
+  int waiting;                    // subfolders not finished in pipeline (-q)
+
+  /* constructor (no arguments) */
+
+  public ShowFolderSize1Data()
+  {
+    this.cached = null;           // no snapshot data
+    this.device = 0;              // no device number
+    this.errlist = null;          // no unreadable paths
+    this.filekey = null;          // no file key
+    this.modified = 0;            // no modification time
+    this.name = null;             // no folder name
+    this.numalloc = 0;            // no allocated bytes yet
+    this.numbyte = 0;             // no bytes in files yet
+    this.numdetail = null;        // no file sizes or types yet
+    this.numerror = 0;            // no errors yet
+    this.numfile = 0;             // no files found yet
+    this.numfold = 0;             // no subfolders found yet
+    this.parent = null;           // no parent folder
+    this.path = null;             // no full path
+    this.search = null;           // not found by a search
+    this.suballoc = 0;            // no allocated bytes in subfolders yet
+    this.subbyte = 0;             // no bytes in subfolders yet
+    this.subdetail = null;        // no file sizes or types in subfolders
+    this.suberror = 0;            // no errors in subfolders yet
+    this.subfile = 0;             // no files in subfolders yet
+    this.subfold = 0;             // no subfolders in subfolders yet
+    this.sublist = null;          // no subfolder list
+    this.treenode = -1;           // not in compact arrays
+    this.waiting = 0;             // no subfolders in pipeline
+  }
+
+} // end of ShowFolderSize1Data class
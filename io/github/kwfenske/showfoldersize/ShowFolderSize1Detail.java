@@ -0,0 +1,241 @@
+/*
+  ShowFolderSize1Detail class
+  Copyright (c) 2014 by Keith Fenske.  Apache License or GNU GPL.
+
+  A histogram of file sizes and the bytes for each file type in one folder, or
+  in all of its subfolders, for the -x1 option.  Sizes are counted in fixed
+  buckets by powers of two: bucket zero is empty files, and bucket n has files
+  of at least 2^(n-1) bytes and less than 2^n bytes.  File types are the
+  lowercase extension after the last dot, or an empty string for none, in a
+  small open hash table of parallel arrays, since most folders have only a
+  few types.  Objects for subfolders are added into their parent folder the
+  same way as the other totals.
+*/
+
+package io.github.kwfenske.showfoldersize;
+
+import java.util.*;               // lists, maps, vectors
+
+public class ShowFolderSize1Detail
+{
+  /* constants */
+
+  static final int INITIAL_TYPES = 8; // starting size of type hash table
+  public static final int SIZE_BUCKETS = 64; // empty files plus one per bit
+  static final String[] SIZE_UNITS = {"B", "KB", "MB", "GB", "TB", "PB",
+    "EB"};                        // units for powers of 1024
+
+  /* class variables */
+
+  public long[] sizeCounts;       // number of files in each size bucket
+  public long[] typeBytes;        // number of bytes for each type
+  int typeCount;                  // number of types in use
+  public long[] typeFiles;        // number of files for each type
+  public String[] typeNames;      // extension for each slot, or null if empty
+
+  /* constructor (no arguments) */
+
+  public ShowFolderSize1Detail()
+  {
+    this.sizeCounts = new long[SIZE_BUCKETS];
+    this.typeBytes = new long[INITIAL_TYPES];
+    this.typeCount = 0;           // no types yet
+    this.typeFiles = new long[INITIAL_TYPES];
+    this.typeNames = new String[INITIAL_TYPES]; // all null means empty
+  }
+
+  /* addAll() method: add counts from another object, ignoring null */
+
+  void addAll(ShowFolderSize1Detail other)
+  {
+    int i;                        // index variable
+
+    if (other == null)            // nothing to add
+      return;
+    for (i = 0; i < SIZE_BUCKETS; i ++)
+      sizeCounts[i] += other.sizeCounts[i];
+    for (i = 0; i < other.typeNames.length; i ++)
+      if (other.typeNames[i] != null) // skip empty slots
+        addType(other.typeNames[i], other.typeFiles[i], other.typeBytes[i]);
+  }
+
+  /* addFile() method: add one file with its name (no path) and size */
+
+  void addFile(String name, long size)
+  {
+    int dot;                      // index of last dot in name, or -1
+
+    sizeCounts[64 - Long.numberOfLeadingZeros(Math.max(0, size))] ++;
+    dot = name.lastIndexOf('.');  // names like ".profile" have no type
+    addType((((dot <= 0) || (dot == (name.length() - 1))) ? "" : name
+      .substring(dot + 1).toLowerCase()), 1, size);
+  }
+
+  /* addType() method: add files and bytes for one type */
+
+  void addType(String type, long files, long bytes)
+  {
+    int slot;                     // position in hash table
+
+    slot = findSlot(typeNames, type);
+    if (typeNames[slot] == null)  // a new type for this folder
+    {
+      typeNames[slot] = type.intern(); // one copy shared by all folders
+      typeCount ++;
+      if ((typeCount * 2) > typeNames.length) // keep table half empty
+      {
+        grow();
+        slot = findSlot(typeNames, type);
+      }
+    }
+    typeBytes[slot] += bytes;
+    typeFiles[slot] += files;
+  }
+
+  /* combine() method: return a new object with the counts from a folder and
+  its subfolders, or null if there are no files in either */
+
+  public static ShowFolderSize1Detail combine(
+    ShowFolderSize1Detail folder, // sizes and types in folder, or null
+    ShowFolderSize1Detail subfolders) // sizes and types in subfolders
+  {
+    ShowFolderSize1Detail result; // new object with both
+
+    if ((folder == null) && (subfolders == null))
+      return(null);
+    result = new ShowFolderSize1Detail();
+    result.addAll(folder);        // null is ignored
+    result.addAll(subfolders);
+    return(result);
+  }
+
+  /* findSlot() method: return the slot for a type, or the empty slot where it
+  should be added */
+
+  static int findSlot(String[] names, String type)
+  {
+    int slot;                     // position in hash table
+
+    slot = type.hashCode() & (names.length - 1);
+    while ((names[slot] != null) && (names[slot].equals(type) == false))
+      slot = (slot + 1) & (names.length - 1); // linear probing
+    return(slot);
+  }
+
+  /* grow() method: double the size of the type hash table */
+
+  void grow()
+  {
+    int i;                        // index variable
+    long[] oldBytes, oldFiles;    // previous counts
+    String[] oldNames;            // previous names
+    int slot;                     // position in new hash table
+
+    oldBytes = typeBytes;
+    oldFiles = typeFiles;
+    oldNames = typeNames;
+    typeBytes = new long[oldNames.length * 2];
+    typeFiles = new long[oldNames.length * 2];
+    typeNames = new String[oldNames.length * 2];
+    for (i = 0; i < oldNames.length; i ++)
+      if (oldNames[i] != null)    // move each type to its new slot
+      {
+        slot = findSlot(typeNames, oldNames[i]);
+        typeBytes[slot] = oldBytes[i];
+        typeFiles[slot] = oldFiles[i];
+        typeNames[slot] = oldNames[i];
+      }
+  }
+
+  /* sizeLabel() method: append the range of sizes for one bucket, such as
+  "0 B" or "4-8 KB" or "512 B-1 KB" */
+
+  public static void sizeLabel(StringBuilder buffer, int bucket)
+  {
+    int high, low;                // units for each end of the range
+
+    if (bucket == 0)              // empty files
+    {
+      buffer.append("0 B");
+      return;
+    }
+    low = (bucket - 1) / 10;      // 1024 is ten powers of two
+    high = bucket / 10;
+    buffer.append(1L << ((bucket - 1) % 10));
+    if (low != high)              // does range cross into the next unit?
+      buffer.append(' ').append(SIZE_UNITS[low]);
+    buffer.append('-').append(1L << (bucket % 10)).append(' ')
+      .append(SIZE_UNITS[high]);
+  }
+
+  /* sizeText() method: non-zero size buckets for CSV output, as the smallest
+  size in each bucket (bytes) and the number of files, like "0:2 4096:7" */
+
+  public String sizeText()
+  {
+    StringBuilder buffer;         // faster than String for multiple appends
+    int i;                        // index variable
+
+    buffer = new StringBuilder();
+    for (i = 0; i < SIZE_BUCKETS; i ++)
+      if (sizeCounts[i] > 0)      // skip sizes without any files
+      {
+        if (buffer.length() > 0) buffer.append(' ');
+        buffer.append((i == 0) ? 0 : (1L << (i - 1))).append(':')
+          .append(sizeCounts[i]);
+      }
+    return(buffer.toString());
+  }
+
+  /* sortedTypes() method: return slot indexes of all types, most bytes first,
+  then by name */
+
+  public int[] sortedTypes()
+  {
+    int i, j;                     // index variables
+    Integer[] order;              // slot indexes to be sorted
+    int[] result;                 // sorted slot indexes
+
+    order = new Integer[typeCount];
+    for (i = j = 0; i < typeNames.length; i ++)
+      if (typeNames[i] != null)   // skip empty slots
+        order[j ++] = Integer.valueOf(i);
+    Arrays.sort(order, new Comparator()
+    {
+      public int compare(Object one, Object two)
+      {
+        int a = ((Integer) one).intValue();
+        int b = ((Integer) two).intValue();
+        if (typeBytes[a] != typeBytes[b])
+          return((typeBytes[a] > typeBytes[b]) ? -1 : 1);
+        return(typeNames[a].compareTo(typeNames[b]));
+      }
+    });
+    result = new int[typeCount];
+    for (i = 0; i < typeCount; i ++)
+      result[i] = order[i].intValue();
+    return(result);
+  }
+
+  /* typeText() method: all types for CSV output, most bytes first, as the
+  type, bytes, and files, like "jpg:123456:7 txt:8910:11 :12:1" */
+
+  public String typeText()
+  {
+    StringBuilder buffer;         // faster than String for multiple appends
+    int i;                        // index variable
+    int[] sorted;                 // slot indexes, most bytes first
+
+    buffer = new StringBuilder();
+    sorted = sortedTypes();
+    for (i = 0; i < sorted.length; i ++)
+    {
+      if (i > 0) buffer.append(' ');
+      buffer.append(typeNames[sorted[i]]).append(':')
+        .append(typeBytes[sorted[i]]).append(':')
+        .append(typeFiles[sorted[i]]);
+    }
+    return(buffer.toString());
+  }
+
+} // end of ShowFolderSize1Detail class
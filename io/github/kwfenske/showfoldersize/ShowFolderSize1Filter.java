@@ -0,0 +1,210 @@
+/*
+  ShowFolderSize1Filter class
+  Copyright (c) 2014 by Keith Fenske.  Apache License or GNU GPL.
+
+  Patterns for the -exclude and -include options, compiled once and then
+  checked for every folder or file.  Names without wildcards go into a hash
+  set.  All other patterns that match names are joined into one regular
+  expression, and the same for patterns that match full paths (those with a
+  slash), so each name costs at most one hash lookup and two matches.  Glob
+  patterns are converted to regular expressions here, with the same rules as
+  java.nio.file.PathMatcher: * and ? don't cross a slash, ** does, [abc] and
+  [!abc] are character classes, and {one,two} is a choice.
+*/
+
+package io.github.kwfenske.showfoldersize;
+
+import java.io.*;                 // standard I/O
+import java.util.*;               // lists, maps, vectors
+import java.util.regex.*;         // patterns for -exclude and -include
+
+class ShowFolderSize1Filter
+{
+  /* class constants */
+
+  static final boolean MSWIN_FLAG = System.getProperty("os.name").startsWith(
+    "Windows");                   // ignore case in names on Windows
+
+  /* class variables */
+
+  HashSet exactNames;             // names without wildcards
+  Pattern namePattern;            // all other name patterns, or null
+  StringBuilder nameRegex;        // name patterns before compile()
+  Pattern pathPattern;            // all full path patterns, or null
+  StringBuilder pathRegex;        // path patterns before compile()
+
+  /* constructor (no arguments) */
+
+  public ShowFolderSize1Filter()
+  {
+    this.exactNames = new HashSet();
+    this.namePattern = this.pathPattern = null;
+    this.nameRegex = new StringBuilder();
+    this.pathRegex = new StringBuilder();
+  }
+
+  /* add() method: add one pattern, "glob" unless it starts with "regex:".
+  Patterns with a slash match the end of the full path, so "Zed/deep" matches
+  any folder named deep in a folder named Zed.  Throws IllegalArgumentException
+  if the pattern is not valid. */
+
+  void add(String pattern)
+  {
+    boolean pathFlag;             // true if pattern matches full path
+    String regex;                 // pattern as a regular expression
+
+    pathFlag = pattern.indexOf('/') >= 0; // patterns always use slashes
+    if (pattern.startsWith("regex:")) // Java regular expression
+      regex = pattern.substring(6);
+    else if (pattern.startsWith("glob:")) // same as no prefix
+      regex = globToRegex(pattern.substring(5), pathFlag);
+    else if ((pattern.length() > 0) && (pathFlag == false)
+      && (pattern.matches(".*[*?\\[\\]{}\\\\].*") == false))
+    {
+      exactNames.add(MSWIN_FLAG ? pattern.toLowerCase()
+        : pattern);               // no wildcards, faster in hash set
+      return;
+    }
+    else                          // glob pattern with wildcards
+      regex = globToRegex(pattern, pathFlag);
+    Pattern.compile(regex);       // check each pattern by itself first
+    if (pathFlag)                 // matches full path, not only name
+    {
+      pathRegex.append((pathRegex.length() > 0) ? "|" : "").append("(?:")
+        .append(regex).append(')');
+    }
+    else
+      nameRegex.append((nameRegex.length() > 0) ? "|" : "").append("(?:")
+        .append(regex).append(')');
+  }
+
+  /* compile() method: join all patterns into one regular expression each */
+
+  void compile()
+  {
+    int flags;                    // ignore case on Windows
+
+    flags = MSWIN_FLAG ? (Pattern.CASE_INSENSITIVE
+      | Pattern.UNICODE_CASE) : 0;
+    if (nameRegex.length() > 0)
+      namePattern = Pattern.compile(nameRegex.toString(), flags);
+    if (pathRegex.length() > 0)
+      pathPattern = Pattern.compile(pathRegex.toString(), flags);
+  }
+
+  /* create() method: return a compiled filter with all of the patterns, or
+  null if there are none.  Throws IllegalArgumentException for a pattern
+  that is not valid. */
+
+  static ShowFolderSize1Filter create(String[] patterns)
+  {
+    int i;                        // index variable
+    ShowFolderSize1Filter result; // our result
+
+    if (patterns.length == 0)     // no patterns, nothing to check
+      return(null);
+    result = new ShowFolderSize1Filter();
+    for (i = 0; i < patterns.length; i ++)
+      result.add(patterns[i]);
+    result.compile();             // compile patterns once for all names
+    return(result);
+  }
+
+  /* globToRegex() method: convert a glob pattern to a regular expression */
+
+  static String globToRegex(
+    String glob,                  // glob pattern without "glob:" prefix
+    boolean pathFlag)             // true if matching end of full path
+  {
+    StringBuilder buffer;         // regular expression being built
+    char ch;                      // one character from glob pattern
+    int i;                        // index variable
+    boolean inBrace;              // true inside {one,two}
+    boolean inClass;              // true inside [abc]
+
+    buffer = new StringBuilder();
+    if (pathFlag && (glob.startsWith("/") == false)) // not from the top?
+      buffer.append("(?:.*/)?");  // any folders before the pattern
+    inBrace = inClass = false;
+    for (i = 0; i < glob.length(); i ++)
+    {
+      ch = glob.charAt(i);
+      if (inClass)                // inside a character class
+      {
+        if (ch == ']') inClass = false;
+        if ((ch == '\\') || (ch == '[') || ((ch == '^') && (glob.charAt(i - 1)
+          != '['))) buffer.append('\\'); // literal in a regex class
+        buffer.append(ch);
+      }
+      else if (ch == '*')         // any characters, maybe across slashes
+      {
+        if (((i + 1) < glob.length()) && (glob.charAt(i + 1) == '*'))
+        {
+          buffer.append(".*");    // ** crosses folder boundaries
+          i ++;
+        }
+        else
+          buffer.append("[^/]*"); // * stays in one name
+      }
+      else if (ch == '?')         // any one character except a slash
+        buffer.append("[^/]");
+      else if (ch == '[')         // start of a character class
+      {
+        inClass = true;
+        buffer.append('[');
+        if (((i + 1) < glob.length()) && (glob.charAt(i + 1) == '!'))
+        {
+          buffer.append('^');     // [!abc] means not a, b, or c
+          i ++;
+        }
+      }
+      else if ((ch == '{') && (inBrace == false)) // start of choices
+      {
+        inBrace = true;
+        buffer.append("(?:");
+      }
+      else if ((ch == '}') && inBrace) // end of choices
+      {
+        inBrace = false;
+        buffer.append(')');
+      }
+      else if ((ch == ',') && inBrace) // next choice
+        buffer.append('|');
+      else if ((ch == '\\') && ((i + 1) < glob.length())) // escaped literal
+        buffer.append(Pattern.quote(String.valueOf(glob.charAt(++ i))));
+      else if ("\\.^$+|(){}".indexOf(ch) >= 0) // regex special character
+        buffer.append('\\').append(ch);
+      else                        // normal character
+        buffer.append(ch);
+    }
+    if (inClass || inBrace)       // Pattern.compile() won't catch a brace
+      throw new IllegalArgumentException("missing ] or }");
+    return(buffer.toString());
+  }
+
+  /* matches() method: return true if a name or path matches any pattern */
+
+  boolean matches(
+    String name,                  // folder or file name without path
+    Object path)                  // full path as File or Path object
+  {
+    String full;                  // full path with slashes
+
+    if ((exactNames.size() > 0) && exactNames.contains(MSWIN_FLAG
+      ? name.toLowerCase() : name))
+    {
+      return(true);
+    }
+    if ((namePattern != null) && namePattern.matcher(name).matches())
+      return(true);
+    if (pathPattern != null)      // only when there are path patterns
+    {
+      full = path.toString();
+      if (File.separatorChar != '/') // patterns always use slashes
+        full = full.replace(File.separatorChar, '/');
+      return(pathPattern.matcher(full).matches());
+    }
+    return(false);
+  }
+
+} // end of ShowFolderSize1Filter class
@@ -0,0 +1,166 @@
+/*
+  ShowFolderSize1Links class
+  Copyright (c) 2014 by Keith Fenske.  Apache License or GNU GPL.
+
+  A set of (device, inode) pairs for files with more than one hard link, so
+  that the -h1 option counts each file only once.  Backup trees made with hard
+  links can have hundreds of millions of these, so the set is open addressing
+  in arrays of primitive longs, without any objects per entry.  Each key is a
+  small device number (our own index, starting at one) in the upper 16 bits
+  and the inode in the lower 48 bits, so zero is never a key and marks an empty
+  slot.  Inodes that don't fit (rare) go into a normal HashSet instead.
+
+  The set is divided into segments by the upper bits of a hashed key, each
+  with its own lock, so that parallel searching threads rarely wait for each
+  other, and growing one segment doesn't stop the others.
+*/
+
+package io.github.kwfenske.showfoldersize;
+
+import java.util.*;               // lists, maps, vectors
+
+class ShowFolderSize1Links
+{
+  /* class constants */
+
+  static final long INODE_MASK = (1L << 48) - 1; // inode part of a key
+  static final int INITIAL_SLOTS = 1024; // starting size of each segment
+  static final int MAX_DEVICES = 65535; // device numbers that fit in a key
+  static final int SEGMENT_BITS = 8; // 256 segments
+
+  /* class variables */
+
+  int[] counts;                   // number of keys in each segment
+  volatile long[] devices;        // device numbers; key uses index plus one
+  HashSet large;                  // "device:inode" strings that don't fit
+  Object[] locks;                 // one lock for each segment
+  long[][] tables;                // keys in each segment, zero for empty
+
+  /* constructor */
+
+  public ShowFolderSize1Links()
+  {
+    int i;                        // index variable
+
+    this.counts = new int[1 << SEGMENT_BITS];
+    this.devices = new long[0];   // no devices yet
+    this.large = new HashSet();
+    this.locks = new Object[1 << SEGMENT_BITS];
+    this.tables = new long[1 << SEGMENT_BITS][];
+    for (i = 0; i < this.locks.length; i ++)
+    {
+      this.locks[i] = new Object();
+      this.tables[i] = new long[INITIAL_SLOTS];
+    }
+  }
+
+  /* add() method: return true if this device and inode are new, false if we
+  have seen them before */
+
+  boolean add(long device, long inode)
+  {
+    long hash;                    // key after mixing bits
+    long key;                     // device index and inode
+    int segment;                  // which segment has this key
+
+    key = deviceIndex(device);    // zero if too many devices
+    if ((key == 0) || (inode < 0) || (inode > INODE_MASK))
+    {
+      synchronized (large) { return(large.add(device + ":" + inode)); }
+    }
+    key = (key << 48) | inode;
+
+    hash = key * 0x9E3779B97F4A7C15L; // Fibonacci hashing: spread all bits
+    hash ^= hash >>> 29;
+    segment = (int) (hash >>> (64 - SEGMENT_BITS));
+    synchronized (locks[segment])
+    {
+      return(addKey(segment, key, (int) hash));
+    }
+  }
+
+  /* addKey() method: add a key to one segment, growing it if more than three
+  quarters full.  Caller must hold the lock for the segment. */
+
+  boolean addKey(int segment, long key, int hash)
+  {
+    int mask;                     // table size minus one
+    int slot;                     // index into table
+    long[] table;                 // keys for this segment
+
+    table = tables[segment];
+    mask = table.length - 1;
+    slot = hash & mask;
+    while (table[slot] != 0)      // linear probing until an empty slot
+    {
+      if (table[slot] == key)
+        return(false);            // already counted
+      slot = (slot + 1) & mask;
+    }
+    table[slot] = key;
+    counts[segment] ++;
+    if ((counts[segment] * 4L) > (table.length * 3L)) // too full?
+      grow(segment);
+    return(true);
+  }
+
+  /* deviceIndex() method: return our own small number for a device, or zero
+  if there are too many devices */
+
+  long deviceIndex(long device)
+  {
+    long[] known;                 // devices as of now, never changed in place
+    int i;                        // index variable
+
+    known = devices;              // one volatile read
+    for (i = 0; i < known.length; i ++) // usually one or two devices
+      if (known[i] == device)
+        return(i + 1);
+    synchronized (this)           // add a new device, if not already done
+    {
+      known = devices;
+      for (i = 0; i < known.length; i ++)
+        if (known[i] == device)
+          return(i + 1);
+      if (known.length >= MAX_DEVICES)
+        return(0);
+      known = Arrays.copyOf(known, (known.length + 1));
+      known[i] = device;
+      devices = known;            // publish the new array
+      return(i + 1);
+    }
+  }
+
+  /* grow() method: double the size of one segment.  Caller must hold the lock
+  for the segment. */
+
+  void grow(int segment)
+  {
+    long hash;                    // key after mixing bits
+    int i;                        // index variable
+    long key;                     // one key from old table
+    int mask;                     // new table size minus one
+    long[] newTable;              // bigger table
+    long[] oldTable;              // current table
+    int slot;                     // index into new table
+
+    oldTable = tables[segment];
+    newTable = new long[oldTable.length * 2];
+    mask = newTable.length - 1;
+    for (i = 0; i < oldTable.length; i ++)
+    {
+      key = oldTable[i];
+      if (key != 0)
+      {
+        hash = key * 0x9E3779B97F4A7C15L; // same hashing as add()
+        hash ^= hash >>> 29;
+        slot = ((int) hash) & mask;
+        while (newTable[slot] != 0)
+          slot = (slot + 1) & mask;
+        newTable[slot] = key;
+      }
+    }
+    tables[segment] = newTable;
+  }
+
+} // end of ShowFolderSize1Links class
@@ -0,0 +1,85 @@
+/*
+  ShowFolderSize1Listing class
+  Copyright (c) 2014 by Keith Fenske.  Apache License or GNU GPL.
+
+  The entries in one folder and their attributes, read on another thread for
+  the -wt=# option, so that the searching thread can stop waiting when a
+  network mount doesn't answer.  Everything found goes into this object, and
+  nothing is shared with the search until the searching thread takes it, so a
+  thread that is still stuck after the timeout can't change any totals when it
+  finally returns.  Entries are kept in memory until the whole folder is read,
+  unlike the normal directory stream.
+*/
+
+package io.github.kwfenske.showfoldersize;
+
+import java.io.*;                 // standard I/O
+import java.nio.file.*;           // directory streams, paths
+import java.nio.file.attribute.*; // basic file attributes
+import java.util.*;               // lists, maps, vectors
+import java.util.concurrent.*;    // fork-join thread pools
+
+class ShowFolderSize1Listing implements Callable
+{
+  /* class variables */
+
+  Vector attrs;                   // attributes for each entry, same order
+  Path folder;                    // folder to list
+  ShowFolderSize1Data found;      // errors found while listing
+  Vector paths;                   // entries with attributes that were read
+  ShowFolderSize1Scanner scanner; // scanner that reads attributes
+  long statTime;                  // nanoseconds reading attributes
+
+  /* constructor */
+
+  public ShowFolderSize1Listing(
+    ShowFolderSize1Scanner scanner, // scanner that reads attributes
+    Path folder)                  // folder to list
+  {
+    this.attrs = new Vector();
+    this.folder = folder;
+    this.found = new ShowFolderSize1Data(); // only for errors
+    this.paths = new Vector();
+    this.scanner = scanner;
+    this.statTime = 0;
+  }
+
+  /* call() method: read all entries and attributes, called by a thread in the
+  scanner's pool for listing */
+
+  public Object call()
+  {
+    BasicFileAttributes entry;    // type and size of one entry, or null
+    Path next;                    // next Path object from directory stream
+    long start;                   // System.nanoTime() for reading attributes
+
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder))
+    {
+      Iterator iter = stream.iterator(); // entries as they are read
+      while (iter.hasNext())      // for each file or subfolder
+      {
+        next = (Path) iter.next();
+        start = System.nanoTime();
+        entry = scanner.readEntry(next, found);
+        statTime += System.nanoTime() - start;
+        if (entry != null)        // skip entries without attributes
+        {
+          attrs.add(entry);
+          paths.add(next);
+        }
+      }
+    }
+    catch (DirectoryIteratorException die) // listing ended early
+    {
+      ShowFolderSize1Scanner.addError(found, folder, ShowFolderSize1Scanner
+        .errorReason(die.getCause()));
+    }
+    catch (IOException ioe)       // folder couldn't be listed at all
+    {
+      ShowFolderSize1Scanner.addError(found, folder, ShowFolderSize1Scanner
+        .errorReason(ioe));
+    }
+    return(this);
+  }
+
+} // end of ShowFolderSize1Listing class
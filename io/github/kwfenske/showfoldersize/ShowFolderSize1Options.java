@@ -0,0 +1,334 @@
+/*
+  ShowFolderSize1Options class
+  Copyright (c) 2014 by Keith Fenske.  Apache License or GNU GPL.
+
+  Options for a ShowFolderSize1Scanner: what to count, how deep to search, how
+  names are compared, which names to skip, how many threads, and so on, with
+  the same defaults as the command line.  Objects are immutable.  Each "with"
+  method returns a new copy with one option changed, so one object can be
+  shared by any number of scanners on any number of threads, and options
+  can't change while a scanner is searching.  Values have the same limits as
+  the command line, and anything else throws IllegalArgumentException.
+
+  Options that only change how results are printed (-b, -i#, -m1, -r#, -sort,
+  -v#, etc) aren't here, since the caller decides what to do with the data
+  objects.  The -r# and -k1 options become the depth of subfolders kept in the
+  result, and -load and -t# are set by the command line on its scanner.
+*/
+
+package io.github.kwfenske.showfoldersize;
+
+import java.util.*;               // lists, maps, vectors
+
+public class ShowFolderSize1Options implements Cloneable
+{
+  /* class constants */
+
+  public static final int DEFAULT_REPORT = 9; // default depth kept (-r#)
+  public static final int DEFAULT_SEARCH = 99; // default depth searched (-s#)
+
+  /* class variables */
+
+  long allocBlock;                // forced allocation unit for -d=#, or 0
+  boolean allocFlag;              // true if allocated sizes are counted (-d1)
+  boolean caseFlag;               // true if upper/lower case names different
+  boolean compactFlag;            // true if subfolders kept in compact arrays
+  boolean detailFlag;             // true for file sizes and types (-x1)
+  int estimateLevel;              // levels listed before sampling, 0 for none
+  int estimateSeconds;            // seconds of sampling per folder, or 0
+  String[] excludes;              // patterns for -exclude, maybe empty
+  String[] includes;              // patterns for -include, maybe empty
+  int keepDepth;                  // maximum depth of subfolders kept in result
+  int[] limitCounts;              // folders listed at once for -q=#:folder
+  String[] limitPaths;            // canonical folders for -q=#:folder
+  boolean linkFlag;               // true if hard links are counted only once
+  long listTimeout;               // milliseconds to list a folder, 0 for none
+  boolean nioFlag;                // true if java.nio.file reads attributes
+  boolean oneFlag;                // true if staying on one file system (-o1)
+  int parallelCount;              // number of parallel threads, 0 for serial
+  int pipelineCount;              // number of pipelined threads, 0 for none
+  int searchDepth;                // maximum depth of subfolders to search
+  long timeout;                   // milliseconds for each scan(), 0 for none
+  boolean topAlone;               // true if -top folders without subfolders
+  int topCount;                   // number of largest folders and files, or 0
+  ShowFolderSize1Visitor visitor; // called as each folder is finished, or null
+
+  /* constructor (no arguments): same defaults as the command line */
+
+  public ShowFolderSize1Options()
+  {
+    this.allocBlock = 0;          // allocation unit from each file system
+    this.allocFlag = false;       // count only file sizes, not allocated
+    this.caseFlag = false;        // ignore uppercase/lowercase in names
+    this.compactFlag = false;     // keep subfolders as separate objects
+    this.detailFlag = false;      // no file size histogram or file types
+    this.estimateLevel = 0;       // search all subfolders, exact totals
+    this.estimateSeconds = 0;     // fixed sample without time limit
+    this.excludes = this.includes = new String[0]; // no filters for names
+    this.keepDepth = DEFAULT_REPORT;
+    this.limitCounts = new int[0]; // no limits for folders (mounts)
+    this.limitPaths = new String[0];
+    this.linkFlag = false;        // count every hard link as a separate file
+    this.listTimeout = 0;         // wait as long as it takes to list
+    this.nioFlag = true;          // one attribute read per file
+    this.oneFlag = false;         // search all file systems (mounts)
+    this.parallelCount = 0;       // search on the caller's thread
+    this.pipelineCount = 0;       // no pipelined search
+    this.searchDepth = DEFAULT_SEARCH;
+    this.timeout = 0;             // no time limit
+    this.topAlone = false;        // largest folders include subfolders
+    this.topCount = 0;            // no largest folders and files
+    this.visitor = null;          // only the result tree
+  }
+
+  /* check() method: return a number if it's within limits, or throw an
+  exception with a message like the command line */
+
+  static int check(int value, int low, int high, String what)
+  {
+    if ((value < low) || (value > high))
+      throw new IllegalArgumentException(what + " must be from " + low
+        + " to " + high + ": " + value);
+    return(value);
+  }
+
+  /* copy() method: return a copy of this object for a "with" method to
+  change.  Arrays are shared, since they are replaced and never changed. */
+
+  ShowFolderSize1Options copy()
+  {
+    try { return((ShowFolderSize1Options) this.clone()); }
+    catch (CloneNotSupportedException cnse)
+    {
+      throw new IllegalStateException(cnse); // we are Cloneable, can't happen
+    }
+  }
+
+  /* withAlloc() method: also count disk space allocated to files (-d1), with
+  a forced allocation unit in bytes (-d=#), or zero for each file system's */
+
+  public ShowFolderSize1Options withAlloc(boolean flag, long block)
+  {
+    ShowFolderSize1Options result; // our result
+
+    if (block < 0)
+      throw new IllegalArgumentException(
+        "Allocation unit must be a number of bytes: " + block);
+    result = copy();
+    result.allocBlock = block;
+    result.allocFlag = flag;
+    return(result);
+  }
+
+  /* withCase() method: uppercase and lowercase names are different (-c1) */
+
+  public ShowFolderSize1Options withCase(boolean flag)
+  {
+    ShowFolderSize1Options result = copy();
+    result.caseFlag = flag;
+    return(result);
+  }
+
+  /* withCompact() method: keep subfolders in compact arrays (-a1) */
+
+  public ShowFolderSize1Options withCompact(boolean flag)
+  {
+    ShowFolderSize1Options result = copy();
+    result.compactFlag = flag;
+    return(result);
+  }
+
+  /* withDetail() method: count file sizes and file types (-x1) */
+
+  public ShowFolderSize1Options withDetail(boolean flag)
+  {
+    ShowFolderSize1Options result = copy();
+    result.detailFlag = flag;
+    return(result);
+  }
+
+  /* withEstimate() method: list some levels of folders completely, then
+  estimate from a sample of subfolders (-e#), sampling for some seconds per
+  folder (-et=#), or zero levels for exact totals */
+
+  public ShowFolderSize1Options withEstimate(int levels, int seconds)
+  {
+    ShowFolderSize1Options result; // our result
+
+    check(levels, 0, 999, "Levels before sampling");
+    check(seconds, 0, 99999, "Sampling seconds");
+    if ((seconds > 0) && (levels == 0)) // time for nothing?
+      throw new IllegalArgumentException(
+        "Option -et=# needs -e# for estimates.");
+    result = copy();
+    result.estimateLevel = levels;
+    result.estimateSeconds = seconds;
+    return(result);
+  }
+
+  /* withExclude() method: add a pattern for folders and files to skip
+  (-exclude), which is checked now and compiled by the scanner */
+
+  public ShowFolderSize1Options withExclude(String pattern)
+  {
+    ShowFolderSize1Options result; // our result
+
+    new ShowFolderSize1Filter().add(pattern); // throws if not valid
+    result = copy();
+    result.excludes = Arrays.copyOf(excludes, (excludes.length + 1));
+    result.excludes[excludes.length] = pattern;
+    return(result);
+  }
+
+  /* withInclude() method: add a pattern for files to count (-include) */
+
+  public ShowFolderSize1Options withInclude(String pattern)
+  {
+    ShowFolderSize1Options result; // our result
+
+    new ShowFolderSize1Filter().add(pattern); // throws if not valid
+    result = copy();
+    result.includes = Arrays.copyOf(includes, (includes.length + 1));
+    result.includes[includes.length] = pattern;
+    return(result);
+  }
+
+  /* withKeepDepth() method: maximum depth of subfolders kept in the result
+  tree.  Deeper subfolders are added to the totals and then discarded. */
+
+  public ShowFolderSize1Options withKeepDepth(int depth)
+  {
+    ShowFolderSize1Options result = copy();
+    result.keepDepth = check(depth, 0, 999, "Subfolder keep depth");
+    return(result);
+  }
+
+  /* withLimit() method: at most <count> folders listed at once below a
+  canonical folder path, for the pipelined search (-q=#:folder) */
+
+  public ShowFolderSize1Options withLimit(String path, int count)
+  {
+    ShowFolderSize1Options result; // our result
+
+    check(count, 1, 9999, "Folder limit");
+    result = copy();
+    result.limitCounts = Arrays.copyOf(limitCounts, (limitCounts.length + 1));
+    result.limitCounts[limitCounts.length] = count;
+    result.limitPaths = Arrays.copyOf(limitPaths, (limitPaths.length + 1));
+    result.limitPaths[limitPaths.length] = path;
+    return(result);
+  }
+
+  /* withLinks() method: count files with hard links only once (-h1) */
+
+  public ShowFolderSize1Options withLinks(boolean flag)
+  {
+    ShowFolderSize1Options result = copy();
+    result.linkFlag = flag;
+    return(result);
+  }
+
+  /* withListTimeout() method: milliseconds to wait for the listing of any one
+  folder (-wt=#) before counting it as an error and going on without it, or
+  zero to wait as long as it takes */
+
+  public ShowFolderSize1Options withListTimeout(long millis)
+  {
+    ShowFolderSize1Options result; // our result
+
+    if (millis < 0)
+      throw new IllegalArgumentException(
+        "Listing timeout must be zero or more milliseconds: " + millis);
+    result = copy();
+    result.listTimeout = millis;
+    return(result);
+  }
+
+  /* withNio() method: read attributes once per file with java.nio.file (-f1,
+  the default), or call java.io.File methods separately (-f0) */
+
+  public ShowFolderSize1Options withNio(boolean flag)
+  {
+    ShowFolderSize1Options result = copy();
+    result.nioFlag = flag;
+    return(result);
+  }
+
+  /* withOneDevice() method: don't search subfolders on other file systems
+  (-o1) */
+
+  public ShowFolderSize1Options withOneDevice(boolean flag)
+  {
+    ShowFolderSize1Options result = copy();
+    result.oneFlag = flag;
+    return(result);
+  }
+
+  /* withParallel() method: number of parallel threads for searching (-p#),
+  or zero to search on the thread that calls scan() */
+
+  public ShowFolderSize1Options withParallel(int threads)
+  {
+    ShowFolderSize1Options result = copy();
+    result.parallelCount = check(threads, 0, 999, "Parallel search threads");
+    return(result);
+  }
+
+  /* withPipeline() method: number of pipelined listing threads (-q#), or
+  zero for none */
+
+  public ShowFolderSize1Options withPipeline(int threads)
+  {
+    ShowFolderSize1Options result = copy();
+    result.pipelineCount = check(threads, 0, 9999,
+      "Pipelined search threads");
+    return(result);
+  }
+
+  /* withSearchDepth() method: maximum depth of subfolders to search (-s#) */
+
+  public ShowFolderSize1Options withSearchDepth(int depth)
+  {
+    ShowFolderSize1Options result = copy();
+    result.searchDepth = check(depth, 0, 999, "Subfolder search depth");
+    return(result);
+  }
+
+  /* withTimeout() method: milliseconds for each scan() before it stops and
+  throws CancellationException, or zero for no time limit */
+
+  public ShowFolderSize1Options withTimeout(long millis)
+  {
+    ShowFolderSize1Options result; // our result
+
+    if (millis < 0)
+      throw new IllegalArgumentException(
+        "Timeout must be zero or more milliseconds: " + millis);
+    result = copy();
+    result.timeout = millis;
+    return(result);
+  }
+
+  /* withTop() method: keep only the largest folders and files (-top#), with
+  folder totals that don't include subfolders if <alone> is true (-m0), or
+  zero for none */
+
+  public ShowFolderSize1Options withTop(int count, boolean alone)
+  {
+    ShowFolderSize1Options result = copy();
+    result.topAlone = alone;
+    result.topCount = check(count, 0, 99999, "Largest folders");
+    return(result);
+  }
+
+  /* withVisitor() method: a visitor to call as each folder is finished, or
+  null for none.  With -p# or -q#, calls come from many threads at once. */
+
+  public ShowFolderSize1Options withVisitor(ShowFolderSize1Visitor visitor)
+  {
+    ShowFolderSize1Options result = copy();
+    result.visitor = visitor;
+    return(result);
+  }
+
+} // end of ShowFolderSize1Options class
@@ -0,0 +1,186 @@
+/*
+  ShowFolderSize1Order class
+  Copyright (c) 2014 by Keith Fenske.  Apache License or GNU GPL.
+
+  Comparators for sorting subfolders before they are printed, one for each of
+  the SORT_* constants.  Names are compared one character at a time, so no new
+  strings are created, and case is folded with a table for the common
+  alphabets (Latin, Greek, Cyrillic, and a few others below 0x800), which
+  doesn't depend upon the default locale the way String.toLowerCase() does.
+  When ignoring case, names that differ only in case are still in a fixed
+  order by their exact characters, so two folders never compare as equal.
+*/
+
+package io.github.kwfenske.showfoldersize;
+
+import java.util.*;               // lists, maps, vectors
+
+public class ShowFolderSize1Order implements Comparator
+{
+  /* class constants */
+
+  static final char[] FOLD_TABLE = makeTable(0x800); // folded common chars
+  public static final int SORT_NAME = 0; // -sort=name, also for snapshots
+  public static final int SORT_NATURAL = 1; // -sort=natural
+  public static final int SORT_NONE = -1; // any order, for searching
+  public static final int SORT_SIZE = 2; // -sort=size
+  static final ShowFolderSize1Order[][] ORDERS = { // [case][SORT_* value]
+    { new ShowFolderSize1Order(SORT_NAME, false),
+      new ShowFolderSize1Order(SORT_NATURAL, false),
+      new ShowFolderSize1Order(SORT_SIZE, false) },
+    { new ShowFolderSize1Order(SORT_NAME, true),
+      new ShowFolderSize1Order(SORT_NATURAL, true),
+      new ShowFolderSize1Order(SORT_SIZE, true) } };
+
+  /* class variables */
+
+  boolean caseFlag;               // true if upper/lower case names different
+  int order;                      // one of the SORT_* constants
+
+  /* constructor */
+
+  public ShowFolderSize1Order(int order, boolean caseFlag)
+  {
+    this.caseFlag = caseFlag;
+    this.order = order;
+  }
+
+  /* compare() method: compare two data objects in our order */
+
+  public int compare(Object first, Object second)
+  {
+    ShowFolderSize1Data one, two; // data objects for two subfolders
+    long onesize, twosize;        // total bytes for -sort=size
+
+    one = (ShowFolderSize1Data) first;
+    two = (ShowFolderSize1Data) second;
+    if (this.order == SORT_NATURAL)
+      return(compareNatural(one.name, two.name, caseFlag));
+    if (this.order == SORT_SIZE)
+    {
+      onesize = one.numbyte + one.subbyte;
+      twosize = two.numbyte + two.subbyte;
+      if (onesize != twosize)     // largest first, then by name
+        return((onesize > twosize) ? -1 : 1);
+    }
+    return(compareNames(one.name, two.name, caseFlag));
+  }
+
+  /* compareNames() method: compare two names, ignoring case unless <caseFlag>
+  is true (-c1).  Shorter names come before longer names with the same
+  beginning, and names equal after folding are ordered by exact characters. */
+
+  public static int compareNames(String first, String second, boolean caseFlag)
+  {
+    char ch1, ch2;                // one character from each name
+    int i;                        // index variable
+    int length;                   // length of the shorter name
+
+    if (caseFlag)                 // strict case, exact characters only
+      return(first.compareTo(second));
+    length = Math.min(first.length(), second.length());
+    for (i = 0; i < length; i ++)
+    {
+      ch1 = fold(first.charAt(i));
+      ch2 = fold(second.charAt(i));
+      if (ch1 != ch2)
+        return(ch1 - ch2);
+    }
+    if (first.length() != second.length())
+      return(first.length() - second.length());
+    return(first.compareTo(second)); // same except for case
+  }
+
+  /* compareNatural() method: compare two names with runs of digits by their
+  numeric value, so "d2" comes before "d10".  Leading zeros are ignored, and
+  long runs of digits are compared by length, so there is no overflow.  Names
+  that are equal this way ("d2" and "d02") are compared by compareNames(). */
+
+  static int compareNatural(String first, String second, boolean caseFlag)
+  {
+    char ch1, ch2;                // one character from each name
+    int end1, end2;               // end of digit run in each name
+    int i, k;                     // index into each name
+    int start1, start2;           // start of digit run after leading zeros
+
+    i = k = 0;
+    while ((i < first.length()) && (k < second.length()))
+    {
+      ch1 = first.charAt(i);
+      ch2 = second.charAt(k);
+      if ((ch1 >= '0') && (ch1 <= '9') && (ch2 >= '0') && (ch2 <= '9'))
+      {
+        start1 = i;               // skip leading zeros in first name
+        while ((start1 < first.length()) && (first.charAt(start1) == '0'))
+          start1 ++;
+        end1 = start1;
+        while ((end1 < first.length()) && (first.charAt(end1) >= '0')
+          && (first.charAt(end1) <= '9'))
+          end1 ++;
+        start2 = k;               // skip leading zeros in second name
+        while ((start2 < second.length()) && (second.charAt(start2) == '0'))
+          start2 ++;
+        end2 = start2;
+        while ((end2 < second.length()) && (second.charAt(end2) >= '0')
+          && (second.charAt(end2) <= '9'))
+          end2 ++;
+        if ((end1 - start1) != (end2 - start2)) // more digits is larger
+          return((end1 - start1) - (end2 - start2));
+        while (start1 < end1)     // same number of digits, compare them
+        {
+          ch1 = first.charAt(start1 ++);
+          ch2 = second.charAt(start2 ++);
+          if (ch1 != ch2)
+            return(ch1 - ch2);
+        }
+        i = end1;                 // continue after both numbers
+        k = end2;
+      }
+      else
+      {
+        ch1 = caseFlag ? ch1 : fold(ch1);
+        ch2 = caseFlag ? ch2 : fold(ch2);
+        if (ch1 != ch2)
+          return(ch1 - ch2);
+        i ++;
+        k ++;
+      }
+    }
+    if ((i < first.length()) || (k < second.length())) // one name left over
+      return((i < first.length()) ? 1 : -1);
+    return(compareNames(first, second, caseFlag)); // equal as numbers, text
+  }
+
+  /* fold() method: return one character with its case folded */
+
+  static char fold(char ch)
+  {
+    if (ch < FOLD_TABLE.length)   // common alphabets from our table
+      return(FOLD_TABLE[ch]);
+    return(Character.toLowerCase(Character.toUpperCase(ch)));
+  }
+
+  /* get() method: return the comparator for one of the SORT_* constants,
+  with or without strict case */
+
+  static ShowFolderSize1Order get(int order, boolean caseFlag)
+  {
+    return(ORDERS[caseFlag ? 1 : 0][order]);
+  }
+
+  /* makeTable() method: create the table for folding common characters.
+  Going to uppercase first and then lowercase puts variants like the final
+  sigma and the long s together with their usual lowercase letter. */
+
+  static char[] makeTable(int size)
+  {
+    int i;                        // index variable
+    char[] result;                // our result
+
+    result = new char[size];
+    for (i = 0; i < size; i ++)
+      result[i] = Character.toLowerCase(Character.toUpperCase((char) i));
+    return(result);
+  }
+
+} // end of ShowFolderSize1Order class
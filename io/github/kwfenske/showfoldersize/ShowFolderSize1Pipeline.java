@@ -0,0 +1,234 @@
+/*
+  ShowFolderSize1Pipeline class
+  Copyright (c) 2014 by Keith Fenske.  Apache License or GNU GPL.
+
+  A pipelined search for the -q# option, meant for network drives, where most
+  of the time listing a folder is spent waiting for the server.  Many worker
+  threads take folders from a bounded queue, list them with searchList(), and
+  put their subfolders back on the queue.  When the queue is full, a worker
+  lists the subfolder itself, so the queue never blocks and memory stays
+  bounded.  Workers are virtual threads if Java has them (Java 21 or later),
+  otherwise normal daemon threads, so there can be thousands of outstanding
+  requests without thousands of CPUs.
+
+  A single aggregator thread adds totals.  After listing a folder, a worker
+  sends the folder and its number of subfolders to the aggregator before
+  putting the subfolders on the queue, so the aggregator always sees a parent
+  before any of its children.  A folder is finished when its last subfolder
+  is finished, and then it is added to its own parent, and so on up to the
+  top-level folder, which releases the thread waiting in search().  Only the
+  aggregator touches totals and subfolder lists, so they need no locks.
+
+  Folders may be limited to a number of listings at once below a given path,
+  usually where a network drive is mounted, with one semaphore for each path.
+*/
+
+package io.github.kwfenske.showfoldersize;
+
+import java.io.*;                 // standard I/O
+import java.nio.file.*;           // directory streams, paths
+import java.util.*;               // lists, maps, vectors
+import java.util.concurrent.*;    // fork-join thread pools
+
+class ShowFolderSize1Pipeline implements Runnable
+{
+  /* class variables */
+
+  LinkedBlockingQueue finished;   // listed folders for aggregator, in order
+  Semaphore[] limitCounts;        // permits for each limited path
+  String[] limitPaths;            // canonical paths with limits, or empty
+  IdentityHashMap pending;        // folders waiting for subfolders (<File>)
+  ArrayBlockingQueue queue;       // folders waiting to be listed (tasks)
+  Hashtable roots;                // latch for each top-level data object
+  ShowFolderSize1Scanner scanner; // scanner that owns these threads
+  Vector threads;                 // worker and aggregator threads
+  boolean virtualFlag;            // true if workers are virtual threads
+
+  /* constructor */
+
+  public ShowFolderSize1Pipeline(
+    ShowFolderSize1Scanner scanner, // scanner that owns these threads
+    int workers)                  // number of worker threads
+  {
+    ThreadFactory factory;        // creates worker threads
+    int i;                        // index variable
+    Thread thread;                // one new thread
+
+    this.finished = new LinkedBlockingQueue(); // no limit, messages are small
+    this.limitCounts = new Semaphore[0];
+    this.limitPaths = new String[0];
+    this.pending = new IdentityHashMap(); // only used by aggregator thread
+    this.queue = new ArrayBlockingQueue(Math.max(1024, (workers * 64)));
+    this.roots = new Hashtable();
+    this.scanner = scanner;
+    this.threads = new Vector();
+
+    /* Java 21 has virtual threads, but we are compiled for Java 7, so look for
+    Thread.ofVirtual().factory() by name. */
+
+    try
+    {
+      Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+      factory = (ThreadFactory) Class.forName("java.lang.Thread$Builder")
+        .getMethod("factory").invoke(builder);
+      this.virtualFlag = true;
+    }
+    catch (Exception e) { factory = null; this.virtualFlag = false; }
+
+    for (i = 0; i < workers; i ++)
+    {
+      thread = (factory != null) ? factory.newThread(this) : new Thread(this);
+      thread.setDaemon(true);     // won't block exit (virtual always daemon)
+      thread.start();
+      threads.add(thread);
+    }
+    thread = new Thread(new Runnable()
+      { public void run() { aggregate(); } });
+    thread.setDaemon(true);       // won't block exit
+    thread.start();
+    threads.add(thread);
+  }
+
+  /* addLimit() method: at most <count> folders listed at once below <path> */
+
+  void addLimit(String path, int count)
+  {
+    int size = limitPaths.length; // old number of limits
+    limitCounts = Arrays.copyOf(limitCounts, (size + 1));
+    limitCounts[size] = new Semaphore(count);
+    limitPaths = Arrays.copyOf(limitPaths, (size + 1));
+    limitPaths[size] = path.endsWith(File.separator) ? path : (path
+      + File.separator);          // so "/mnt/a" doesn't match "/mnt/ab"
+  }
+
+  /* aggregate() method: run by the aggregator thread forever, taking folders
+  in the order they were listed and adding totals for finished folders */
+
+  void aggregate()
+  {
+    ShowFolderSize1Task item;     // one listed folder
+
+    while (true)
+    {
+      try { item = (ShowFolderSize1Task) finished.take(); }
+      catch (InterruptedException ie) { return; }
+      if (item.data.waiting > 0)  // wait for subfolders to finish
+        pending.put(item.data, item.folder);
+      else                        // no subfolders, or all were loops
+        finish(item.folder, item.data);
+    }
+  }
+
+  /* close() method: stop all threads when the scanner is closed */
+
+  void close()
+  {
+    int i;                        // index variable
+
+    for (i = 0; i < threads.size(); i ++)
+      ((Thread) threads.get(i)).interrupt();
+  }
+
+  /* finish() method: a folder and its subfolders are done, so add it to its
+  parent, which may then be done too */
+
+  void finish(Path folder, ShowFolderSize1Data data)
+  {
+    ShowFolderSize1Data parent;   // data object for parent folder
+
+    while (true)
+    {
+      scanner.searchFinish(folder, data);
+      parent = data.parent;
+      if (parent == null)         // top-level folder is done
+      {
+        ((CountDownLatch) roots.remove(data)).countDown();
+        return;
+      }
+      ShowFolderSize1Scanner.addSubfolder(parent, data);
+      if ((-- parent.waiting) > 0) // parent still has other subfolders
+        return;
+      folder = (Path) pending.remove(parent);
+      data = parent;
+    }
+  }
+
+  /* findLimit() method: return the semaphore for the longest limited path
+  that contains a folder, or null if the folder isn't limited */
+
+  Semaphore findLimit(Path folder)
+  {
+    int best;                     // index of longest matching path, or -1
+    int i;                        // index variable
+    String path;                  // folder path with a final separator
+
+    if (limitPaths.length == 0)   // quick exit when there are no limits
+      return(null);
+    best = -1;
+    path = folder.toString() + File.separator;
+    for (i = 0; i < limitPaths.length; i ++)
+      if (path.startsWith(limitPaths[i]) && ((best < 0)
+        || (limitPaths[i].length() > limitPaths[best].length())))
+      {
+        best = i;
+      }
+    return((best < 0) ? null : limitCounts[best]);
+  }
+
+  /* list() method: list one folder and put its subfolders on the queue, or
+  list them right now if the queue is full */
+
+  void list(ShowFolderSize1Task item)
+  {
+    int i;                        // index variable
+    Semaphore limit;              // limit for this folder's mount, or null
+    Vector tasks;                 // tasks for subfolders of this folder
+
+    limit = findLimit(item.folder);
+    tasks = new Vector();
+    if (limit != null)            // wait for our turn on a limited mount
+      limit.acquireUninterruptibly();
+    try { scanner.searchList(item.depth, item.folder, item.data, tasks); }
+    catch (Throwable t)           // keep subfolders found before any error
+    {
+      ShowFolderSize1Scanner.addError(item.data, item.folder,
+        ShowFolderSize1Scanner.errorReason(t));
+    }
+    finally { if (limit != null) limit.release(); }
+
+    item.data.waiting = tasks.size(); // before aggregator sees this folder
+    finished.add(item);           // always before subfolders are queued
+    for (i = 0; i < tasks.size(); i ++)
+      if (queue.offer(tasks.get(i)) == false) // is the queue full?
+        list((ShowFolderSize1Task) tasks.get(i)); // yes, list it ourselves
+  }
+
+  /* run() method: called for each worker thread, lists folders forever */
+
+  public void run()
+  {
+    while (true)
+    {
+      try { list((ShowFolderSize1Task) queue.take()); }
+      catch (InterruptedException ie) { return; }
+    }
+  }
+
+  /* search() method: search a top-level folder and wait until it is done */
+
+  ShowFolderSize1Data search(Path canon, ShowFolderSize1Data root)
+  {
+    CountDownLatch done;          // released when folder is finished
+
+    done = new CountDownLatch(1);
+    roots.put(root, done);
+    try
+    {
+      queue.put(new ShowFolderSize1Task(scanner, 0, canon, root));
+      done.await();               // wait for aggregator to finish folder
+    }
+    catch (InterruptedException ie) { return(null); }
+    return(root);
+  }
+
+} // end of ShowFolderSize1Pipeline class
@@ -0,0 +1,152 @@
+/*
+  ShowFolderSize1Progress class
+  Copyright (c) 2014 by Keith Fenske.  Apache License or GNU GPL.
+
+  Progress and timing for the -t# option.  Searching threads add their counts
+  and times once per folder with atomic (lock-free) adds, and a timer thread
+  samples these every few seconds for a progress line on standard error.  The
+  path is whichever folder a thread started most recently; with more than one
+  thread, that's only one of several current folders.
+*/
+
+package io.github.kwfenske.showfoldersize;
+
+import java.text.*;               // number formatting
+import java.util.*;               // timer tasks
+import java.util.concurrent.*;    // fork-join thread pools
+import java.util.concurrent.atomic.*; // lock-free counters
+
+public class ShowFolderSize1Progress extends TimerTask
+{
+  /* class variables */
+
+  AtomicLong bytes;               // bytes in files found so far
+  AtomicLong files;               // number of files found so far
+  AtomicLong folders;             // number of folders searched so far
+  NumberFormat format;            // our own, shared formats aren't thread safe
+  long lastFiles, lastFolders;    // counts at previous progress line
+  long lastTime;                  // System.nanoTime() at previous line
+  AtomicLong listNanos;           // time listing folders (all threads)
+  volatile Object path;           // File or Path of a current folder
+  public AtomicLong printNanos;   // time printing results (main thread)
+  ShowFolderSize1Pipeline pipeline; // pipelined threads, or null
+  ForkJoinPool pool;              // parallel threads, or null for serial
+  AtomicLong sortNanos;           // time sorting subfolders (all threads)
+  long startTime;                 // System.nanoTime() when search started
+  AtomicLong statNanos;           // time reading attributes (all threads)
+
+  /* constructor */
+
+  public ShowFolderSize1Progress(
+    ForkJoinPool pool,            // parallel threads, or null for serial
+    ShowFolderSize1Pipeline pipeline) // pipelined threads, or null
+  {
+    this.bytes = new AtomicLong(0);
+    this.files = new AtomicLong(0);
+    this.folders = new AtomicLong(0);
+    this.format = NumberFormat.getInstance(); // current locale
+    this.format.setGroupingUsed(true); // use commas or digit groups
+    this.format.setMaximumFractionDigits(1); // one decimal digit for bytes
+    this.format.setMinimumFractionDigits(0);
+    this.lastFiles = this.lastFolders = 0;
+    this.listNanos = new AtomicLong(0);
+    this.path = null;             // nothing searched yet
+    this.pipeline = pipeline;
+    this.pool = pool;
+    this.printNanos = new AtomicLong(0);
+    this.sortNanos = new AtomicLong(0);
+    this.startTime = this.lastTime = System.nanoTime();
+    this.statNanos = new AtomicLong(0);
+  }
+
+  /* addFolder() method: one folder has been listed, not including anything
+  done by its subfolders */
+
+  void addFolder(
+    long numfile,                 // number of files in this folder
+    long numbyte,                 // bytes in files in this folder
+    long listTime,                // nanoseconds listing this folder
+    long statTime)                // nanoseconds reading attributes
+  {
+    folders.incrementAndGet();
+    if (numfile != 0)             // no need to touch these for empty folders
+    {
+      files.addAndGet(numfile);
+      bytes.addAndGet(numbyte);
+    }
+    if (listTime != 0) listNanos.addAndGet(listTime);
+    if (statTime != 0) statNanos.addAndGet(statTime);
+  }
+
+  /* formatSize() method: rough size in bytes, KB, MB, etc, without using the
+  shared formatters in the main class */
+
+  String formatSize(long size)
+  {
+    double units;                 // converted size reduced from bytes
+    String suffix;                // units string for scaled size
+
+    units = (double) size / 1024.0; // same scaling as formatBytes()
+    suffix = " KB";
+    if (units > 999.4) { units = units / 1024.0; suffix = " MB"; }
+    if (units > 999.4) { units = units / 1024.0; suffix = " GB"; }
+    if (units > 999.4) { units = units / 1024.0; suffix = " TB"; }
+    return(format.format(units) + suffix);
+  }
+
+  /* run() method: called by a timer thread to print one progress line */
+
+  public synchronized void run()
+  {
+    long nowFiles, nowFolders;    // counts for this progress line
+    long nowTime;                 // System.nanoTime() for this line
+    Object nowPath;               // current folder, may change while we work
+    double seconds;               // time since previous progress line
+
+    nowFiles = files.get();
+    nowFolders = folders.get();
+    nowPath = path;
+    nowTime = System.nanoTime();
+    seconds = Math.max(0.001, ((nowTime - lastTime) / 1e9));
+    System.err.println("Progress: "
+      + format.format(nowFolders) + " folders ("
+      + format.format(Math.round((nowFolders - lastFolders) / seconds))
+      + "/s), " + format.format(nowFiles) + " files ("
+      + format.format(Math.round((nowFiles - lastFiles) / seconds))
+      + "/s), " + formatSize(bytes.get())
+      + ((pool != null) ? (", " + format.format(pool.getQueuedTaskCount())
+      + " queued") : "")
+      + ((pipeline != null) ? (", " + format.format(pipeline.queue.size())
+      + " queued") : "")
+      + ((nowPath != null) ? (", " + nowPath) : ""));
+    lastFiles = nowFiles;
+    lastFolders = nowFolders;
+    lastTime = nowTime;
+  }
+
+  /* summary() method: print total time and time for each step when all
+  searching and printing is done.  Synchronized with run() so that a progress
+  line that has already started doesn't appear in the middle. */
+
+  public synchronized void summary()
+  {
+    cancel();                     // no more progress lines after this
+    System.err.println("Searched " + format.format(folders.get())
+      + " folders and " + format.format(files.get()) + " files ("
+      + formatSize(bytes.get()) + ") in " + seconds(System.nanoTime()
+      - startTime) + " seconds.");
+    System.err.println("Time for listing " + seconds(listNanos.get())
+      + ", attributes " + seconds(statNanos.get()) + ", sorting "
+      + seconds(sortNanos.get()) + ", printing " + seconds(printNanos.get())
+      + " seconds" + (((pool != null) || (pipeline != null))
+      ? " (total for all threads)." : "."));
+  }
+
+  /* seconds() method: format nanoseconds as seconds with three decimals */
+
+  String seconds(long nanos)
+  {
+    return(String.format("%.3f", (nanos / 1e9)));
+  }
+
+} // end of ShowFolderSize1Progress class
@@ -0,0 +1,263 @@
+/*
+  ShowFolderSize1Sample class
+  Copyright (c) 2014 by Keith Fenske.  Apache License or GNU GPL.
+
+  Estimated totals for the -e# option, with one object for each folder on the
+  command line.  Folders on the last level that is listed completely give us
+  their subfolders as tasks that haven't been searched, in a random order.
+  After the search, subfolders are searched in rounds, one more from each
+  folder per round, until enough have been sampled or time runs out (-et=#).
+  Then each folder's totals are scaled up from the average of its sampled
+  subfolders, the changes are added to its parent folders, and the variance of
+  each estimate is saved for the confidence intervals in the report.
+
+  This is stratified random sampling without replacement, where each folder is
+  one stratum.  For N subfolders with n sampled, the variance of the estimated
+  total is N(N-n)s^2/n, where s^2 is the sample variance of one subfolder's
+  total, and the variance for a parent folder is the sum for its strata, since
+  they are sampled independently.  Folder totals are often far from normal,
+  and s^2 from a few samples is itself uncertain, so intervals use Student's t
+  with n-1 degrees of freedom instead of 1.96, taking the smallest n of all
+  strata for a parent folder.  At least five subfolders are always sampled
+  (MIN_SAMPLES).  A stratum with fewer, which only happens if sampling was
+  stopped, has no interval, and neither do its parent folders.
+*/
+
+package io.github.kwfenske.showfoldersize;
+
+import java.util.*;               // lists, maps, vectors
+import java.util.concurrent.*;    // fork-join thread pools
+
+class ShowFolderSize1Sample
+{
+  /* class constants */
+
+  static final int MIN_SAMPLES = 5; // subfolders always searched, if there
+  static final double SAMPLE_FRACTION = 0.10; // part searched without -et=#
+  static final double[] T_95 = {0.0, 12.706, 4.303, 3.182, 2.776, 2.571,
+    2.447, 2.365, 2.306, 2.262, 2.228, 2.201, 2.179, 2.160, 2.145, 2.131,
+    2.120, 2.110, 2.101, 2.093, 2.086, 2.080, 2.074, 2.069, 2.064, 2.060,
+    2.056, 2.052, 2.048, 2.045, 2.042}; // Student's t for 95%, by freedom
+  static final double Z_95 = 1.96; // normal quantile for 95% intervals
+
+  /* class variables */
+
+  long deadline;                  // System.nanoTime() when sampling stops
+  Vector folders;                 // folders whose subfolders are sampled
+  Random random;                  // shuffles subfolders of each folder
+  ShowFolderSize1Scanner scanner; // scanner searching this folder
+  Vector subfolders;              // shuffled tasks for each folder
+  boolean timeFlag;               // true if sampling until time runs out
+
+  /* constructor */
+
+  public ShowFolderSize1Sample(
+    ShowFolderSize1Scanner scanner, // scanner searching this folder
+    int seconds)                  // seconds of sampling (-et=#), or 0
+  {
+    this.deadline = System.nanoTime() + (seconds * 1000000000L);
+    this.folders = new Vector();
+    this.random = new Random();
+    this.scanner = scanner;
+    this.subfolders = new Vector();
+    this.timeFlag = (seconds > 0);
+  }
+
+  /* add() method: save a folder's subfolders in a random order, to sample
+  later.  Called by searchFolder() on any thread with -p#. */
+
+  synchronized void add(ShowFolderSize1Data folder, Vector tasks)
+  {
+    Collections.shuffle(tasks, random);
+    folders.add(folder);
+    subfolders.add(tasks);
+  }
+
+  /* addError() method: add the variance of an estimate to a folder, with
+  the number of subfolders sampled, keeping the smallest number.  Zero
+  samples means there is no interval. */
+
+  void addError(ShowFolderSize1Data folder, double[] variance)
+  {
+    double[] total;               // variance for folder so far
+
+    synchronized (folder.search.estimateErrors) // other top-level folders
+    {
+      total = (double[]) folder.search.estimateErrors.get(folder);
+      if (total == null)          // first estimate for this folder
+        folder.search.estimateErrors.put(folder, variance.clone());
+      else
+      {
+        total[0] += variance[0];
+        total[1] += variance[1];
+        total[2] = Math.min(total[2], variance[2]);
+      }
+    }
+  }
+
+  /* estimate() method: add the sampled subfolders to their folder, scale up
+  the totals for the others, and pass the changes up to parent folders */
+
+  void estimate(
+    ShowFolderSize1Data folder,   // folder on last level listed completely
+    Vector tasks,                 // shuffled subfolders of that folder
+    int count)                    // number of subfolders sampled
+  {
+    ShowFolderSize1Data above;    // one of the parent folders
+    ShowFolderSize1Data data;     // one sampled subfolder
+    int i;                        // index variable
+    long newalloc, newbyte, newfile, newfold; // totals after estimate
+    long oldalloc, oldbyte, oldfile, oldfold; // totals before estimate
+    int rest;                     // subfolders not sampled
+    double sumalloc, sumbyte, sumfile, sumfold; // sums for samples
+    double squarebyte, squarefile; // sums of squares for variance
+    double value;                 // one sampled total
+
+    oldalloc = folder.numalloc + folder.suballoc;
+    oldbyte = folder.numbyte + folder.subbyte;
+    oldfile = folder.numfile + folder.subfile;
+    oldfold = folder.numfold + folder.subfold;
+    sumalloc = sumbyte = sumfile = sumfold = squarebyte = squarefile = 0.0;
+    for (i = 0; i < count; i ++)
+    {
+      data = ((ShowFolderSize1Task) tasks.get(i)).data;
+      ShowFolderSize1Scanner.addSubfolder(folder, data); // exact totals
+      sumalloc += data.numalloc + data.suballoc;
+      value = data.numbyte + data.subbyte;
+      sumbyte += value;
+      squarebyte += value * value;
+      value = data.numfile + data.subfile;
+      sumfile += value;
+      squarefile += value * value;
+      sumfold += data.numfold + data.subfold;
+    }
+    rest = tasks.size() - count;
+    if ((count > 0) && (rest > 0)) // any subfolders to estimate?
+    {
+      folder.numfold += rest;     // we know how many there are
+      folder.suballoc += Math.round(rest * sumalloc / count);
+      folder.subbyte += Math.round(rest * sumbyte / count);
+      folder.subfile += Math.round(rest * sumfile / count);
+      folder.subfold += Math.round(rest * sumfold / count);
+      for (above = folder; above != null; above = above.parent)
+        addError(above, new double[] {
+          variance(tasks.size(), count, sumbyte, squarebyte),
+          variance(tasks.size(), count, sumfile, squarefile),
+          ((count < MIN_SAMPLES) ? 0 : count) }); // too few for an interval
+    }
+    newalloc = folder.numalloc + folder.suballoc;
+    newbyte = folder.numbyte + folder.subbyte;
+    newfile = folder.numfile + folder.subfile;
+    newfold = folder.numfold + folder.subfold;
+    for (above = folder.parent; above != null; above = above.parent)
+    {
+      above.suballoc += newalloc - oldalloc;
+      above.subbyte += newbyte - oldbyte;
+      above.subfile += newfile - oldfile;
+      above.subfold += newfold - oldfold;
+    }
+  }
+
+  /* find() method: return the sampler for a folder's top-level folder */
+
+  static ShowFolderSize1Sample find(
+    ShowFolderSize1Scanner scanner, // scanner searching this folder
+    ShowFolderSize1Data folder)   // folder on last level listed completely
+  {
+    while (folder.parent != null) // only a few levels, up to -e#
+      folder = folder.parent;
+    return((ShowFolderSize1Sample) folder.search.estimateSamples.get(folder));
+  }
+
+  /* run() method: search sampled subfolders in rounds, with parallel threads
+  if there are any, then estimate totals for each folder */
+
+  void run()
+  {
+    int[] counts;                 // subfolders searched for each folder
+    boolean found;                // true if any subfolder in this round
+    int i;                        // index variable
+    ShowFolderSize1Task item;     // one sampled subfolder
+    ForkJoinPool pool;            // parallel threads for -p#, or null
+    int round;                    // current round, index into each folder
+    boolean stop;                 // true when time has run out
+    Vector tasks;                 // shuffled subfolders of one folder
+
+    counts = new int[folders.size()];
+    pool = scanner.searchPool;
+    stop = false;
+    for (round = 0; stop == false; round ++)
+    {
+      found = false;
+      for (i = 0; (i < folders.size()) && (stop == false); i ++)
+      {
+        tasks = (Vector) subfolders.get(i);
+        if (round >= target(tasks.size())) { /* enough for this folder */ }
+        else if (timeFlag && (round >= MIN_SAMPLES)
+          && ((System.nanoTime() - deadline) > 0)) // out of time?
+        {
+          stop = true;
+        }
+        else
+        {
+          found = true;
+          item = (ShowFolderSize1Task) tasks.get(round);
+          if (pool != null)       // search with parallel threads
+            pool.execute(item);
+          else                    // serial search on this thread
+            scanner.searchFolder(item.depth, item.folder, item.data);
+          counts[i] = round + 1;
+        }
+      }
+      if (pool != null)           // wait for the whole round to finish
+        for (i = 0; i < folders.size(); i ++)
+          if (counts[i] == (round + 1))
+            ((ShowFolderSize1Task) ((Vector) subfolders.get(i)).get(round))
+              .join();
+      if (found == false)         // every folder has enough samples
+        stop = true;
+    }
+    for (i = 0; i < folders.size(); i ++)
+      estimate((ShowFolderSize1Data) folders.get(i), (Vector) subfolders
+        .get(i), counts[i]);
+  }
+
+  /* quantile() method: return the multiple of the standard error for a 95%
+  interval, from Student's t for the given number of samples.  Beyond the
+  table, a first correction to the normal quantile is close enough. */
+
+  static double quantile(int count)
+  {
+    if ((count - 1) < T_95.length) // small samples, from the table
+      return(T_95[count - 1]);
+    return(Z_95 + ((Z_95 * Z_95 * Z_95) + Z_95) / (4.0 * (count - 1)));
+  }
+
+  /* target() method: return how many subfolders to sample from a folder */
+
+  int target(int total)
+  {
+    if (timeFlag)                 // keep going until time runs out
+      return(total);
+    return(Math.min(total, Math.max(MIN_SAMPLES, (int) Math.ceil(total
+      * SAMPLE_FRACTION))));
+  }
+
+  /* variance() method: return the variance of an estimated total for one
+  folder, from the sum and sum of squares for its sampled subfolders */
+
+  static double variance(
+    int total,                    // number of subfolders
+    int count,                    // number of subfolders sampled
+    double sum,                   // sum of sampled totals
+    double squares)               // sum of squares of sampled totals
+  {
+    double spread;                // sample variance for one subfolder
+
+    if ((count >= total) || (count < 2)) // exact, or no sample variance
+      return(0.0);
+    spread = Math.max(0.0, ((squares - (sum * sum / count)) / (count - 1)));
+    return(((double) total) * (total - count) * spread / count);
+  }
+
+} // end of ShowFolderSize1Sample class
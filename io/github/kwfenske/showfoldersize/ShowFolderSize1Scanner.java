@@ -0,0 +1,1119 @@
+/*
+  ShowFolderSize1Scanner class
+  Copyright (c) 2014 by Keith Fenske.  Apache License or GNU GPL.
+
+  The search itself, for the command line and for other Java programs that
+  want folder totals without starting a new process for each one.  Nothing is
+  kept in static variables except the allocation unit for each device, which
+  doesn't depend upon any options.  A scanner has the options and the thread
+  pool (-p#) or pipeline (-q#).  Each scan() has its own search object for
+  everything else: the timeout, compact arrays (-a1), hard links already seen
+  (-h1), the largest folders and files (-top), and samples for estimates
+  (-e#).  Many scanners can search at the same time in one program, each with
+  its own options, and one scanner can scan() several folders at the same
+  time from different threads, sharing its threads, or one after another,
+  without any search changing the results of another.
+
+  A program calls scan() with a folder and gets a tree of data objects back,
+  using getSubfolders() for the subfolders of each one, or gets a call to the
+  visitor in its options as each folder is finished.  Call cancel() from any
+  thread to stop searching: folders already being listed are finished, no
+  more are started, and scan() throws CancellationException.  This can't be
+  undone.  The timeout in the options does the same for one scan() when its
+  time runs out, and the next scan() has the full time again.  Folders and
+  files that can't be read are counted in each data object (<numerror> and
+  <suberror>), with the first few paths and reasons in <errlist>.  Call
+  close() when done, to stop any threads for -p# or -q#.
+
+  The command line is a thin layer over this class.  main() turns its options
+  into a ShowFolderSize1Options object, creates one scanner, and prints the
+  data objects that come back.  The command line is in the default (unnamed)
+  package, so the few methods it needs beyond scan() are also public:
+  searchRoot() returns null instead of throwing, and treats all folders from
+  the command line as one search (see ShowFolderSize1Search), setLoaded() is
+  for -load, startProgress() for -t, and searchList() and searchSubfolder()
+  update a tree for -serve, with the static readAttributes() and toPath()
+  methods.  Other programs should call scan().
+*/
+
+package io.github.kwfenske.showfoldersize;
+
+import java.io.*;                 // standard I/O
+import java.nio.file.*;           // directory streams, paths
+import java.nio.file.attribute.*; // basic file attributes
+import java.util.*;               // lists, maps, vectors
+import java.util.concurrent.*;    // fork-join thread pools
+
+public class ShowFolderSize1Scanner
+{
+  /* class constants */
+
+  static final long DEFAULT_BLOCK = 4096; // allocation unit if not known
+  static final int ERROR_PATHS = 20; // unreadable paths kept for each folder
+
+  /* class variables */
+
+  static volatile long[] allocDevices = new long[0]; // device, block size
+  volatile boolean cancelFlag;    // true after cancel() or close()
+  ShowFolderSize1Filter excludeFilter; // skip these names, or null
+  ShowFolderSize1Filter includeFilter; // only these files, or null
+  ExecutorService listPool;       // threads for listing with -wt=#, or null
+  int loadDepth;                  // search depth of loaded snapshot (-load)
+  Map loadRoots;                  // top-level folders from -load, or null
+  ShowFolderSize1Options options; // options for every search, never changed
+  ShowFolderSize1Progress progress; // counts and times for -t, or null
+  ShowFolderSize1Pipeline searchPipeline; // pipeline for -q, or null
+  ForkJoinPool searchPool;        // work-stealing threads, or null for serial
+  ShowFolderSize1Search sharedSearch; // one search for searchRoot(), or null
+  boolean unixFlag;               // true if reading "unix" file attributes
+
+  /* constructor: check that the options can be used together, and create
+  whatever they need.  Throws IllegalArgumentException with the same message
+  as the command line if they can't. */
+
+  public ShowFolderSize1Scanner(ShowFolderSize1Options options)
+  {
+    int i;                        // index variable
+
+    this.cancelFlag = false;      // not cancelled or closed
+    this.excludeFilter = ShowFolderSize1Filter.create(options.excludes);
+    this.includeFilter = ShowFolderSize1Filter.create(options.includes);
+    this.listPool = null;         // no listing threads until we need them
+    this.loadDepth = 0;           // set by command line for -load
+    this.loadRoots = null;
+    this.options = options;
+    this.progress = null;         // set by command line for -t
+    this.searchPipeline = null;   // no pipeline until we know we need one
+    this.searchPool = null;       // no thread pool until we know we need one
+    this.sharedSearch = null;     // only if the command line searches
+    this.unixFlag = (options.allocFlag || options.linkFlag || options.oneFlag)
+      && FileSystems.getDefault().supportedFileAttributeViews().contains(
+      "unix");
+
+    if (options.oneFlag && (unixFlag == false)) // need device for each folder
+      throw new IllegalArgumentException(
+        "Option -o1 needs Unix file attributes (device).");
+    if (options.linkFlag && (unixFlag == false)) // need device and inode
+      throw new IllegalArgumentException(
+        "Option -h1 needs Unix file attributes (device, inode, links).");
+    if ((options.parallelCount > 0) && (options.pipelineCount > 0))
+      throw new IllegalArgumentException(
+        "Options -p# and -q# can't be used together.");
+    if ((options.limitPaths.length > 0) && (options.pipelineCount == 0))
+      throw new IllegalArgumentException(
+        "Option -q=#:folder needs -q# for pipelined search.");
+    if ((options.estimateLevel > 0) && (options.compactFlag
+      || (options.pipelineCount > 0) || (options.topCount > 0)
+      || options.detailFlag || (options.visitor != null)))
+    {
+      throw new IllegalArgumentException(
+        "The -e# option can't be used with -a1, -q#, -top, -x1, or a visitor.");
+    }
+
+    if (options.listTimeout > 0)  // list folders on threads we can abandon?
+    {
+      this.listPool = Executors.newCachedThreadPool(new ThreadFactory()
+      {
+        public Thread newThread(Runnable task)
+        {
+          Thread thread = new Thread(task);
+          thread.setDaemon(true); // a stuck thread won't block exit
+          return(thread);
+        }
+      });
+    }
+    if (options.parallelCount > 0) // search subfolders on multiple threads?
+      this.searchPool = new ForkJoinPool(options.parallelCount);
+    if (options.pipelineCount > 0) // list folders with a pipeline of threads?
+    {
+      this.searchPipeline = new ShowFolderSize1Pipeline(this,
+        options.pipelineCount);
+      for (i = 0; i < options.limitPaths.length; i ++) // limits for mounts
+        this.searchPipeline.addLimit(options.limitPaths[i],
+          options.limitCounts[i]);
+    }
+  }
+
+  /* addError() method: count one folder or file that couldn't be read, and
+  keep its path with the reason, if the folder doesn't have too many */
+
+  static void addError(
+    ShowFolderSize1Data result,   // data object for folder with the error
+    Object path,                  // File or Path that couldn't be read
+    String reason)                // short reason, like "access denied"
+  {
+    result.numerror ++;           // one more error in this folder
+    if (result.errlist == null)   // first error for this folder
+      result.errlist = new Vector();
+    if (result.errlist.size() < ERROR_PATHS)
+      result.errlist.add(path + " (" + reason + ")");
+  }
+
+  /* addSubfolder() method: add the totals from a subfolder's data object to
+  its parent folder, and save the subfolder in the parent's list by name, if
+  the parent has a list.  Null subfolders (errors) are ignored.  Both the
+  serial and the parallel searches call this method in the same order, so
+  their results are identical. */
+
+  static void addSubfolder(
+    ShowFolderSize1Data result,   // data object for parent folder
+    ShowFolderSize1Data subdata)  // data object for subfolder, or null
+  {
+    if (subdata != null)          // don't propagate errors
+    {
+      result.numfold ++;          // one more subfolder in this folder
+      result.subbyte += subdata.numbyte + subdata.subbyte;
+      result.subfile += subdata.numfile + subdata.subfile;
+      result.subfold += subdata.numfold + subdata.subfold;
+      result.suballoc += subdata.numalloc + subdata.suballoc;
+      if ((subdata.numdetail != null) || (subdata.subdetail != null))
+      {
+        if (result.subdetail == null) // first subfolder with any files
+          result.subdetail = new ShowFolderSize1Detail();
+        result.subdetail.addAll(subdata.numdetail); // null is ignored
+        result.subdetail.addAll(subdata.subdetail);
+      }
+      result.suberror += subdata.numerror + subdata.suberror;
+      mergeErrors(result, subdata.errlist); // null is ignored
+      if (result.sublist != null) // keeping data for subfolders?
+        result.sublist.put(subdata.name, subdata); // sorted when printed
+    }
+  }
+
+  /* allocDevice() method: find the allocation unit for a new device, and add
+  it to <allocDevices>.  FileStore.getBlockSize() only exists since Java 10,
+  so we call it by name, and assume 4 KB blocks if it isn't there. */
+
+  static synchronized long allocDevice(
+    long device,                  // device number from "unix" attributes
+    Path path)                    // any file on that device
+  {
+    long block;                   // allocation unit in bytes
+    int i;                        // index variable
+    long[] known;                 // devices and block sizes as of now
+
+    known = allocDevices;         // another thread may have added it
+    for (i = 0; i < known.length; i += 2)
+      if (known[i] == device)
+        return(known[i + 1]);
+    try
+    {
+      block = ((Long) FileStore.class.getMethod("getBlockSize").invoke(
+        Files.getFileStore(path))).longValue();
+    }
+    catch (Exception e) { block = DEFAULT_BLOCK; } // no access
+    if (block < 1)
+      block = DEFAULT_BLOCK;
+    known = Arrays.copyOf(known, (known.length + 2));
+    known[known.length - 2] = device;
+    known[known.length - 1] = block;
+    allocDevices = known;         // publish the new array
+    return(block);
+  }
+
+  /* allocSize() method: return the disk space allocated to a file, which is
+  the file size rounded up to whole blocks of the file system's allocation
+  unit.  Java doesn't give us the number of blocks actually used (st_blocks
+  in Unix), so sparse files are counted as if all blocks were allocated.
+  Allocation units are found once for each device, and kept in a small array
+  that is replaced (not changed) when a new device is found, so that
+  searching threads don't need locks. */
+
+  long allocSize(
+    BasicFileAttributes attrs,    // file attributes, maybe with a device
+    Path path)                    // file path, for finding file system
+  {
+    long block;                   // allocation unit in bytes
+    long device;                  // device number from "unix" attributes
+    int i;                        // index variable
+    long[] known;                 // devices and block sizes as of now
+
+    block = options.allocBlock;   // forced allocation unit, if any
+    if ((block == 0) && (attrs instanceof ShowFolderSize1Attributes))
+    {
+      device = ((ShowFolderSize1Attributes) attrs).device();
+      known = allocDevices;       // one volatile read
+      for (i = 0; i < known.length; i += 2) // usually one or two devices
+        if (known[i] == device)
+        {
+          block = known[i + 1];
+          break;
+        }
+      if (block == 0)             // first file on this device
+        block = allocDevice(device, path);
+    }
+    else if (block == 0)          // no device numbers on this system
+      block = DEFAULT_BLOCK;
+    return(((attrs.size() + block - 1) / block) * block);
+  }
+
+  /* cancel() method: stop all searches by this scanner as soon as the folders
+  being listed now are done.  May be called from any thread, and can't be
+  undone: each scan() that is running, or called later, throws
+  CancellationException. */
+
+  public void cancel()
+  {
+    cancelFlag = true;
+  }
+
+  /* close() method: stop the threads for -p# or -q#, which otherwise wait for
+  more work until the program exits.  The scanner can't search after this. */
+
+  public void close()
+  {
+    cancelFlag = true;            // anything still running stops soon
+    if (listPool != null)         // threads stuck in a listing stay stuck
+      listPool.shutdownNow();
+    if (searchPool != null)
+      searchPool.shutdownNow();
+    if (searchPipeline != null)
+      searchPipeline.close();
+  }
+
+  /* errorReason() method: return a short reason for an exception, such as
+  "access denied" or the operating system's message */
+
+  static String errorReason(Throwable cause)
+  {
+    if (cause instanceof AccessDeniedException) // the most common reason
+      return("access denied");
+    if ((cause instanceof FileSystemException)
+      && (((FileSystemException) cause).getReason() != null))
+    {
+      return(((FileSystemException) cause).getReason()); // "I/O error", etc
+    }
+    if (cause.getMessage() != null)
+      return(cause.getMessage());
+    return(cause.getClass().getSimpleName()); // no message, only the type
+  }
+
+  /* estimateError() method: return the 95% confidence intervals for a
+  folder's estimated total bytes and total files (-e#), as the amount plus or
+  minus, or null if the totals are exact, or if too few subfolders were
+  sampled for an interval.  Only folders at or above the level where
+  subfolders were sampled can have estimates. */
+
+  public long[] estimateError(
+    ShowFolderSize1Data givenData) // data object for this folder/subfolder
+  {
+    double quantile;              // standard errors for 95% interval
+    double[] variance;            // variance of total bytes and total files
+
+    if ((givenData.search == null) // not from a search, or no estimates
+      || (givenData.search.estimateErrors == null))
+    {
+      return(null);
+    }
+    variance = (double[]) givenData.search.estimateErrors.get(givenData);
+    if (variance == null)         // exact, or nothing left out of sample
+      return(null);
+    if (variance[2] < ShowFolderSize1Sample.MIN_SAMPLES) // too few samples
+      return(null);
+    quantile = ShowFolderSize1Sample.quantile((int) variance[2]);
+    return(new long[] { Math.round(quantile * Math.sqrt(variance[0])),
+      Math.round(quantile * Math.sqrt(variance[1])) });
+  }
+
+  /* getSubfolders() method: return the data objects for a folder's
+  subfolders, sorted by <order> (one of the SORT_* constants), or in no
+  particular order for SORT_NONE.  These come from the hash table for the
+  folder, or are temporary data objects from the compact arrays (-a1) of the
+  search that found the folder.  Return an empty array if no subfolders were
+  kept.  Sorting is done here, only for folders that are printed or saved. */
+
+  public ShowFolderSize1Data[] getSubfolders(
+    ShowFolderSize1Data givenData, // data object for parent folder
+    int order)                    // SORT_NAME, SORT_SIZE, etc
+  {
+    int i;                        // index variable
+    ShowFolderSize1Data[] result; // our result
+    long start;                   // System.nanoTime() for -t option
+
+    if (givenData.sublist != null) // subfolders as separate objects?
+      result = (ShowFolderSize1Data[]) givenData.sublist.values().toArray(
+        new ShowFolderSize1Data[givenData.sublist.size()]); // not sorted
+    else if (givenData.treenode >= 0) // subfolders are in compact arrays
+    {
+      result = givenData.search.compactTree.getSubfolders(givenData.treenode);
+      for (i = 0; i < result.length; i ++) // for their own subfolders
+        result[i].search = givenData.search;
+    }
+    else                          // subfolders were discarded, or none
+      return(new ShowFolderSize1Data[0]);
+    if ((order != ShowFolderSize1Order.SORT_NONE) && (result.length > 1))
+    {
+      start = (progress != null) ? System.nanoTime() : 0;
+      Arrays.sort(result, ShowFolderSize1Order.get(order, options.caseFlag));
+      if (progress != null)       // timing for -t option
+        progress.sortNanos.addAndGet(System.nanoTime() - start);
+    }
+    return(result);
+  }
+
+  /* getTopFiles() method: return the largest files found for the -top
+  option by the search that returned <givenData>, largest first, as data
+  objects with a full path for a name and one file, or an empty array if
+  there was no -top option.  With no data object, return the largest from
+  all folders searched so far with searchRoot(), for the command line. */
+
+  public ShowFolderSize1Data[] getTopFiles()
+  {
+    return(getTopFiles(sharedSearch()));
+  }
+
+  public ShowFolderSize1Data[] getTopFiles(ShowFolderSize1Data givenData)
+  {
+    return(getTopFiles(givenData.search));
+  }
+
+  static ShowFolderSize1Data[] getTopFiles(ShowFolderSize1Search search)
+  {
+    if ((search == null) || (search.topFiles == null)) // nothing kept
+      return(new ShowFolderSize1Data[0]);
+    return(search.topFiles.sorted());
+  }
+
+  /* getTopFolders() method: return the largest folders found for the -top
+  option, largest first, the same as getTopFiles() */
+
+  public ShowFolderSize1Data[] getTopFolders()
+  {
+    return(getTopFolders(sharedSearch()));
+  }
+
+  public ShowFolderSize1Data[] getTopFolders(ShowFolderSize1Data givenData)
+  {
+    return(getTopFolders(givenData.search));
+  }
+
+  static ShowFolderSize1Data[] getTopFolders(ShowFolderSize1Search search)
+  {
+    if ((search == null) || (search.topFolders == null)) // nothing kept
+      return(new ShowFolderSize1Data[0]);
+    return(search.topFolders.sorted());
+  }
+
+  /* mergeErrors() method: add unreadable paths from a subfolder or listing
+  to a folder's list, up to the limit for each folder.  The counts are added
+  by the caller. */
+
+  static void mergeErrors(
+    ShowFolderSize1Data result,   // data object for parent folder
+    Vector paths)                 // unreadable paths to add, or null
+  {
+    int i;                        // index variable
+
+    if (paths == null)            // quick exit when nothing to add
+      return;
+    if (result.errlist == null)   // first errors for this folder
+      result.errlist = new Vector();
+    for (i = 0; (i < paths.size())
+      && (result.errlist.size() < ERROR_PATHS); i ++)
+    {
+      result.errlist.add(paths.get(i));
+    }
+  }
+
+  /* readAttributes() method: return the basic attributes for a file or
+  folder, following symbolic links, or <null> if they can't be read.  These
+  have the file key that uniquely identifies a folder (usually the device and
+  inode on UNIX) and the folder's modification time. */
+
+  public static BasicFileAttributes readAttributes(File givenFile)
+  {
+    try { return(readAttributes(givenFile.toPath())); }
+    catch (InvalidPathException ipe) { return(null); } // name was replaced
+  }
+
+  static BasicFileAttributes readAttributes(Path givenPath)
+  {
+    try { return(Files.readAttributes(givenPath,
+      BasicFileAttributes.class)); } // follow symbolic links
+    catch (IOException ioe) { return(null); } // no access or doesn't exist
+  }
+
+  /* readEntry() method: return the attributes for one entry in a folder
+  listing, with "unix" attributes if we need them, or null if they can't be
+  read.  Broken symbolic links, and files deleted since the listing, are
+  silently skipped.  Anything else is counted as an error for <result>. */
+
+  BasicFileAttributes readEntry(
+    Path next,                    // entry from a directory stream
+    ShowFolderSize1Data result)   // data object for errors in the listing
+  {
+    try
+    {
+      if (unixFlag)               // also need device, inode, number of links
+        return(new ShowFolderSize1Attributes(next));
+      return(Files.readAttributes(next, BasicFileAttributes.class));
+    }
+    catch (NoSuchFileException nsfe) { return(null); } // broken link, or gone
+    catch (IOException ioe)       // no access, I/O error, too many links, etc
+    {
+      addError(result, next, errorReason(ioe));
+      return(null);
+    }
+  }
+
+  /* resetCompact() method: start new compact arrays (-a1) for the folders
+  searched with searchRoot() after this, or do nothing without -a1.  Folders
+  searched earlier keep their own arrays, and folders searched at the same
+  time share one set.  Hard links (-h1) and the largest folders and files
+  (-top) are still shared by all searchRoot() calls. */
+
+  public synchronized void resetCompact()
+  {
+    if (options.compactFlag)      // subfolders kept in compact arrays?
+      sharedSearch = new ShowFolderSize1Search(options, 0, sharedSearch);
+  }
+
+  /* scan() method: search a folder and its subfolders, and return a data
+  object with the totals.  Throws FileNotFoundException if the folder doesn't
+  exist or isn't a folder, and CancellationException if cancel() was called
+  or the timeout ran out first.  Each scan() is a separate search, with its
+  own timeout, compact arrays (-a1), hard links (-h1), and largest folders
+  and files (-top), so a timeout doesn't stop the next scan(), and -h1
+  doesn't skip files counted by an earlier one. */
+
+  public ShowFolderSize1Data scan(File folder) throws FileNotFoundException
+  {
+    ShowFolderSize1Data result;   // our result
+    ShowFolderSize1Search search; // everything for this search only
+
+    search = new ShowFolderSize1Search(options, options.timeout, null);
+    result = searchRoot(folder, search);
+    search.linkSet = null;        // not needed after searching
+    if (search.timeoutFlag)       // time ran out before all were listed
+      throw new CancellationException("Timed out after " + options.timeout
+        + " ms: " + folder);
+    if (cancelFlag)               // stopped before all folders were listed
+      throw new CancellationException("Cancelled: " + folder);
+    if (result == null)
+      throw new FileNotFoundException("Folder does not exist: " + folder);
+    return(result);
+  }
+
+  /* searchCached() method: search a folder that hasn't changed since a
+  snapshot was saved (-load).  The folder's own totals come from the snapshot
+  without listing the folder, and subfolders named in the snapshot are
+  searched again, since they may have changed even when their parent folder
+  has not.  Called by searchList(). */
+
+  void searchCached(
+    int depth,                    // current subfolder search depth
+    Path canon,                   // folder path built from canonical root
+    ShowFolderSize1Data result,   // data object for this folder
+    Vector tasks)                 // parallel tasks for subfolders, or null
+  {
+    BasicFileAttributes attrs;    // type and time for one subfolder
+    ShowFolderSize1Data[] cachelist; // subfolders from snapshot
+    int i;                        // index variable
+    Path next;                    // next subfolder from snapshot
+
+    result.numbyte = result.cached.numbyte; // unchanged files in this folder
+    result.numfile = result.cached.numfile;
+    if (depth < options.searchDepth) // are we searching subfolders?
+    {
+      cachelist = getSubfolders(result.cached, ShowFolderSize1Order.SORT_NONE);
+      for (i = 0; i < cachelist.length; i ++)
+      {
+        try { next = canon.resolve(cachelist[i].name); } // same as listing
+        catch (InvalidPathException ipe) // name from snapshot won't convert
+        {
+          addError(result, (canon + File.separator + cachelist[i].name),
+            "name can't be converted");
+          continue;
+        }
+        attrs = readAttributes(next); // still there and still a folder?
+        if ((attrs != null) && attrs.isDirectory())
+          searchSubfolder(depth + 1, next, attrs, result, tasks);
+      }
+    }
+  }
+
+  /* searchContents() method: list the contents of a folder with the original
+  java.io.File methods, which make separate system calls to check if each
+  entry is a folder or a file, and then to get the file size.  Called by
+  searchList() for the -f0 option.  Subfolders need one more call for their
+  file keys (loop detection) and modification times (snapshots). */
+
+  void searchContents(
+    int depth,                    // current subfolder search depth
+    Path canon,                   // folder path built from canonical root
+    ShowFolderSize1Data result,   // data object for this folder
+    Vector tasks)                 // parallel tasks for subfolders, or null
+  {
+    long childStart, childTime;   // nanoseconds searching subfolders (serial)
+    File[] contents;              // unsorted contents of folder
+    int i;                        // index variable
+    long listTime;                // nanoseconds listing this folder
+    File next;                    // next File object from <contents>
+    Path nextPath;                // same subfolder for searching, or null
+    long start;                   // System.nanoTime() when we started
+
+    childTime = 0;                // no timing unless -t option
+    start = (progress != null) ? System.nanoTime() : 0;
+    contents = canon.toFile().listFiles(); // no filter, not sorted
+    listTime = (progress != null) ? (System.nanoTime() - start) : 0;
+    if (contents == null)         // for protected operating system folders
+    {
+      addError(result, canon, "can't list folder"); // java.io has no reason
+      contents = new File[0];     // replace with an empty array
+    }
+    for (i = 0; i < contents.length; i ++) // for each file or subfolder
+    {
+      next = contents[i];         // get next File object from <contents>
+      if (next.isDirectory() && (depth < options.searchDepth)) // subfolder?
+      {
+        nextPath = toPath(next, result); // null if name can't be converted
+        if (nextPath == null) { /* counted as an error */ }
+        else if ((progress != null) && (tasks == null)) // serial timing?
+        {
+          childStart = System.nanoTime(); // don't count subfolder's time
+          searchSubfolder(depth + 1, nextPath, readAttributes(nextPath),
+            result, tasks);
+          childTime += System.nanoTime() - childStart;
+        }
+        else                      // no timing, or subfolder is a new task
+          searchSubfolder(depth + 1, nextPath, readAttributes(nextPath),
+            result, tasks);
+      }
+      else if (next.isFile() && ((excludeFilter != null)
+        || (includeFilter != null)) && skipFile(next.getName(), next))
+      {
+        /* file excluded by name, or not included */
+      }
+      else if (next.isFile())     // is this a normal file?
+      {
+        long size = next.length(); // get file size only once
+        result.numbyte += size;   // add file size to folder total
+        result.numfile ++;        // one more file in this folder
+        if (options.detailFlag)   // file size histogram and file type?
+        {
+          if (result.numdetail == null) // first file in this folder
+            result.numdetail = new ShowFolderSize1Detail();
+          result.numdetail.addFile(next.getName(), size);
+        }
+        if (result.search.topFiles != null) // one of the largest files?
+          result.search.topFiles.offer(size, 1, next);
+      }
+      else { /* silently ignore non-file objects */ }
+    }
+    if (progress != null)         // java.io.File calls are all "attributes"
+      progress.addFolder(result.numfile, result.numbyte, listTime,
+        (System.nanoTime() - start - listTime - childTime));
+  }
+
+  /* searchEntry() method: add one file to a folder's totals, or search one
+  subfolder, from a directory stream or a timed listing.  Return the
+  nanoseconds spent in a subfolder for the -t option, when the search is
+  serial, so that it isn't counted as listing time for this folder. */
+
+  long searchEntry(
+    int depth,                    // current subfolder search depth
+    Path next,                    // one entry in this folder
+    BasicFileAttributes attrs,    // type and size of entry, or null
+    ShowFolderSize1Data result,   // data object for this folder
+    Vector tasks)                 // parallel tasks for subfolders, or null
+  {
+    long childStart;              // System.nanoTime() for serial subfolder
+
+    if (attrs == null) { /* skip entries without attributes */ }
+    else if (attrs.isDirectory() && (depth < options.searchDepth))
+    {
+      if ((progress != null) && (tasks == null)) // timing, serial search?
+      {
+        childStart = System.nanoTime(); // don't count subfolder's time
+        searchSubfolder(depth + 1, next, attrs, result, tasks);
+        return(System.nanoTime() - childStart);
+      }
+      else                        // no timing, or subfolder is a new task
+        searchSubfolder(depth + 1, next, attrs, result, tasks);
+    }
+    else if (attrs.isRegularFile() && ((excludeFilter != null)
+      || (includeFilter != null)) && skipFile(next.getFileName()
+      .toString(), next))
+    {
+      /* file excluded by name, or not included */
+    }
+    else if ((result.search.linkSet != null) && attrs.isRegularFile()
+      && (((ShowFolderSize1Attributes) attrs).links() > 1)
+      && (result.search.linkSet.add(((ShowFolderSize1Attributes) attrs)
+      .device(), ((ShowFolderSize1Attributes) attrs).inode()) == false))
+    {
+      /* hard link to a file that has already been counted */
+    }
+    else if (attrs.isRegularFile()) // is this a normal file?
+    {
+      result.numbyte += attrs.size(); // add file size to folder total
+      result.numfile ++;          // one more file in this folder
+      if (options.allocFlag)      // also add disk space allocated?
+        result.numalloc += allocSize(attrs, next);
+      if (options.detailFlag)     // file size histogram and file type?
+      {
+        if (result.numdetail == null) // first file in this folder
+          result.numdetail = new ShowFolderSize1Detail();
+        result.numdetail.addFile(next.getFileName().toString(),
+          attrs.size());
+      }
+      if (result.search.topFiles != null) // one of the largest files?
+        result.search.topFiles.offer(attrs.size(), 1, next);
+    }
+    else { /* silently ignore non-file objects */ }
+    return(0);
+  }
+
+  /* searchFinish() method: called when a folder and all of its subfolders
+  have been searched.  Release what was only needed while searching, copy
+  totals into compact arrays (-a1), offer the folder as one of the largest
+  (-top), and give it to the visitor, if there is one.  The pipelined search
+  calls this from its own thread, in whatever order folders finish, and the
+  parallel search from any thread in the pool. */
+
+  void searchFinish(
+    Path canon,                   // folder path built from canonical root
+    ShowFolderSize1Data result)   // data object with totals for subfolders
+  {
+    ShowFolderSize1Top topFolders; // largest folders for -top, or null
+
+    result.cached = null;         // no longer needed after subfolders done
+    if (options.estimateLevel == 0) // sampled subfolders check keys later
+      result.filekey = null;
+    if (result.treenode >= 0)     // copy totals into compact arrays?
+      result.search.compactTree.setTotals(result.treenode, result);
+    topFolders = result.search.topFolders;
+    if (topFolders != null)       // one of the largest folders?
+    {
+      if (options.topAlone)       // folder by itself (-m0)
+        topFolders.offer(result.numbyte, result.numfile, canon);
+      else                        // folder plus subfolders
+        topFolders.offer((result.numbyte + result.subbyte), (result.numfile
+          + result.subfile), canon);
+    }
+    if (options.visitor != null)  // caller wants each folder as it finishes
+      options.visitor.folder(canon.toFile(), result);
+  }
+
+  /* searchFolder() method: given a folder, return a data object with
+  information about that folder.  Subfolders depend upon the search depth.
+  When there is a fork-join pool, subfolders are searched as parallel tasks,
+  and we wait for all of them before adding their totals in the original
+  listing order.  For the last level listed completely with -e#, subfolders
+  are saved to be sampled afterwards.
+
+  Only the top-level folder is canonical; see searchRoot().  Subfolder paths
+  are built from their parent's path plus the name in the parent's listing, so
+  a subfolder reached through a symbolic link is reported with the link's name.
+  The file key is kept while searching, so that descendants can check for
+  loops, and is released afterwards.  The same is true for a folder's data
+  from a loaded snapshot (-load), which is used instead of listing the folder
+  if the folder's modification time hasn't changed. */
+
+  ShowFolderSize1Data searchFolder(
+    int depth,                    // current subfolder search depth
+    Path canon,                   // folder path built from canonical root
+    ShowFolderSize1Data result)   // data object with name, key, time, parent
+  {
+    int i;                        // index variable
+    Vector tasks;                 // parallel tasks for subfolders, or null
+
+    tasks = ((searchPool != null) || (depth == (options.estimateLevel - 1)))
+      ? new Vector() : null;      // parallel or sampled subfolders
+    searchList(depth, canon, result, tasks);
+    if (depth == (options.estimateLevel - 1)) // subfolders are sampled later
+      ShowFolderSize1Sample.find(this, result).add(result, tasks);
+    else if ((tasks != null) && (tasks.size() > 0)) // parallel subfolders?
+    {
+      ForkJoinTask.invokeAll(tasks); // fork all, wait until they finish
+      for (i = 0; i < tasks.size(); i ++) // add totals in listing order
+        addSubfolder(result, (ShowFolderSize1Data)
+          ((ShowFolderSize1Task) tasks.get(i)).join());
+    }
+    searchFinish(canon, result);  // totals are complete
+    return(result);               // give caller whatever we could find
+  }
+
+  /* searchList() method: list one folder, the folder's own files, plus
+  subfolders that are either searched now (serial) or added to a list of
+  tasks (parallel or pipelined).  Nothing is listed after cancel() or once
+  the timeout for this search has run out, so every kind of search ends
+  quickly.  A data object that isn't from a search (-serve) belongs to the
+  command line's search.
+
+  Subfolders beyond the report depth won't be printed, so unless the -k1
+  option was given, a folder at that depth has no list of subfolders (the
+  keep depth, or zero for -top).  Its subfolders are added to the folder's
+  totals and then discarded.  With compact arrays (-a1), there are no
+  subfolder lists.  The data object is temporary and only collects totals,
+  which are copied into the folder's node when we are done. */
+
+  public void searchList(
+    int depth,                    // current subfolder search depth
+    Path canon,                   // folder path built from canonical root
+    ShowFolderSize1Data result,   // data object with name, key, time, parent
+    Vector tasks)                 // tasks for subfolders, or null for serial
+  {
+    ShowFolderSize1Search search; // search that this folder belongs to
+
+    if (result.search == null)    // not from a search, only these files
+      result.search = sharedSearch();
+    search = result.search;
+    if (cancelFlag || search.timedOut()) // stopped: leave this folder empty
+      return;
+    if (search.compactTree != null) // keep subfolders in compact arrays?
+    {
+      if (depth <= options.keepDepth) // is this folder kept or reported?
+        result.treenode = search.compactTree.addNode(((result.parent
+          == null) ? -1 : result.parent.treenode), result.name);
+    }
+    else if (depth < options.keepDepth) // are subfolders kept or reported?
+      result.sublist = new HashMap(); // data for subfolders by name
+    if (progress != null)         // current folder for progress lines
+      progress.path = canon;
+    if ((result.cached != null) && (result.modified != 0)
+      && (search.topFiles == null) && (options.allocFlag == false)
+      && (options.detailFlag == false) && (search.linkSet == null)
+      && (excludeFilter == null)
+      && (includeFilter == null)
+      && (result.modified == result.cached.modified)
+      && ((depth < loadDepth) || (depth >= options.searchDepth)))
+    {
+      searchCached(depth, canon, result, tasks); // folder hasn't changed
+      if (progress != null)       // counts for progress, no listing time
+        progress.addFolder(result.numfile, result.numbyte, 0, 0);
+    }
+    else if (options.nioFlag || options.allocFlag || options.linkFlag
+      || options.oneFlag || (options.listTimeout > 0)) // one read per file?
+    {
+      searchStream(depth, canon, result, tasks);
+    }
+    else                          // separate java.io.File calls per file
+      searchContents(depth, canon, result, tasks);
+  }
+
+  /* searchRoot() method: given a folder from the command line, return a data
+  object with information about that folder.  Return <null> for errors.  This
+  is the only place where we ask for a real (canonical) name, because
+  resolving every component of a path is an expensive system call.
+  Subfolders are built from this path.  For -e#, sampled subfolders are
+  searched after all levels above them.
+
+  Without a search object, all folders are one search for the command line:
+  a file with hard links in two folders is counted only once (-h1), and -top
+  finds the largest in all folders.  There is no timeout. */
+
+  public ShowFolderSize1Data searchRoot(
+    File givenFolder)             // folder object to search
+  {
+    return(searchRoot(givenFolder, sharedSearch()));
+  }
+
+  ShowFolderSize1Data searchRoot(
+    File givenFolder,             // folder object to search
+    ShowFolderSize1Search search) // search that this folder belongs to
+  {
+    BasicFileAttributes attrs;    // file key and time for folder, or null
+    File canon;                   // real (canonical) folder
+    Path folder;                  // same folder for searching
+    ShowFolderSize1Data result;   // data object for folder
+    ShowFolderSize1Sample sample; // sampled subfolders for -e#, or null
+
+    /* First we need the real (canonical) name of the folder. */
+
+    try { canon = givenFolder.getCanonicalFile(); }
+    catch (IOException ioe) { canon = null; }
+    if ((canon == null)           // if we can't get real File object
+      || (canon.exists() == false) // if File object doesn't exist
+      || (canon.isDirectory() == false)) // if it isn't a folder
+    {
+      return(null);               // no error message, just return nothing
+    }
+
+    /* We have a real File object that is a directory (folder).  Everything
+    below it is searched as java.nio.file paths, which keep the exact bytes
+    of names that java.io.File can't decode. */
+
+    try { folder = canon.toPath(); }
+    catch (InvalidPathException ipe) { return(null); } // name was replaced
+    attrs = readAttributes(folder); // device and inode, where supported
+    result = new ShowFolderSize1Data(); // start with empty result
+    result.search = search;       // for subfolders and compact arrays
+    if (options.oneFlag)          // device for subfolders to compare with
+    {
+      try { result.device = new ShowFolderSize1Attributes(folder).device(); }
+      catch (IOException ioe) { /* subfolders won't match, not searched */ }
+    }
+    if (loadRoots != null)        // same folder from a loaded snapshot?
+      result.cached = (ShowFolderSize1Data) loadRoots.get(canon.getPath());
+    if (attrs != null)            // no key or time if we can't read these
+    {
+      result.filekey = attrs.fileKey(); // for loop detection by descendants
+      result.modified = attrs.lastModifiedTime().toMillis();
+    }
+    result.name = canon.getName(); // correct and official folder name
+    if ((result.name == null) || (result.name.length() == 0))
+      result.name = canon.getPath(); // may be root folder of a drive
+    result.path = canon.getPath(); // full path only for top-level folders
+
+    sample = null;                // assume exact totals
+    if (options.estimateLevel > 0) // sample subfolders below some level?
+    {
+      sample = new ShowFolderSize1Sample(this, options.estimateSeconds);
+      search.estimateSamples.put(result, sample);
+    }
+
+    if (searchPool != null)       // parallel search with fork-join pool?
+    {
+      result = (ShowFolderSize1Data) searchPool.invoke(new ShowFolderSize1Task(
+        this, 0, folder, result));
+    }
+    else if (searchPipeline != null) // pipelined search for network drives?
+      return(searchPipeline.search(folder, result));
+    else                          // serial search on this thread
+      result = searchFolder(0, folder, result);
+
+    if (sample != null)           // search sampled subfolders, estimate rest
+    {
+      search.estimateSamples.remove(result);
+      sample.run();
+    }
+    return(result);
+  }
+
+  /* searchStream() method: list the contents of a folder with a java.nio.file
+  directory stream, reading all basic attributes for each entry in one system
+  call.  Symbolic links are followed, the same as java.io.File.  A folder that
+  can't be listed, or entries whose attributes can't be read, are counted as
+  errors, but broken links are silently ignored.  With a listing timeout
+  (-wt=#), the whole folder is read on another thread first.  Called by
+  searchList() for the default -f1 option. */
+
+  void searchStream(
+    int depth,                    // current subfolder search depth
+    Path canon,                   // folder path built from canonical root
+    ShowFolderSize1Data result,   // data object for this folder
+    Vector tasks)                 // parallel tasks for subfolders, or null
+  {
+    BasicFileAttributes attrs;    // type and size of one entry
+    long childTime;               // nanoseconds searching subfolders (serial)
+    int i;                        // index variable
+    ShowFolderSize1Listing listing; // entries read on another thread, or null
+    Path next;                    // next Path object from directory stream
+    long start;                   // System.nanoTime() when we started
+    long statStart, statTime;     // nanoseconds reading attributes
+
+    childTime = statTime = 0;     // no timing unless -t option
+    start = (progress != null) ? System.nanoTime() : 0;
+    if (options.listTimeout > 0)  // list on another thread, with time limit?
+    {
+      listing = searchTimed(canon, result);
+      if (listing != null)        // null if folder didn't answer in time
+      {
+        statTime = listing.statTime;
+        for (i = 0; i < listing.paths.size(); i ++)
+          childTime += searchEntry(depth, (Path) listing.paths.get(i),
+            (BasicFileAttributes) listing.attrs.get(i), result, tasks);
+      }
+    }
+    else                          // list as a stream on this thread
+    {
+      try (DirectoryStream<Path> stream = Files.newDirectoryStream(
+        canon))                   // no filter, not sorted
+      {
+        Iterator iter = stream.iterator(); // entries as they are read
+        while (iter.hasNext())    // for each file or subfolder
+        {
+          next = (Path) iter.next(); // get next Path object from stream
+          statStart = (progress != null) ? System.nanoTime() : 0;
+          attrs = readEntry(next, result); // null if can't be read
+          if (progress != null)   // timing for -t option
+            statTime += System.nanoTime() - statStart;
+          childTime += searchEntry(depth, next, attrs, result, tasks);
+        }
+      }
+      catch (DirectoryIteratorException die) // keep what we have so far
+      {
+        addError(result, canon, errorReason(die.getCause()));
+      }
+      catch (IOException ioe)     // for protected operating system folders
+      {
+        addError(result, canon, errorReason(ioe));
+      }
+    }
+    if (progress != null)         // listing is whatever isn't attributes
+      progress.addFolder(result.numfile, result.numbyte, (System.nanoTime()
+        - start - statTime - childTime), statTime);
+  }
+
+  /* searchSubfolder() method: search a subfolder found by searchContents() or
+  searchStream().  With a fork-join pool, the subfolder becomes a new task
+  that searchFolder() waits for, and in a pipeline, a task that goes on the
+  pipeline's queue.  Otherwise, we recursively search right now.
+
+  A subfolder with the same file key (device and inode on UNIX) as itself or
+  any of its parent folders is a loop created by symbolic links, and is
+  silently ignored, the same as other folders we can't search.  File keys are
+  not available on all systems, in which case the search depth limits loops.
+  Subfolders that match -exclude, or are on another device for -o1, are also
+  ignored here, before they are listed or counted. */
+
+  public void searchSubfolder(
+    int newdepth,                 // search depth for the subfolder
+    Path next,                    // subfolder path to search
+    BasicFileAttributes attrs,    // file key and time for subfolder, or null
+    ShowFolderSize1Data result,   // data object for parent folder
+    Vector tasks)                 // parallel tasks for subfolders, or null
+  {
+    ShowFolderSize1Data above;    // one of the parent folders
+    ShowFolderSize1Data subdata;  // data object for subfolder
+
+    if ((excludeFilter != null) && excludeFilter.matches(next.getFileName()
+      .toString(), next))         // skip folder without listing it?
+    {
+      return;
+    }
+    if (options.oneFlag)          // same device as parent folder?
+    {
+      if ((attrs instanceof ShowFolderSize1Attributes) == false)
+      {
+        try { attrs = new ShowFolderSize1Attributes(next); }
+        catch (IOException ioe)   // can't check, so skip it
+        {
+          addError(result, next, errorReason(ioe));
+          return;
+        }
+      }
+      if (((ShowFolderSize1Attributes) attrs).device() != result.device)
+        return;                   // another file system (mount point)
+    }
+    subdata = new ShowFolderSize1Data(); // start with empty result
+    subdata.device = result.device; // same device for -o1
+    if (attrs != null)            // no key or time if we can't read these
+    {
+      subdata.filekey = attrs.fileKey(); // device and inode, where supported
+      subdata.modified = attrs.lastModifiedTime().toMillis();
+    }
+    if (subdata.filekey != null)  // can we check for loops?
+    {
+      for (above = result; above != null; above = above.parent)
+        if (subdata.filekey.equals(above.filekey)) // same as a parent?
+          return;                 // yes, don't search a loop
+    }
+    subdata.name = next.getFileName().toString(); // name from listing
+    subdata.parent = result;      // link back to our parent folder
+    subdata.search = result.search; // same search as parent folder
+    if ((result.cached != null) && (result.cached.sublist != null))
+      subdata.cached = (ShowFolderSize1Data) result.cached.sublist.get(
+        subdata.name);            // same subfolder from loaded snapshot
+
+    if (tasks != null)            // parallel or pipelined: as a new task
+      tasks.add(new ShowFolderSize1Task(this, newdepth, next, subdata));
+    else                          // serial: recursively search right now
+      addSubfolder(result, searchFolder(newdepth, next, subdata));
+  }
+
+  /* searchTimed() method: read a folder's entries and their attributes on
+  another thread (-wt=#), waiting no longer than the listing timeout.  Return
+  the listing, or null if the folder didn't answer in time, which is counted
+  as an error.  A thread stuck in the operating system can't be stopped, so
+  it is left waiting, and anything it finds later is thrown away. */
+
+  ShowFolderSize1Listing searchTimed(
+    Path canon,                   // folder path built from canonical root
+    ShowFolderSize1Data result)   // data object for this folder
+  {
+    Future future;                // listing on a thread from our pool
+    ShowFolderSize1Listing listing; // entries and attributes
+
+    listing = new ShowFolderSize1Listing(this, canon);
+    try
+    {
+      future = listPool.submit(listing);
+      future.get(options.listTimeout, TimeUnit.MILLISECONDS);
+    }
+    catch (TimeoutException te)   // stuck network mount, or very slow
+    {
+      addError(result, canon, ("no answer after " + options.listTimeout
+        + " ms"));
+      return(null);
+    }
+    catch (ExecutionException ee) // not expected, listing catches errors
+    {
+      addError(result, canon, errorReason(ee.getCause()));
+      return(null);
+    }
+    catch (InterruptedException ie) { return(null); } // scanner was closed
+    catch (RejectedExecutionException ree) { return(null); } // same
+    result.numerror += listing.found.numerror; // errors found while listing
+    mergeErrors(result, listing.found.errlist);
+    return(listing);
+  }
+
+  /* setLoaded() method: folder totals from a snapshot file (-load), as data
+  objects for top-level folders by canonical path, with the search depth
+  when the snapshot was saved.  Folders that haven't changed since then are
+  not listed again.  Call this before searching. */
+
+  public void setLoaded(Map roots, int depth)
+  {
+    loadDepth = depth;
+    loadRoots = roots;
+  }
+
+  /* sharedSearch() method: return the one search for all folders from
+  searchRoot() without a search object, which is created the first time,
+  since programs that only call scan() don't need it */
+
+  synchronized ShowFolderSize1Search sharedSearch()
+  {
+    if (sharedSearch == null)     // first folder from the command line
+      sharedSearch = new ShowFolderSize1Search(options, 0, null);
+    return(sharedSearch);
+  }
+
+  /* skipFile() method: return true if a file should not be counted, because
+  its name matches an -exclude pattern, or doesn't match any -include
+  pattern.  The caller checks if there are any patterns before calling us. */
+
+  boolean skipFile(
+    String name,                  // file name without path
+    Object path)                  // full path as File or Path object
+  {
+    if ((excludeFilter != null) && excludeFilter.matches(name, path))
+      return(true);               // excluded by name or path
+    if ((includeFilter != null) && (includeFilter.matches(name, path)
+      == false))
+    {
+      return(true);               // not one of the included files
+    }
+    return(false);                // count this file
+  }
+
+  /* startProgress() method: count folders, files, and times for progress
+  lines (-t) from all of this scanner's threads, and return the object that
+  a timer calls to print them.  Call this before searching. */
+
+  public ShowFolderSize1Progress startProgress()
+  {
+    progress = new ShowFolderSize1Progress(searchPool, searchPipeline);
+    return(progress);
+  }
+
+  /* toPath() method: return the java.nio.file path for a java.io.File, or
+  null if the name can't be converted, which is counted as an error for
+  <result>.  This happens when java.io.File has replaced bytes that aren't
+  valid in the file name encoding, such as non-ASCII names in the POSIX (C)
+  locale, so the name no longer matches anything on disk. */
+
+  public static Path toPath(File file, ShowFolderSize1Data result)
+  {
+    try { return(file.toPath()); }
+    catch (InvalidPathException ipe)
+    {
+      addError(result, file, "name can't be converted");
+      return(null);
+    }
+  }
+
+} // end of ShowFolderSize1Scanner class
@@ -0,0 +1,92 @@
+/*
+  ShowFolderSize1Search class
+  Copyright (c) 2014 by Keith Fenske.  Apache License or GNU GPL.
+
+  Everything that belongs to one search instead of to the scanner: compact
+  arrays (-a1), hard links already seen (-h1), the largest folders and files
+  (-top), samples for estimates (-e#), and the timeout.  Each call to scan()
+  has its own, so that searches by the same scanner, one after another or at
+  the same time, don't change each other's results.  Every data object found
+  by a search refers back to it, which is how getSubfolders() finds the right
+  compact arrays for a folder from an earlier search.
+
+  The command line searches all of its folders with searchRoot() instead, as
+  one search, so that -h1 counts a file linked from two folders only once
+  (like "du") and -top shows the largest from all folders.  It calls
+  resetCompact() for new compact arrays, which makes a new search object that
+  shares everything else with the old one.
+*/
+
+package io.github.kwfenske.showfoldersize;
+
+import java.util.*;               // lists, maps, vectors
+
+class ShowFolderSize1Search
+{
+  /* class variables */
+
+  ShowFolderSize1Tree compactTree; // compact arrays for these folders (-a1)
+  long deadline;                  // System.nanoTime() when time runs out
+  Map estimateErrors;             // variance of estimated totals, or null
+  Map estimateSamples;            // sampler for each top-level folder (-e#)
+  ShowFolderSize1Links linkSet;   // device and inode seen for -h1, or null
+  long timeout;                   // milliseconds for this search, 0 for none
+  volatile boolean timeoutFlag;   // true if stopped because time ran out
+  ShowFolderSize1Top topFiles;    // largest files for -top, or null
+  ShowFolderSize1Top topFolders;  // largest folders for -top, or null
+
+  /* constructor: start a new search, with whatever the options need.  If
+  there is an older search, everything except the compact arrays is shared
+  with it. */
+
+  public ShowFolderSize1Search(
+    ShowFolderSize1Options options, // options for this scanner
+    long timeout,                 // milliseconds for this search, or 0
+    ShowFolderSize1Search older)  // older search to share with, or null
+  {
+    this.compactTree = options.compactFlag ? new ShowFolderSize1Tree(
+      options.allocFlag, options.detailFlag) : null;
+    this.deadline = System.nanoTime() + (timeout * 1000000L);
+    this.timeout = timeout;
+    this.timeoutFlag = false;     // time hasn't run out yet
+
+    if (older != null)            // same links, largest, and samples
+    {
+      this.estimateErrors = older.estimateErrors;
+      this.estimateSamples = older.estimateSamples;
+      this.linkSet = older.linkSet;
+      this.topFiles = older.topFiles;
+      this.topFolders = older.topFolders;
+      return;
+    }
+    this.estimateErrors = this.estimateSamples = null; // no estimates
+    this.linkSet = null;          // no devices or inodes seen yet
+    this.topFiles = this.topFolders = null;
+    if (options.estimateLevel > 0) // sample subfolders below some level?
+    {
+      this.estimateErrors = Collections.synchronizedMap(new IdentityHashMap());
+      this.estimateSamples = Collections.synchronizedMap(new IdentityHashMap());
+    }
+    if (options.linkFlag)         // count each device and inode only once?
+      this.linkSet = new ShowFolderSize1Links();
+    if (options.topCount > 0)     // only largest folders, no normal report?
+    {
+      this.topFiles = new ShowFolderSize1Top(options.topCount);
+      this.topFolders = new ShowFolderSize1Top(options.topCount);
+    }
+  }
+
+  /* timedOut() method: return true if this search has a timeout and the
+  time has run out.  Once it has, it stays that way. */
+
+  boolean timedOut()
+  {
+    if ((timeout > 0) && (timeoutFlag == false)
+      && ((System.nanoTime() - deadline) > 0))
+    {
+      timeoutFlag = true;
+    }
+    return(timeoutFlag);
+  }
+
+} // end of ShowFolderSize1Search class
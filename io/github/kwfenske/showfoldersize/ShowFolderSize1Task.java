@@ -0,0 +1,50 @@
+/*
+  ShowFolderSize1Task class
+  Copyright (c) 2014 by Keith Fenske.  Apache License or GNU GPL.
+
+  A fork-join task to search one subfolder, for the -p# option.  The task calls
+  the same searchFolder() method as the serial search, which then forks more
+  tasks for its own subfolders.  Idle threads steal waiting tasks.  The -q#
+  pipeline also uses these as items on its queue, without calling compute().
+*/
+
+package io.github.kwfenske.showfoldersize;
+
+import java.nio.file.*;           // directory streams, paths
+import java.util.concurrent.*;    // fork-join thread pools
+
+class ShowFolderSize1Task extends RecursiveTask
+{
+  /* class constants */
+
+  private static final long serialVersionUID = 1L; // never serialized
+
+  /* class variables */
+
+  ShowFolderSize1Data data;       // data object with name, key, time, parent
+  int depth;                      // subfolder search depth for this task
+  Path folder;                    // folder path to search
+  ShowFolderSize1Scanner scanner; // scanner that created this task
+
+  /* constructor */
+
+  public ShowFolderSize1Task(
+    ShowFolderSize1Scanner scanner, // scanner that created this task
+    int depth,                    // subfolder search depth for this task
+    Path folder,                  // folder path to search
+    ShowFolderSize1Data data)     // data object with name, key, time, parent
+  {
+    this.data = data;             // save caller's data object
+    this.depth = depth;           // save caller's search depth
+    this.folder = folder;         // save caller's folder object
+    this.scanner = scanner;
+  }
+
+  /* compute() method: called by the fork-join pool to do the real work */
+
+  protected Object compute()
+  {
+    return(scanner.searchFolder(depth, folder, data));
+  }
+
+} // end of ShowFolderSize1Task class
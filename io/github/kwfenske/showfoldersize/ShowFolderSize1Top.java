@@ -0,0 +1,161 @@
+/*
+  ShowFolderSize1Top class
+  Copyright (c) 2014 by Keith Fenske.  Apache License or GNU GPL.
+
+  The largest folders or files for the -top option, in a bounded min-heap.
+  The smallest entry is at the top of the heap and is replaced when a larger
+  one is offered.  Most offers are rejected by comparing sizes, before any
+  full path name is created, and without a lock: once the heap is full, the
+  smallest size is copied into a volatile variable, which only grows, so many
+  search threads can check it at the same time.  Equal sizes are ordered by
+  path name, so the result is the same for serial and parallel searches.
+*/
+
+package io.github.kwfenske.showfoldersize;
+
+import java.util.*;               // lists, maps, vectors
+
+class ShowFolderSize1Top
+{
+  /* class variables */
+
+  int count;                      // number of entries in <heap>
+  ShowFolderSize1Data[] heap;     // heap entries: path, bytes, files
+  volatile long minimum;          // smallest size when heap is full, or -1
+
+  /* constructor */
+
+  public ShowFolderSize1Top(int limit)
+  {
+    this.count = 0;               // empty heap
+    this.heap = new ShowFolderSize1Data[limit]; // never grows
+    this.minimum = -1;            // accept everything until heap is full
+  }
+
+  /* compare() method: order of two entries, smallest size first, and for
+  equal sizes, the later path name is considered smaller */
+
+  static int compare(
+    long size1, String path1,     // first size and path
+    long size2, String path2)     // second size and path
+  {
+    if (size1 != size2)
+      return((size1 < size2) ? -1 : 1);
+    return(path2.compareTo(path1)); // reverse order of names
+  }
+
+  /* offer() method: add a folder or file if it is one of the largest.  The
+  most common case, too small, returns without taking the lock. */
+
+  void offer(
+    long size,                    // number of bytes
+    long files,                   // number of files
+    Object pathObject)            // File or Path, converted only if needed
+  {
+    if (size < minimum)           // too small, the most common case
+      return;
+    insert(size, files, pathObject); // may be one of the largest
+  }
+
+  /* insert() method: add a folder or file to the heap, unless it is smaller
+  than the smallest entry in a full heap, and update <minimum> */
+
+  synchronized void insert(
+    long size,                    // number of bytes
+    long files,                   // number of files
+    Object pathObject)            // File or Path, converted only if needed
+  {
+    ShowFolderSize1Data entry;    // new heap entry
+    String path;                  // full path name
+
+    if ((count == heap.length) && (size < heap[0].numbyte))
+      return;                     // another thread added a larger entry
+    path = pathObject.toString(); // now we need the name
+    if ((count == heap.length) && (compare(size, path, heap[0].numbyte,
+      heap[0].name) <= 0))
+    {
+      return;                     // same size, but later name
+    }
+    entry = new ShowFolderSize1Data();
+    entry.name = path;
+    entry.numbyte = size;
+    entry.numfile = files;
+    if (count < heap.length)      // room for another entry?
+    {
+      heap[count] = entry;        // add at bottom and sift up
+      siftUp(count ++);
+    }
+    else                          // replace smallest entry and sift down
+    {
+      heap[0] = entry;
+      siftDown(0);
+    }
+    if (count == heap.length)     // smallest size can only grow from here
+      minimum = heap[0].numbyte;
+  }
+
+  /* siftDown() method: move an entry down until the heap is in order */
+
+  void siftDown(int index)
+  {
+    int child;                    // index of smaller child
+    ShowFolderSize1Data swap;     // temporary for exchanging entries
+
+    while ((child = (index * 2) + 1) < count)
+    {
+      if (((child + 1) < count) && (compare(heap[child + 1].numbyte,
+        heap[child + 1].name, heap[child].numbyte, heap[child].name) < 0))
+      {
+        child ++;                 // right child is smaller
+      }
+      if (compare(heap[index].numbyte, heap[index].name, heap[child]
+        .numbyte, heap[child].name) <= 0)
+      {
+        break;                    // parent is smaller than both children
+      }
+      swap = heap[index]; heap[index] = heap[child]; heap[child] = swap;
+      index = child;
+    }
+  }
+
+  /* siftUp() method: move an entry up until the heap is in order */
+
+  void siftUp(int index)
+  {
+    int parent;                   // index of parent entry
+    ShowFolderSize1Data swap;     // temporary for exchanging entries
+
+    while (index > 0)
+    {
+      parent = (index - 1) / 2;
+      if (compare(heap[parent].numbyte, heap[parent].name, heap[index]
+        .numbyte, heap[index].name) <= 0)
+      {
+        break;                    // parent is smaller than child
+      }
+      swap = heap[index]; heap[index] = heap[parent]; heap[parent] = swap;
+      index = parent;
+    }
+  }
+
+  /* sorted() method: return the entries with the largest first */
+
+  synchronized ShowFolderSize1Data[] sorted()
+  {
+    ShowFolderSize1Data[] result; // our result
+
+    result = Arrays.copyOf(heap, count);
+    Arrays.sort(result, new Comparator()
+    {
+      public int compare(Object a, Object b)
+      {
+        ShowFolderSize1Data x = (ShowFolderSize1Data) a;
+        ShowFolderSize1Data y = (ShowFolderSize1Data) b;
+        return(ShowFolderSize1Top.compare(y.numbyte, y.name, x.numbyte,
+          x.name));               // descending order
+      }
+    });
+    return(result);
+  }
+
+} // end of ShowFolderSize1Top class
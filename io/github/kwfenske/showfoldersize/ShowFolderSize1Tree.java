@@ -0,0 +1,293 @@
+/*
+  ShowFolderSize1Tree class
+  Copyright (c) 2014 by Keith Fenske.  Apache License or GNU GPL.
+
+  Compact arrays for folders and subfolders, for the -a1 option.  Each folder
+  is a node index into parallel arrays of counters and links.  Children are
+  linked through their parent's first child and then to each next sibling, in
+  no particular order, and are sorted only when printed.  Folder names are
+  kept once each in a shared pool of characters, so the thousands of folders
+  with names like "bin" or ".git" cost one copy.  A node costs about 72 bytes,
+  compared to several hundred for a data object and its hash table entry.
+
+  Methods that change the arrays are synchronized for the parallel search.
+*/
+
+package io.github.kwfenske.showfoldersize;
+
+import java.util.*;               // lists, maps, vectors
+
+class ShowFolderSize1Tree
+{
+  /* constants */
+
+  static final int INITIAL_NAMES = 1024; // starting size of name hash table
+  static final int INITIAL_NODES = 1024; // starting size of node arrays
+  static final int INITIAL_POOL = 16384; // starting size of character pool
+
+  /* class variables */
+
+  int count;                      // number of nodes in use
+  HashMap errors;                 // data objects with errors by node, rare
+  int[] firstChild;               // first child of each node, or -1
+  int[] nameHash;                 // open hash table of name indexes plus one
+  int[] nameLength;               // length of each unique name in <pool>
+  int nameCount;                  // number of unique names in <pool>
+  int[] nameOf;                   // name index for each node
+  int[] nameStart;                // start of each unique name in <pool>
+  int[] nextSibling;              // next child of same parent, or -1
+  long[] numalloc;                // allocated bytes in this folder, or null
+  long[] numbyte;                 // number of bytes in this folder only
+  ShowFolderSize1Detail[] numdetail; // file sizes and types, or null
+  long[] numfile;                 // number of files in this folder only
+  long[] numfold;                 // number of subfolders in this folder only
+  long[] modified;                // modification time of each folder
+  int[] parent;                   // parent of each node, or -1
+  char[] pool;                    // characters for all unique names
+  int poolUsed;                   // number of characters used in <pool>
+  long[] suballoc;                // allocated bytes in subfolders, or null
+  long[] subbyte;                 // number of bytes in all subfolders
+  ShowFolderSize1Detail[] subdetail; // sizes and types in subfolders, or null
+  long[] subfile;                 // number of files in all subfolders
+  long[] subfold;                 // number of subfolders in all subfolders
+
+  /* constructor */
+
+  public ShowFolderSize1Tree(
+    boolean allocFlag,            // true if allocated sizes are counted
+    boolean detailFlag)           // true for file sizes and types
+  {
+    this.count = 0;               // no nodes yet
+    this.errors = new HashMap();  // no folders with errors yet
+    this.firstChild = new int[INITIAL_NODES];
+    this.nameHash = new int[INITIAL_NAMES]; // all zero means empty
+    this.nameLength = new int[INITIAL_NAMES / 2];
+    this.nameCount = 0;           // no names yet
+    this.nameOf = new int[INITIAL_NODES];
+    this.nameStart = new int[INITIAL_NAMES / 2];
+    this.nextSibling = new int[INITIAL_NODES];
+    this.numalloc = allocFlag ? new long[INITIAL_NODES] : null;
+    this.numbyte = new long[INITIAL_NODES];
+    this.numdetail = detailFlag ? new ShowFolderSize1Detail[INITIAL_NODES]
+      : null;
+    this.numfile = new long[INITIAL_NODES];
+    this.numfold = new long[INITIAL_NODES];
+    this.modified = new long[INITIAL_NODES];
+    this.parent = new int[INITIAL_NODES];
+    this.pool = new char[INITIAL_POOL];
+    this.poolUsed = 0;            // no characters yet
+    this.suballoc = allocFlag ? new long[INITIAL_NODES] : null;
+    this.subbyte = new long[INITIAL_NODES];
+    this.subdetail = detailFlag ? new ShowFolderSize1Detail[INITIAL_NODES]
+      : null;
+    this.subfile = new long[INITIAL_NODES];
+    this.subfold = new long[INITIAL_NODES];
+  }
+
+  /* addNode() method: add a folder as the child of another, return index */
+
+  synchronized int addNode(
+    int parentNode,               // index of parent node, or -1 for root
+    String name)                  // folder name (no path)
+  {
+    int node;                     // index of new node
+
+    if (count == parent.length)   // are the node arrays full?
+    {
+      int size = count * 2;       // double the size of each array
+      firstChild = Arrays.copyOf(firstChild, size);
+      nameOf = Arrays.copyOf(nameOf, size);
+      nextSibling = Arrays.copyOf(nextSibling, size);
+      numbyte = Arrays.copyOf(numbyte, size);
+      numfile = Arrays.copyOf(numfile, size);
+      numfold = Arrays.copyOf(numfold, size);
+      modified = Arrays.copyOf(modified, size);
+      parent = Arrays.copyOf(parent, size);
+      subbyte = Arrays.copyOf(subbyte, size);
+      subfile = Arrays.copyOf(subfile, size);
+      subfold = Arrays.copyOf(subfold, size);
+      if (numalloc != null)       // only for allocated sizes (-d1)
+      {
+        numalloc = Arrays.copyOf(numalloc, size);
+        suballoc = Arrays.copyOf(suballoc, size);
+      }
+      if (numdetail != null)      // only for file sizes and types (-x1)
+      {
+        numdetail = Arrays.copyOf(numdetail, size);
+        subdetail = Arrays.copyOf(subdetail, size);
+      }
+    }
+    node = count ++;              // allocate next unused node
+    firstChild[node] = -1;        // no children yet
+    nameOf[node] = internName(name); // shared copy of name
+    parent[node] = parentNode;    // link to parent
+    if (parentNode >= 0)          // link parent to new first child
+    {
+      nextSibling[node] = firstChild[parentNode];
+      firstChild[parentNode] = node;
+    }
+    else
+      nextSibling[node] = -1;     // root nodes have no siblings
+    return(node);
+  }
+
+  /* getName() method: return the name of a node as a string */
+
+  synchronized String getName(int node)
+  {
+    int index = nameOf[node];     // which unique name
+    return(new String(pool, nameStart[index], nameLength[index]));
+  }
+
+  /* getSubfolders() method: return temporary data objects for the children
+  of a node, not sorted, the same as data objects in a hash table */
+
+  synchronized ShowFolderSize1Data[] getSubfolders(int node)
+  {
+    int child;                    // index of one child node
+    ShowFolderSize1Data data;     // temporary data object for one child
+    ShowFolderSize1Data errdata;  // errors for one child, or null
+    Vector result;                // children in the order they were added
+
+    result = new Vector();        // only for children of this node
+    for (child = firstChild[node]; child >= 0; child = nextSibling[child])
+    {
+      data = new ShowFolderSize1Data(); // not part of the search
+      data.modified = modified[child];
+      data.name = getName(child);
+      data.numbyte = numbyte[child];
+      data.numfile = numfile[child];
+      data.numfold = numfold[child];
+      data.subbyte = subbyte[child];
+      data.subfile = subfile[child];
+      data.subfold = subfold[child];
+      if (numalloc != null)       // only for allocated sizes (-d1)
+      {
+        data.numalloc = numalloc[child];
+        data.suballoc = suballoc[child];
+      }
+      if (numdetail != null)      // only for file sizes and types (-x1)
+      {
+        data.numdetail = numdetail[child];
+        data.subdetail = subdetail[child];
+      }
+      errdata = (ShowFolderSize1Data) errors.get(Integer.valueOf(child));
+      if (errdata != null)        // only folders with unreadable paths
+      {
+        data.errlist = errdata.errlist;
+        data.numerror = errdata.numerror;
+        data.suberror = errdata.suberror;
+      }
+      data.treenode = child;      // for printing grandchildren
+      result.add(data);
+    }
+    return((ShowFolderSize1Data[]) result.toArray(
+      new ShowFolderSize1Data[result.size()]));
+  }
+
+  /* internName() method: return the index of a unique name in the pool,
+  adding the name if it isn't already there */
+
+  int internName(String name)
+  {
+    int hash;                     // hash code for <name>
+    int i;                        // index variable
+    int index;                    // index of a unique name
+    int length;                   // size of <name> in characters
+    int slot;                     // position in hash table
+
+    length = name.length();
+    hash = name.hashCode();
+    slot = (hash ^ (hash >>> 16)) & (nameHash.length - 1);
+    while (nameHash[slot] != 0)   // search until empty slot
+    {
+      index = nameHash[slot] - 1; // zero in table means empty
+      if (nameLength[index] == length) // compare characters in pool
+      {
+        for (i = 0; i < length; i ++)
+          if (pool[nameStart[index] + i] != name.charAt(i))
+            break;
+        if (i == length)          // found the same name
+          return(index);
+      }
+      slot = (slot + 1) & (nameHash.length - 1); // linear probing
+    }
+
+    /* A new name.  Copy the characters into the pool. */
+
+    if ((poolUsed + length) > pool.length) // is the pool full?
+      pool = Arrays.copyOf(pool, Math.max((pool.length * 2), (poolUsed
+        + length)));
+    name.getChars(0, length, pool, poolUsed);
+    if (nameCount == nameStart.length) // are the name arrays full?
+    {
+      nameLength = Arrays.copyOf(nameLength, (nameCount * 2));
+      nameStart = Arrays.copyOf(nameStart, (nameCount * 2));
+    }
+    index = nameCount ++;         // allocate next unused name
+    nameLength[index] = length;
+    nameStart[index] = poolUsed;
+    poolUsed += length;
+    nameHash[slot] = index + 1;   // zero in table means empty
+    if ((nameCount * 2) > nameHash.length) // keep table half empty
+      rehashNames();
+    return(index);
+  }
+
+  /* rehashNames() method: double the size of the name hash table */
+
+  void rehashNames()
+  {
+    int hash;                     // hash code for one name
+    int index;                    // index of a unique name
+    int slot;                     // position in hash table
+
+    nameHash = new int[nameHash.length * 2]; // all zero means empty
+    for (index = 0; index < nameCount; index ++)
+    {
+      hash = new String(pool, nameStart[index], nameLength[index])
+        .hashCode();              // same hash as when name was added
+      slot = (hash ^ (hash >>> 16)) & (nameHash.length - 1);
+      while (nameHash[slot] != 0)
+        slot = (slot + 1) & (nameHash.length - 1); // linear probing
+      nameHash[slot] = index + 1;
+    }
+  }
+
+  /* setTotals() method: copy a folder's totals from its data object.  Errors
+  are rare, so they are kept in a hash table instead of more arrays. */
+
+  synchronized void setTotals(
+    int node,                     // index of folder's node
+    ShowFolderSize1Data data)     // data object with totals
+  {
+    ShowFolderSize1Data errdata;  // only the errors from <data>
+
+    numbyte[node] = data.numbyte;
+    numfile[node] = data.numfile;
+    numfold[node] = data.numfold;
+    modified[node] = data.modified;
+    subbyte[node] = data.subbyte;
+    subfile[node] = data.subfile;
+    subfold[node] = data.subfold;
+    if (numalloc != null)         // only for allocated sizes (-d1)
+    {
+      numalloc[node] = data.numalloc;
+      suballoc[node] = data.suballoc;
+    }
+    if (numdetail != null)        // only for file sizes and types (-x1)
+    {
+      numdetail[node] = data.numdetail;
+      subdetail[node] = data.subdetail;
+    }
+    if ((data.numerror + data.suberror) > 0) // any unreadable paths?
+    {
+      errdata = new ShowFolderSize1Data(); // not the whole data object
+      errdata.errlist = data.errlist;
+      errdata.numerror = data.numerror;
+      errdata.suberror = data.suberror;
+      errors.put(Integer.valueOf(node), errdata);
+    }
+  }
+
+} // end of ShowFolderSize1Tree class
@@ -0,0 +1,24 @@
+/*
+  ShowFolderSize1Visitor interface
+  Copyright (c) 2014 by Keith Fenske.  Apache License or GNU GPL.
+
+  Called by a ShowFolderSize1Scanner as each folder is finished, for programs
+  that want folders as they are found instead of (or as well as) the tree of
+  data objects that scan() returns.  A folder's totals include all of its
+  subfolders, which are always given before the folder itself.  With -p# or
+  -q#, calls come from many threads at the same time, so a visitor must be
+  thread safe.  The data object belongs to the scanner and may be released or
+  changed after the call returns, so copy anything that is needed later.
+*/
+
+package io.github.kwfenske.showfoldersize;
+
+import java.io.*;                 // standard I/O
+
+public interface ShowFolderSize1Visitor
+{
+  void folder(                    // called once for each finished folder
+    File path,                    // full path built from canonical root
+    ShowFolderSize1Data data);    // totals for folder and subfolders
+
+} // end of ShowFolderSize1Visitor interface
@@ -0,0 +1,236 @@
+/*
+  ShowFolderSize1Test class
+  Copyright (c) 2014 by Keith Fenske.  Apache License or GNU GPL.
+
+  Tests for the command line's snapshot files (-save, -load) and comparisons
+  (-diff).  These are in the default package, with the program.  The program
+  keeps its options in static variables, set by main() from the command line,
+  so setUp() sets the same defaults without calling main(), and sends output
+  to a string.
+*/
+
+import io.github.kwfenske.showfoldersize.*; // searching, data objects
+import java.io.*;                 // standard I/O
+import java.nio.charset.*;        // character set for output
+import java.util.*;               // lists of options
+import org.junit.*;               // JUnit 4 annotations and assertions
+import org.junit.rules.*;         // temporary folders
+
+import static org.junit.Assert.*;
+
+public class ShowFolderSize1Test
+{
+  /* class variables */
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  StringWriter output;            // everything the program printed
+  File root;                      // folder with two top-level test folders
+
+  /* setUp() method: set the program's options to the same defaults as
+  main(), and build two folders to search:
+
+      root/A/a1/f, root/A/a2/g, root/A/zz/k
+      root/B/b1/m, root/B/b2/q/n
+  */
+
+  @Before
+  public void setUp() throws IOException
+  {
+    ShowFolderSize1.allocFlag = false;
+    ShowFolderSize1.caseFlag = false;
+    ShowFolderSize1.csvFlag = false;
+    ShowFolderSize1.diffCursor = null;
+    ShowFolderSize1.diffMinimum = 0;
+    ShowFolderSize1.diffNewer = ShowFolderSize1.diffOlder = null;
+    ShowFolderSize1.excludeList = new Vector();
+    ShowFolderSize1.fixFactor = 0.0;
+    ShowFolderSize1.fixSuffix = null;
+    ShowFolderSize1.includeList = new Vector();
+    ShowFolderSize1.indentString = ShowFolderSize1.DEFAULT_INDENT;
+    ShowFolderSize1.messageLevel = 1;
+    ShowFolderSize1.outputBuffer = new StringBuilder();
+    ShowFolderSize1.outputChars = new char[256];
+    ShowFolderSize1.outputCharset = Charset.defaultCharset();
+    ShowFolderSize1.outputError = false;
+    output = new StringWriter();
+    ShowFolderSize1.outputWriter = output;
+    ShowFolderSize1.reportDepth = ShowFolderSize1.DEFAULT_REPORT;
+    ShowFolderSize1.searchDepth = ShowFolderSize1.DEFAULT_SEARCH;
+    ShowFolderSize1.formatSetup();
+    ShowFolderSize1.scanner = new ShowFolderSize1Scanner(
+      new ShowFolderSize1Options().withKeepDepth(ShowFolderSize1
+      .DEFAULT_SEARCH));          // keep all subfolders, as for -save
+
+    root = temp.newFolder("root");
+    write(new File(root, "A/a1/f"), 1024);
+    write(new File(root, "A/a2/g"), 2048);
+    write(new File(root, "A/zz/k"), 3072);
+    write(new File(root, "B/b1/m"), 4096);
+    write(new File(root, "B/b2/q/n"), 5120);
+  }
+
+  /* assertSameTree() method: check that two trees of data objects have the
+  same names and totals, for everything that a snapshot saves */
+
+  static void assertSameTree(ShowFolderSize1Data expected,
+    ShowFolderSize1Data actual)
+  {
+    Iterator names;               // subfolder names in expected tree
+    String name;                  // one subfolder name
+
+    assertEquals(expected.modified, actual.modified);
+    assertEquals(expected.numbyte, actual.numbyte);
+    assertEquals(expected.numfile, actual.numfile);
+    assertEquals(expected.numfold, actual.numfold);
+    assertEquals(expected.subbyte, actual.subbyte);
+    assertEquals(expected.subfile, actual.subfile);
+    assertEquals(expected.subfold, actual.subfold);
+    assertEquals(expected.sublist.keySet(), actual.sublist.keySet());
+    names = expected.sublist.keySet().iterator();
+    while (names.hasNext())
+    {
+      name = (String) names.next();
+      assertEquals(name, ((ShowFolderSize1Data) actual.sublist.get(name))
+        .name);
+      assertSameTree((ShowFolderSize1Data) expected.sublist.get(name),
+        (ShowFolderSize1Data) actual.sublist.get(name));
+    }
+  }
+
+  /* change() method: change both folders after the first snapshot */
+
+  void change() throws IOException
+  {
+    write(new File(root, "A/a2/new/p"), 9216); // new subfolder
+    write(new File(root, "B/b1/m"), 11264); // bigger file
+    delete(new File(root, "A/zz")); // last subfolder of first folder
+    delete(new File(root, "B/b2/q"));
+  }
+
+  /* delete() method: delete a file or folder and everything in it */
+
+  static void delete(File file)
+  {
+    File[] contents;              // files and subfolders, or null
+    int i;                        // index variable
+
+    contents = file.listFiles();
+    for (i = 0; (contents != null) && (i < contents.length); i ++)
+      delete(contents[i]);
+    file.delete();
+  }
+
+  /* diffSearch() method: compare both folders with a snapshot, the same as
+  -diff with a search, and return the printed lines */
+
+  String diffSearch(String older) throws IOException
+  {
+    ShowFolderSize1Data data;     // one folder from a search
+
+    ShowFolderSize1.diffOlder = older;
+    data = ShowFolderSize1.scanner.searchRoot(new File(root, "A"));
+    ShowFolderSize1.diffFolder(new ShowFolderSize1Cursor(data,
+      ShowFolderSize1.reportDepth), data.path);
+    data = ShowFolderSize1.scanner.searchRoot(new File(root, "B"));
+    ShowFolderSize1.diffFolder(new ShowFolderSize1Cursor(data,
+      ShowFolderSize1.reportDepth), data.path);
+    ShowFolderSize1.diffCursor.snapshot.close();
+    ShowFolderSize1.diffCursor = null;
+    return(printed());
+  }
+
+  /* printed() method: return what the program printed, and start again */
+
+  String printed()
+  {
+    String result;                // our result
+
+    ShowFolderSize1.printFlush();
+    result = output.toString().replace(System.getProperty("line.separator"),
+      "\n");
+    output.getBuffer().setLength(0);
+    return(result);
+  }
+
+  /* save() method: save a snapshot of both folders, the same as -save */
+
+  String save(String name) throws IOException
+  {
+    String filename;              // full path of snapshot file
+    ShowFolderSize1Snapshot snapshot; // new snapshot file
+
+    filename = new File(temp.getRoot(), name).getPath();
+    snapshot = ShowFolderSize1Snapshot.create(filename);
+    snapshot.writeRoot(ShowFolderSize1.scanner.searchRoot(new File(root,
+      "A")));
+    snapshot.writeRoot(ShowFolderSize1.scanner.searchRoot(new File(root,
+      "B")));
+    snapshot.close();
+    return(filename);
+  }
+
+  /* write() method: create a file of a given size, and its parent folders */
+
+  static void write(File file, int size) throws IOException
+  {
+    file.getParentFile().mkdirs();
+    try (FileOutputStream stream = new FileOutputStream(file))
+    {
+      stream.write(new byte[size]);
+    }
+  }
+
+  @Test
+  public void diffSearchFindsChanges() throws IOException
+  {
+    String lines;                 // printed changes
+
+    lines = diffSearch(save("older.snap"));
+    assertTrue(lines, lines.contains(" = +0.0 KB in +0 files and +0"
+      + " subfolders, now 6.0 KB.\n")); // top-level folder always printed
+    assertFalse(lines, lines.contains("a1")); // unchanged subfolders aren't
+    change();
+    lines = diffSearch(new File(temp.getRoot(), "older.snap").getPath());
+    assertTrue(lines, lines.contains("  a2 = +9.0 KB in +1 files and +1"
+      + " subfolders, now 11.0 KB.\n"));
+    assertTrue(lines, lines.contains("    new = +9.0 KB in +1 files and +0"
+      + " subfolders, now 9.0 KB.\n"));
+    assertTrue(lines, lines.contains("  zz = -3.0 KB in -1 files and +0"
+      + " subfolders, now 0.0 KB.\n"));
+    assertTrue(lines, lines.contains("    q = -5.0 KB in -1 files and +0"
+      + " subfolders, now 0.0 KB.\n"));
+    assertTrue(lines, lines.indexOf("  a2 =") < lines.indexOf("  zz ="));
+  }
+
+  @Test
+  public void diffSnapshotsSameAsSearch() throws IOException
+  {
+    String older;                 // snapshot before changes
+    String searched;              // changes from searching
+
+    older = save("older.snap");
+    change();
+    searched = diffSearch(older);
+    ShowFolderSize1.diffOlder = older;
+    ShowFolderSize1.diffNewer = save("newer.snap");
+    ShowFolderSize1.diffSnapshots();
+    assertEquals(searched, printed());
+  }
+
+  @Test
+  public void snapshotRoundTrip() throws IOException
+  {
+    ShowFolderSize1Snapshot loaded; // snapshot read back into memory
+    ShowFolderSize1Data searched; // same folder from a search
+
+    loaded = ShowFolderSize1Snapshot.load(save("round.snap"));
+    assertEquals(2, loaded.roots.size());
+    searched = ShowFolderSize1.scanner.searchRoot(new File(root, "B"));
+    assertSameTree(searched, (ShowFolderSize1Data) loaded.roots.get(
+      searched.path));
+    assertEquals(loaded.searchDepth, ShowFolderSize1.DEFAULT_SEARCH);
+  }
+
+} // end of ShowFolderSize1Test class
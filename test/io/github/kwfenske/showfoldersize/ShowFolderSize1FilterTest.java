@@ -0,0 +1,95 @@
+/*
+  ShowFolderSize1FilterTest class
+  Copyright (c) 2014 by Keith Fenske.  Apache License or GNU GPL.
+
+  Tests for glob patterns in -exclude and -include.  Patterns for names must
+  match the same names as java.nio.file.PathMatcher, which is what the
+  conversion to regular expressions promises.  Patterns for full paths match
+  the end of a path, or the whole path if they start with a slash.
+*/
+
+package io.github.kwfenske.showfoldersize;
+
+import java.nio.file.*;           // path matcher to compare with
+import java.util.regex.*;         // compiled regular expressions
+import org.junit.*;               // JUnit 4 annotations and assertions
+
+import static org.junit.Assert.*;
+
+public class ShowFolderSize1FilterTest
+{
+  /* class constants */
+
+  static final String[] GLOBS = { "*.txt", "a?c", "[abc]x", "[!abc]x",
+    "{foo,bar}.log", "x.y+z(1)", "data[0-9]", "*", "a\\*b", "$^|" };
+  static final String[] NAMES = { "a.txt", ".txt", "a.txt.gz", "abc", "ac",
+    "ax", "dx", "foo.log", "bar.log", "baz.log", "x.y+z(1)", "xxy+z(1)",
+    "data5", "datax", "a*b", "axb", "$^|", "" };
+
+  /* matches() method: return true if a glob converted here matches a name or
+  path */
+
+  static boolean matches(String glob, boolean pathFlag, String text)
+  {
+    return(Pattern.compile(ShowFolderSize1Filter.globToRegex(glob, pathFlag))
+      .matcher(text).matches());
+  }
+
+  @Test
+  public void namesMatchPathMatcher()
+  {
+    int i, k;                     // index variables
+    PathMatcher matcher;          // Java's own glob matcher
+
+    for (i = 0; i < GLOBS.length; i ++)
+    {
+      matcher = FileSystems.getDefault().getPathMatcher("glob:" + GLOBS[i]);
+      for (k = 0; k < NAMES.length; k ++)
+      {
+        if ((NAMES[k].length() == 0) || (NAMES[k].indexOf('*') >= 0))
+          continue;               // not valid as a Path on every system
+        assertEquals((GLOBS[i] + " with " + NAMES[k]), matcher.matches(
+          Paths.get(NAMES[k])), matches(GLOBS[i], false, NAMES[k]));
+      }
+    }
+  }
+
+  @Test
+  public void pathsMatchEndOrWholePath()
+  {
+    assertTrue(matches("build/*.o", true, "/home/me/build/main.o"));
+    assertFalse(matches("build/*.o", true, "/home/me/build/sub/main.o"));
+    assertTrue(matches("build/**.o", true, "/home/me/build/sub/main.o"));
+    assertFalse(matches("build/*.o", true, "/home/me/rebuild/main.o"));
+    assertTrue(matches("/home/*/build", true, "/home/me/build"));
+    assertFalse(matches("/home/*/build", true, "/x/home/me/build"));
+  }
+
+  @Test
+  public void starsAndQuestionsStayInOneName()
+  {
+    assertFalse(matches("*", false, "a/b"));
+    assertFalse(matches("a?b", false, "a/b"));
+    assertTrue(matches("**", false, "a/b"));
+    assertTrue(matches("a\\*b", false, "a*b")); // escaped literal star
+    assertFalse(matches("a\\*b", false, "axb"));
+  }
+
+  @Test
+  public void unclosedPatternsThrow()
+  {
+    String[] bad = { "[abc", "{a,b", "x[!y" };
+    int i;                        // index variable
+
+    for (i = 0; i < bad.length; i ++)
+    {
+      try
+      {
+        ShowFolderSize1Filter.globToRegex(bad[i], false);
+        fail("no exception for " + bad[i]);
+      }
+      catch (IllegalArgumentException iae) { /* expected */ }
+    }
+  }
+
+} // end of ShowFolderSize1FilterTest class
@@ -0,0 +1,222 @@
+/*
+  ShowFolderSize1ScannerTest class
+  Copyright (c) 2014 by Keith Fenske.  Apache License or GNU GPL.
+
+  Tests for the public scanner API: totals for a small tree of folders, the
+  same totals with parallel and pipelined searches, and searches by one
+  scanner that must not change each other's results (timeout, -h1, -a1,
+  -top).  Each test builds its own tree in a temporary folder.
+*/
+
+package io.github.kwfenske.showfoldersize;
+
+import java.io.*;                 // standard I/O
+import java.nio.file.*;           // hard links
+import java.util.concurrent.*;    // cancellation
+import org.junit.*;               // JUnit 4 annotations and assertions
+import org.junit.rules.*;         // temporary folders
+
+import static org.junit.Assert.*;
+
+public class ShowFolderSize1ScannerTest
+{
+  /* class variables */
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  File root;                      // top of the test tree
+
+  /* setUp() method: build a tree with four files in three subfolders:
+
+      root/t (10 bytes)
+      root/a/f1 (100 bytes)
+      root/a/sub/f2 (200 bytes)
+      root/b/f3 (400 bytes)
+  */
+
+  @Before
+  public void setUp() throws IOException
+  {
+    root = temp.newFolder("root");
+    write(new File(root, "t"), 10);
+    write(new File(root, "a/f1"), 100);
+    write(new File(root, "a/sub/f2"), 200);
+    write(new File(root, "b/f3"), 400);
+  }
+
+  /* names() method: return the names of data objects, joined by commas */
+
+  static String names(ShowFolderSize1Data[] list)
+  {
+    int i;                        // index variable
+    StringBuilder result;         // our result
+
+    result = new StringBuilder();
+    for (i = 0; i < list.length; i ++)
+      result.append((i > 0) ? "," : "").append(list[i].name);
+    return(result.toString());
+  }
+
+  /* totals() method: return total bytes, files, and subfolders as text */
+
+  static String totals(ShowFolderSize1Data data)
+  {
+    return((data.numbyte + data.subbyte) + "/" + (data.numfile
+      + data.subfile) + "/" + (data.numfold + data.subfold));
+  }
+
+  /* write() method: create a file of a given size, and its parent folders */
+
+  static void write(File file, int size) throws IOException
+  {
+    file.getParentFile().mkdirs();
+    try (FileOutputStream output = new FileOutputStream(file))
+    {
+      output.write(new byte[size]);
+    }
+  }
+
+  @Test
+  public void cancelIsPermanent() throws IOException
+  {
+    ShowFolderSize1Scanner scanner; // scanner to cancel
+
+    scanner = new ShowFolderSize1Scanner(new ShowFolderSize1Options());
+    scanner.cancel();
+    try { scanner.scan(root); fail("no CancellationException"); }
+    catch (CancellationException ce) { /* expected */ }
+    try { scanner.scan(root); fail("cancel() was undone"); }
+    catch (CancellationException ce) { /* expected */ }
+    scanner.close();
+  }
+
+  @Test
+  public void compactArraysBelongToEachScan() throws IOException
+  {
+    ShowFolderSize1Data a, b;     // results from two searches
+    ShowFolderSize1Scanner scanner; // one scanner for both
+
+    scanner = new ShowFolderSize1Scanner(new ShowFolderSize1Options()
+      .withCompact(true));
+    a = scanner.scan(new File(root, "a"));
+    b = scanner.scan(new File(root, "b"));
+    assertEquals("sub", names(scanner.getSubfolders(a,
+      ShowFolderSize1Order.SORT_NAME)));
+    assertEquals("", names(scanner.getSubfolders(b,
+      ShowFolderSize1Order.SORT_NAME)));
+    scanner.close();
+  }
+
+  @Test
+  public void hardLinksCountedOncePerScan() throws IOException
+  {
+    ShowFolderSize1Scanner scanner; // one scanner for both searches
+
+    Assume.assumeTrue(FileSystems.getDefault().supportedFileAttributeViews()
+      .contains("unix"));         // -h1 needs device and inode
+    Files.createLink(new File(root, "a/link").toPath(), new File(root, "b/f3")
+      .toPath());
+    scanner = new ShowFolderSize1Scanner(new ShowFolderSize1Options()
+      .withLinks(true));
+    assertEquals("710/4/3", totals(scanner.scan(root)));
+    assertEquals("710/4/3", totals(scanner.scan(root))); // not skipped again
+    scanner.close();
+  }
+
+  @Test(expected = FileNotFoundException.class)
+  public void missingFolderThrows() throws IOException
+  {
+    new ShowFolderSize1Scanner(new ShowFolderSize1Options()).scan(new File(
+      root, "missing"));
+  }
+
+  @Test
+  public void parallelAndPipelineMatchSerial() throws IOException
+  {
+    ShowFolderSize1Scanner scanner; // scanner with threads
+
+    scanner = new ShowFolderSize1Scanner(new ShowFolderSize1Options()
+      .withParallel(2));
+    assertEquals("710/4/3", totals(scanner.scan(root)));
+    scanner.close();
+    scanner = new ShowFolderSize1Scanner(new ShowFolderSize1Options()
+      .withPipeline(2));
+    assertEquals("710/4/3", totals(scanner.scan(root)));
+    scanner.close();
+  }
+
+  @Test
+  public void scanTotalsAndSubfolders() throws IOException
+  {
+    ShowFolderSize1Data data;     // result for root
+    ShowFolderSize1Scanner scanner; // default options
+
+    scanner = new ShowFolderSize1Scanner(new ShowFolderSize1Options());
+    data = scanner.scan(root);
+    assertEquals(10, data.numbyte);
+    assertEquals(1, data.numfile);
+    assertEquals(2, data.numfold);
+    assertEquals(700, data.subbyte);
+    assertEquals(3, data.subfile);
+    assertEquals(1, data.subfold);
+    assertEquals(0, data.numerror + data.suberror);
+    assertEquals("a,b", names(scanner.getSubfolders(data,
+      ShowFolderSize1Order.SORT_NAME)));
+    assertEquals("b,a", names(scanner.getSubfolders(data,
+      ShowFolderSize1Order.SORT_SIZE)));
+    assertNull(scanner.estimateError(data)); // exact totals
+    scanner.close();
+  }
+
+  @Test
+  public void timeoutOnlyStopsOneScan() throws IOException
+  {
+    final boolean[] slow = { true }; // visitor waits while true
+    ShowFolderSize1Scanner scanner; // one scanner for both searches
+
+    scanner = new ShowFolderSize1Scanner(new ShowFolderSize1Options()
+      .withTimeout(50).withVisitor(new ShowFolderSize1Visitor()
+    {
+      public void folder(File path, ShowFolderSize1Data data)
+      {
+        if (slow[0])              // use up the time for this search
+        {
+          try { Thread.sleep(100); }
+          catch (InterruptedException ie) { /* not expected */ }
+        }
+      }
+    }));
+    try { scanner.scan(root); fail("no timeout"); }
+    catch (CancellationException ce)
+    {
+      assertTrue(ce.getMessage().startsWith("Timed out"));
+    }
+    slow[0] = false;              // next search has its own time
+    assertEquals("710/4/3", totals(scanner.scan(root)));
+    scanner.close();
+  }
+
+  @Test
+  public void topFilesBelongToEachScan() throws IOException
+  {
+    ShowFolderSize1Data a, b;     // results from two searches
+    ShowFolderSize1Data[] files;  // largest files from one search
+    ShowFolderSize1Scanner scanner; // one scanner for both
+
+    scanner = new ShowFolderSize1Scanner(new ShowFolderSize1Options()
+      .withTop(5, false));
+    a = scanner.scan(new File(root, "a"));
+    b = scanner.scan(new File(root, "b"));
+    files = scanner.getTopFiles(a);
+    assertEquals(2, files.length);
+    assertTrue(files[0].name.endsWith("f2")); // largest first
+    assertTrue(files[1].name.endsWith("f1"));
+    files = scanner.getTopFiles(b);
+    assertEquals(1, files.length);
+    assertTrue(files[0].name.endsWith("f3"));
+    assertEquals(0, scanner.getTopFiles().length); // no searchRoot() calls
+    scanner.close();
+  }
+
+} // end of ShowFolderSize1ScannerTest class